@@ -0,0 +1,416 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/** Reachability bitmaps of a store: for each branch tip, the set of
+ *  objects reachable from it, as a bitmap over a numbering of the
+ *  objects.  Objects are numbered in the order they are first reached and
+ *  keep their numbers, so bitmaps stay valid as objects are added, and
+ *  questions about what several commits reach become ORs and ANDNOTs of
+ *  their bitmaps.  The bitmap of a commit without one is made from the
+ *  bitmaps of its nearest ancestors that have one, walking only the
+ *  commits and trees in between.
+ *
+ *  Bitmaps are optional: they are kept only in repositories where
+ *  write-bitmaps made the file FILE_NAME in the object directory, and are
+ *  refreshed whenever branches move.  The file is a log, so that moving a
+ *  branch appends the new tip's bitmap rather than rewriting the file:
+ *
+ *      int     MAGIC
+ *      int     VERSION
+ *      records, each one of
+ *          byte OBJECT, byte namespace (an index into KINDS), 20-byte raw
+ *              id: numbers the next object
+ *          byte BITMAP, 20-byte raw commit id, int number of words, the
+ *              words: the bitmap of a tip
+ *          byte DROP, 20-byte raw commit id: the commit is no longer a tip
+ *
+ *  Reading replays the records.  A record cut short by an interrupted
+ *  append is ignored, and overwritten by the next append.  The file is
+ *  rewritten whole only once the bitmaps it holds for commits that are no
+ *  longer tips outnumber those it holds for tips.
+ *
+ *  @author Srikar Hanumanula
+ */
+class Bitmaps {
+    /** Name of the file within the object directory. */
+    static final String FILE_NAME = "bitmaps";
+    /** File signature, "GBMP". */
+    private static final int MAGIC = 0x47424d50;
+    /** Format version. */
+    private static final int VERSION = 1;
+    /** Length of the file's header. */
+    private static final int HEADER = 8;
+    /** Record numbering an object. */
+    private static final byte OBJECT = 0;
+    /** Record holding the bitmap of a tip. */
+    private static final byte BITMAP = 1;
+    /** Record dropping the bitmap of a commit that is no longer a tip. */
+    private static final byte DROP = 2;
+    /** Fewest dead records that make saving rewrite the file. */
+    private static final int MIN_DEAD = 16;
+    /** Namespaces of objects, by their number in the file. */
+    private static final String[] KINDS = {
+        ObjectStore.COMMITS, ObjectStore.TREES, ObjectStore.BLOBS,
+    };
+
+    /** The store whose objects are numbered. */
+    private final ObjectStore _store;
+    /** Commit graph of _store. */
+    private final CommitGraph _graph;
+    /** The bitmap file. */
+    private final File _file;
+    /** Namespace of each object, by number. */
+    private final ArrayList<String> _kinds = new ArrayList<>();
+    /** Id of each object, by number. */
+    private final ArrayList<String> _ids = new ArrayList<>();
+    /** Number of each object, by namespace followed by id. */
+    private final HashMap<String, Integer> _numbers = new HashMap<>();
+    /** Bitmaps of branch tips, by commit id. */
+    private final HashMap<String, BitSet> _bitmaps = new HashMap<>();
+    /** Number of objects numbered in the file. */
+    private int _saved;
+    /** Commits whose bitmaps in _bitmaps are in the file. */
+    private final HashSet<String> _savedBitmaps = new HashSet<>();
+    /** Commits whose bitmaps in the file are to be dropped. */
+    private final HashSet<String> _dropped = new HashSet<>();
+    /** Number of records in the file that no longer count. */
+    private int _dead;
+    /** Length of the records of the file that were read whole. */
+    private long _length;
+    /** True iff the file is to be written anew rather than appended to. */
+    private boolean _rewrite;
+
+    /** Empty bitmaps of STORE, whose commit graph is GRAPH. */
+    private Bitmaps(ObjectStore store, CommitGraph graph) {
+        _store = store;
+        _graph = graph;
+        _file = Utils.join(store.dir(), "objects", FILE_NAME);
+    }
+
+    /** Return the bitmaps of STORE, whose commit graph is GRAPH, or null
+     *  if it keeps none. */
+    static Bitmaps open(ObjectStore store, CommitGraph graph) {
+        Bitmaps result = new Bitmaps(store, graph);
+        if (!result._file.isFile()) {
+            return null;
+        }
+        result.read();
+        return result;
+    }
+
+    /** Return new, empty bitmaps of STORE, whose commit graph is GRAPH,
+     *  replacing any it keeps when saved. */
+    static Bitmaps create(ObjectStore store, CommitGraph graph) {
+        Bitmaps result = new Bitmaps(store, graph);
+        result._rewrite = true;
+        return result;
+    }
+
+    /** Return true iff STORE keeps bitmaps. */
+    static boolean kept(ObjectStore store) {
+        return Utils.join(store.dir(), "objects", FILE_NAME).isFile();
+    }
+
+    /** If STORE, whose commit graph is GRAPH, keeps bitmaps, bring them up
+     *  to date with branch tips TIPS. */
+    static void refresh(ObjectStore store, CommitGraph graph,
+                        Collection<String> tips) {
+        Bitmaps bitmaps = open(store, graph);
+        if (bitmaps != null) {
+            bitmaps.update(tips);
+            bitmaps.save();
+        }
+    }
+
+    /** Return the namespace of object number N. */
+    String kind(int n) {
+        return _kinds.get(n);
+    }
+
+    /** Return the id of object number N. */
+    String id(int n) {
+        return _ids.get(n);
+    }
+
+    /** Keep bitmaps for exactly the commits TIPS, making those missing. */
+    void update(Collection<String> tips) {
+        HashSet<String> keep = new HashSet<>(tips);
+        for (String tip : new ArrayList<>(_bitmaps.keySet())) {
+            if (!keep.contains(tip)) {
+                _bitmaps.remove(tip);
+                if (_savedBitmaps.remove(tip)) {
+                    _dropped.add(tip);
+                }
+            }
+        }
+        for (String tip : keep) {
+            if (!_bitmaps.containsKey(tip)) {
+                _bitmaps.put(tip, reachable(tip));
+            }
+        }
+    }
+
+    /** Return the objects reachable from any of COMMITS, which this
+     *  store must have. */
+    BitSet reachable(Collection<String> commits) {
+        BitSet result = new BitSet();
+        for (String commit : commits) {
+            result.or(reachable(commit));
+        }
+        return result;
+    }
+
+    /** Return the objects reachable from COMMIT, which this store must
+     *  have.  The result may be shared, so must not be modified. */
+    BitSet reachable(String commit) {
+        BitSet known = _bitmaps.get(commit);
+        if (known != null) {
+            return known;
+        }
+        BitSet result = new BitSet();
+        PriorityQueue<Integer> queue = new PriorityQueue<>(
+            (x, y) -> Integer.compare(_graph.generation(y),
+                                      _graph.generation(x)));
+        HashSet<Integer> queued = new HashSet<>();
+        ArrayList<String> walked = new ArrayList<>();
+        queue.add(_graph.index(commit));
+        while (!queue.isEmpty()) {
+            int k = queue.poll();
+            String id = _graph.id(k);
+            if (result.get(number(ObjectStore.COMMITS, id))) {
+                continue;
+            }
+            known = _bitmaps.get(id);
+            if (known != null) {
+                result.or(known);
+                continue;
+            }
+            walked.add(id);
+            for (int p : new int[] {_graph.parent1(k), _graph.parent2(k)}) {
+                if (p != CommitGraph.NONE && queued.add(p)) {
+                    queue.add(p);
+                }
+            }
+        }
+        for (int i = walked.size() - 1; i >= 0; i -= 1) {
+            String id = walked.get(i);
+            int n = number(ObjectStore.COMMITS, id);
+            if (!result.get(n)) {
+                result.set(n);
+                markTree(Commit.load(_store, id).getTree(), result);
+            }
+        }
+        return result;
+    }
+
+    /** Set the bits of tree TREE and everything below it in RESULT, passing
+     *  over trees already set, whose contents are set too. */
+    private void markTree(String tree, BitSet result) {
+        int n = number(ObjectStore.TREES, tree);
+        if (result.get(n)) {
+            return;
+        }
+        result.set(n);
+        for (Map.Entry<String, String> e
+                 : Tree.read(_store, tree).entrySet()) {
+            if (Tree.isTree(e.getKey())) {
+                markTree(e.getValue(), result);
+            } else {
+                result.set(number(ObjectStore.BLOBS, e.getValue()));
+            }
+        }
+    }
+
+    /** Return the number of object ID of namespace KIND, numbering it if it
+     *  has none yet. */
+    private int number(String kind, String id) {
+        Integer n = _numbers.get(kind + id);
+        if (n == null) {
+            n = _ids.size();
+            _numbers.put(kind + id, n);
+            _kinds.add(kind);
+            _ids.add(id);
+        }
+        return n;
+    }
+
+    /** Write out what has changed since the file was read or written:
+     *  append it, or write the file anew if it has too many dead records
+     *  or was never written. */
+    void save() {
+        if (_dead + _dropped.size() >= Math.max(MIN_DEAD, _bitmaps.size())) {
+            _rewrite = true;
+        }
+        if (_rewrite) {
+            rewrite();
+        } else if (_saved < _ids.size() || !_dropped.isEmpty()
+                   || !_savedBitmaps.containsAll(_bitmaps.keySet())) {
+            append();
+        }
+    }
+
+    /** Write the file anew, holding only the current records. */
+    private void rewrite() {
+        File temp = new File(_file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(
+                     Files.newOutputStream(temp.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            _saved = 0;
+            _savedBitmaps.clear();
+            _dropped.clear();
+            writeRecords(out);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            Files.move(temp.toPath(), _file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _length = _file.length();
+        _dead = 0;
+        _rewrite = false;
+    }
+
+    /** Append the records not yet in the file, over any record left
+     *  incomplete at its end. */
+    private void append() {
+        try (FileChannel channel = FileChannel.open(_file.toPath(),
+                                                    StandardOpenOption.WRITE)) {
+            channel.truncate(_length);
+            channel.position(_length);
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel)));
+            _dead += 2 * _dropped.size();
+            writeRecords(out);
+            out.flush();
+            _length = channel.size();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write to OUT the records of the objects numbered, the commits
+     *  dropped and the bitmaps made since the file was last written, and
+     *  note that they are in the file. */
+    private void writeRecords(DataOutputStream out) throws IOException {
+        for (int n = _saved; n < _ids.size(); n += 1) {
+            out.writeByte(OBJECT);
+            out.writeByte(kindNumber(_kinds.get(n)));
+            out.write(CommitGraph.toBytes(_ids.get(n)));
+        }
+        _saved = _ids.size();
+        for (String commit : _dropped) {
+            out.writeByte(DROP);
+            out.write(CommitGraph.toBytes(commit));
+        }
+        _dropped.clear();
+        for (Map.Entry<String, BitSet> e : _bitmaps.entrySet()) {
+            if (_savedBitmaps.add(e.getKey())) {
+                out.writeByte(BITMAP);
+                out.write(CommitGraph.toBytes(e.getKey()));
+                long[] words = e.getValue().toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+        }
+    }
+
+    /** Read the numbering and bitmaps from the file. */
+    private void read() {
+        ByteBuffer in;
+        try {
+            in = ByteBuffer.wrap(Files.readAllBytes(_file.toPath()));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw Utils.error("Corrupt bitmaps.");
+            }
+            _length = HEADER;
+            while (in.hasRemaining()) {
+                readRecord(in);
+                _length = in.position();
+            }
+        } catch (BufferUnderflowException excp) {
+            if (_length < HEADER) {
+                throw Utils.error("Corrupt bitmaps.");
+            }
+        }
+        _saved = _ids.size();
+        _savedBitmaps.addAll(_bitmaps.keySet());
+    }
+
+    /** Read one record from IN and apply it. */
+    private void readRecord(ByteBuffer in) {
+        byte type = in.get();
+        switch (type) {
+        case OBJECT:
+            String kind = KINDS[in.get()];
+            String id = readId(in);
+            _numbers.put(kind + id, _ids.size());
+            _kinds.add(kind);
+            _ids.add(id);
+            break;
+        case BITMAP:
+            String commit = readId(in);
+            long[] words = new long[in.getInt()];
+            in.asLongBuffer().get(words);
+            in.position(in.position() + words.length * Long.BYTES);
+            if (_bitmaps.put(commit, BitSet.valueOf(words)) != null) {
+                _dead += 1;
+            }
+            break;
+        case DROP:
+            _bitmaps.remove(readId(in));
+            _dead += 2;
+            break;
+        default:
+            throw Utils.error("Corrupt bitmaps.");
+        }
+    }
+
+    /** Return the id made of the next 20 raw bytes of IN. */
+    private static String readId(ByteBuffer in) {
+        byte[] raw = new byte[Utils.UID_LENGTH / 2];
+        in.get(raw);
+        return CommitGraph.toHex(raw);
+    }
+
+    /** Return the number of namespace KIND in the file. */
+    private static int kindNumber(String kind) {
+        for (int i = 0; i < KINDS.length; i += 1) {
+            if (KINDS[i].equals(kind)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("unknown namespace " + kind);
+    }
+}
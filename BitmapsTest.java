@@ -0,0 +1,191 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Bitmaps.
+ *  @author Srikar Hanumanula
+ */
+public class BitmapsTest {
+
+    /** Scratch directory and store. */
+    private StoreFixture _fixture;
+    /** Store whose objects are numbered. */
+    private ObjectStore _store;
+    /** Commits made, each the child of the one before. */
+    private ArrayList<String> _commits = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _store = _fixture.store();
+        for (int i = 0; i < 3; i += 1) {
+            commit();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    /** Store a commit on top of the last one made, changing one file and
+     *  keeping another, and return its id. */
+    private String commit() {
+        int n = _commits.size();
+        Map<String, String> files =
+            Map.of("kept", "kept\n", "dir/changed", "version " + n + "\n");
+        String commit = n == 0 ? _fixture.commit(files)
+            : _fixture.commit(files, _commits.get(n - 1));
+        _commits.add(commit);
+        return commit;
+    }
+
+    /** Return the namespaces and ids of the objects reachable from commit
+     *  TIP, found by walking its history. */
+    private Set<String> walk(String tip) {
+        HashSet<String> result = new HashSet<>();
+        ArrayDeque<String> queue = new ArrayDeque<>(List.of(tip));
+        while (!queue.isEmpty()) {
+            Commit commit = Commit.load(_store, queue.poll());
+            result.add(ObjectStore.COMMITS + " " + commit.getHash());
+            Tree.walk(_store, commit.getTree(), tree -> false,
+                (kind, id) -> result.add(kind + " " + id));
+            if (commit.getParent() != null) {
+                queue.add(commit.getParent());
+            }
+        }
+        return result;
+    }
+
+    /** Return the namespaces and ids of the objects in BITMAPS reachable
+     *  from commit TIP. */
+    private static Set<String> reachable(Bitmaps bitmaps, String tip) {
+        HashSet<String> result = new HashSet<>();
+        BitSet bits = bitmaps.reachable(tip);
+        for (int n = bits.nextSetBit(0); n >= 0; n = bits.nextSetBit(n + 1)) {
+            result.add(bitmaps.kind(n) + " " + bitmaps.id(n));
+        }
+        return result;
+    }
+
+    /** Return the bitmap file of _store. */
+    private File file() {
+        return Utils.join(_fixture.gitletDir(), "objects",
+                          Bitmaps.FILE_NAME);
+    }
+
+    /** Return the bitmaps of _store as saved. */
+    private Bitmaps open() {
+        return Bitmaps.open(_store, CommitGraph.open(_store));
+    }
+
+    /** Return the last commit made. */
+    private String tip() {
+        return _commits.get(_commits.size() - 1);
+    }
+
+    /** Check that the saved bitmaps give the reachable objects of every
+     *  commit made. */
+    private void checkAll() {
+        Bitmaps bitmaps = open();
+        for (String commit : _commits) {
+            assertEquals(walk(commit), reachable(bitmaps, commit));
+        }
+    }
+
+    @Test
+    public void onlyCreatedBitmapsAreKept() {
+        assertNull(open());
+        Bitmaps.refresh(_store, CommitGraph.open(_store), List.of(tip()));
+        assertFalse(file().exists());
+        Bitmaps bitmaps = Bitmaps.create(_store, CommitGraph.open(_store));
+        bitmaps.update(List.of(tip()));
+        bitmaps.save();
+        checkAll();
+    }
+
+    @Test
+    public void movingATipAppendsToTheFile() throws IOException {
+        Bitmaps bitmaps = Bitmaps.create(_store, CommitGraph.open(_store));
+        bitmaps.update(List.of(tip()));
+        bitmaps.save();
+        byte[] before = Files.readAllBytes(file().toPath());
+        commit();
+        Bitmaps.refresh(_store, CommitGraph.open(_store), List.of(tip()));
+        byte[] after = Files.readAllBytes(file().toPath());
+        assertTrue(after.length > before.length);
+        assertArrayEquals(before, Arrays.copyOf(after, before.length));
+        checkAll();
+    }
+
+    @Test
+    public void savingWithoutChangesWritesNothing() {
+        Bitmaps bitmaps = Bitmaps.create(_store, CommitGraph.open(_store));
+        bitmaps.update(List.of(tip()));
+        bitmaps.save();
+        long length = file().length();
+        Bitmaps.refresh(_store, CommitGraph.open(_store), List.of(tip()));
+        assertEquals(length, file().length());
+    }
+
+    @Test
+    public void manyMovesRewriteTheFile() {
+        Bitmaps bitmaps = Bitmaps.create(_store, CommitGraph.open(_store));
+        bitmaps.update(List.of(tip()));
+        bitmaps.save();
+        boolean shrank = false;
+        for (int i = 0; i < 40; i += 1) {
+            long length = file().length();
+            commit();
+            Bitmaps.refresh(_store, CommitGraph.open(_store),
+                            List.of(tip()));
+            shrank |= file().length() < length;
+        }
+        assertTrue(shrank);
+        checkAll();
+    }
+
+    @Test
+    public void severalTipsAreKept() {
+        String first = tip();
+        commit();
+        Bitmaps.create(_store, CommitGraph.open(_store)).save();
+        Bitmaps.refresh(_store, CommitGraph.open(_store),
+                        List.of(first, tip()));
+        Bitmaps.refresh(_store, CommitGraph.open(_store), List.of(first));
+        checkAll();
+    }
+
+    @Test
+    public void incompleteRecordsAreIgnored() throws IOException {
+        Bitmaps bitmaps = Bitmaps.create(_store, CommitGraph.open(_store));
+        bitmaps.update(List.of(tip()));
+        bitmaps.save();
+        long length = file().length();
+        try (RandomAccessFile out = new RandomAccessFile(file(), "rw")) {
+            out.seek(length);
+            out.write(new byte[] { 1, 2, 3 });
+        }
+        checkAll();
+        commit();
+        Bitmaps.refresh(_store, CommitGraph.open(_store), List.of(tip()));
+        checkAll();
+    }
+
+}
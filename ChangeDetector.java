@@ -0,0 +1,53 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/** Decides whether working files differ from blobs without ever comparing
+ *  their lines.  A file is checked against the stat cache first, then by
+ *  size against the size recorded in the blob's header, and only when
+ *  both of those are inconclusive is it read and hashed.
+ *  @author Srikar Hanumanula
+ */
+class ChangeDetector {
+    /** Store holding the blobs compared against. */
+    private final ObjectStore _store;
+    /** Cache of working file hashes. */
+    private final StatCache _cache;
+
+    /** A detector comparing against the blobs of STORE, using CACHE. */
+    ChangeDetector(ObjectStore store, StatCache cache) {
+        _store = store;
+        _cache = cache;
+    }
+
+    /** A detector for the repository in the current directory. */
+    ChangeDetector() {
+        this(ObjectStore.local(), StatCache.local());
+    }
+
+    /** Return true iff the working file PATH exists. */
+    boolean exists(String path) {
+        BasicFileAttributes attrs = StatCache.stat(new File(path));
+        return attrs != null && attrs.isRegularFile();
+    }
+
+    /** Return true iff the contents of the working file PATH, which must
+     *  exist, differ from blob BLOB. */
+    boolean changed(String path, String blob) {
+        return changed(path, blob, StatCache.stat(new File(path)));
+    }
+
+    /** Return true iff the contents of the working file PATH, whose
+     *  attributes are ATTRS, differ from blob BLOB. */
+    boolean changed(String path, String blob, BasicFileAttributes attrs) {
+        String known = _cache.cached(path, attrs);
+        if (known != null) {
+            return !known.equals(blob);
+        }
+        if (attrs.size() != _store.size(ObjectStore.BLOBS, blob)) {
+            return true;
+        }
+        return !blob.equals(_cache.hash(path));
+    }
+}
@@ -0,0 +1,137 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of ChangeDetector and of status --porcelain.
+ *  @author Srikar Hanumanula
+ */
+public class ChangeDetectorTest {
+
+    /** Scratch directory and store. */
+    private StoreFixture _fixture;
+    /** The stat cache of the detector. */
+    private StatCache _cache;
+    /** The detector tested. */
+    private ChangeDetector _detector;
+    /** Index file of _cache. */
+    private File _index;
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _index = Utils.join(_fixture.dir(), StatCache.FILE_NAME);
+        _cache = new StatCache(_index);
+        _detector = new ChangeDetector(_fixture.store(), _cache);
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    /** Return the path of the working file NAME, as given to _detector. */
+    private String path(String name) {
+        return Utils.join(_fixture.dir(), name).getPath();
+    }
+
+    @Test
+    public void filesOfAnotherSizeChangedWithoutBeingHashed() {
+        String blob = _fixture.blob("short\n");
+        _fixture.write("f", "much longer\n");
+        assertTrue(_detector.changed(path("f"), blob));
+        _cache.save();
+        assertFalse(_index.exists());
+    }
+
+    @Test
+    public void filesOfTheSameSizeAreHashed() {
+        String blob = _fixture.blob("one\n");
+        _fixture.write("f", "two\n");
+        assertTrue(_detector.changed(path("f"), blob));
+        _fixture.write("f", "one\n");
+        assertFalse(_detector.changed(path("f"), blob));
+        _cache.save();
+        assertTrue(_index.exists());
+    }
+
+    @Test
+    public void trustedCacheEntriesDecide() throws IOException {
+        String one = _fixture.blob("one\n"), two = _fixture.blob("two\n");
+        _fixture.write("f", "one\n");
+        File file = new File(path("f"));
+        FileTime old =
+            FileTime.fromMillis(System.currentTimeMillis() - 10_000);
+        Files.setLastModifiedTime(file.toPath(), old);
+        _cache.hash(path("f"));
+        _cache.save();
+        _fixture.write("f", "two\n");
+        Files.setLastModifiedTime(file.toPath(), old);
+        ChangeDetector detector =
+            new ChangeDetector(_fixture.store(), new StatCache(_index));
+        assertFalse(detector.changed(path("f"), one));
+        assertTrue(detector.changed(path("f"), two));
+    }
+
+    @Test
+    public void onlyRegularFilesExist() {
+        _fixture.write("dir/f", "x\n");
+        assertTrue(_detector.exists(path("dir/f")));
+        assertFalse(_detector.exists(path("dir")));
+        assertFalse(_detector.exists(path("absent")));
+    }
+
+    @Test
+    public void porcelainStatusListsChangedPathsInOrder() {
+        StoreFixture repo = new StoreFixture();
+        try {
+            repo.gitlet("init");
+            for (String name : new String[] {"a", "b", "c", "f"}) {
+                repo.write(name + ".txt", name + "1\n");
+                repo.gitlet("add", name + ".txt");
+            }
+            repo.gitlet("commit", "base");
+            repo.write("a.txt", "a changed\n");
+            Utils.join(repo.dir(), "b.txt").delete();
+            repo.gitlet("rm", "c.txt");
+            repo.write("d.txt", "d1\n");
+            repo.gitlet("add", "d.txt");
+            repo.write("e.txt", "e1\n");
+            repo.write("f.txt", "f2\n");
+            assertEquals(" M a.txt\n D b.txt\nD  c.txt\nA  d.txt\n"
+                         + "?? e.txt\n M f.txt\n",
+                         repo.gitlet("status", "--porcelain"));
+        } finally {
+            repo.delete();
+        }
+    }
+
+    @Test
+    public void statusSavesTheHashesItComputes() throws IOException {
+        StoreFixture repo = new StoreFixture();
+        try {
+            repo.gitlet("init");
+            repo.write("a.txt", "a1\n");
+            repo.gitlet("add", "a.txt");
+            repo.gitlet("commit", "base");
+            File a = Utils.join(repo.dir(), "a.txt");
+            Files.setLastModifiedTime(a.toPath(), FileTime.fromMillis(
+                System.currentTimeMillis() - 10000));
+            File index = Utils.join(repo.gitletDir(), StatCache.FILE_NAME);
+            assertTrue(index.delete());
+            assertEquals("", repo.gitlet("status", "--porcelain"));
+            StatCache cache = new StatCache(index);
+            assertNotNull(cache.cached("a.txt", StatCache.stat(a)));
+        } finally {
+            repo.delete();
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package gitlet;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/** Moves the working directory from one commit to another by touching
+ *  only the paths that differ.  The paths whose blobs differ are found by
+ *  comparing the commits' trees, passing over the subtrees they share.  As
+ *  in every checkout, the working files of the other paths are restored if
+ *  they were deleted or edited; these are found from the attributes read
+ *  when the working tree was listed, checked against the stat cache, so
+ *  no file is examined again unless that is inconclusive.  Files are
+ *  deleted and written in parallel on the common fork-join pool.
+ *  @author Srikar Hanumanula
+ */
+class CheckoutEngine {
+    /** Store holding the blobs checked out. */
+    private final ObjectStore _store;
+    /** Cache of working file hashes, kept up to date. */
+    private final StatCache _cache;
+    /** The working tree checked out into. */
+    private final WorkingTree _tree;
+    /** Detects working files that no longer match their blobs. */
+    private final ChangeDetector _detector;
+
+    /** An engine checking out blobs of STORE into TREE, using and updating
+     *  CACHE. */
+    CheckoutEngine(ObjectStore store, StatCache cache, WorkingTree tree) {
+        _store = store;
+        _cache = cache;
+        _tree = tree;
+        _detector = new ChangeDetector(store, cache);
+    }
+
+    /** An engine for the repository in the current directory. */
+    CheckoutEngine() {
+        this(ObjectStore.local(), StatCache.local(), WorkingTree.local());
+    }
+
+    /** Make the working directory, which holds commit FROM, hold commit
+     *  TO instead.  Working files tracked by neither are not touched. */
+    void checkout(Commit from, Commit to) {
+        Map<String, String> files = to.getBlobs();
+        TreeMap<String, String[]> changed =
+            Tree.diff(_store, from.getTree(), to.getTree());
+        List<String> removed = new ArrayList<>();
+        for (Map.Entry<String, String[]> e : changed.entrySet()) {
+            if (e.getValue()[1] == null) {
+                removed.add(e.getKey());
+            }
+        }
+        List<String> written = files.keySet().parallelStream()
+            .filter(path -> changed.containsKey(path)
+                    || modified(path, files.get(path)))
+            .collect(Collectors.toList());
+        removed.parallelStream().forEach(this::delete);
+        written.parallelStream().forEach(path -> write(path, files.get(path)));
+    }
+
+    /** Return true iff the working file PATH, which should hold blob BLOB,
+     *  has been deleted or edited. */
+    private boolean modified(String path, String blob) {
+        BasicFileAttributes attrs = _tree.attributes(path);
+        return attrs == null || _detector.changed(path, blob, attrs);
+    }
+
+    /** Delete the working file PATH. */
+    private void delete(String path) {
+        _tree.delete(path);
+        _cache.remove(path);
+    }
+
+    /** Write blob BLOB to the working file PATH. */
+    private void write(String path, String blob) {
+        _store.copyTo(ObjectStore.BLOBS, blob, _tree.create(path));
+        _cache.record(path, blob);
+    }
+}
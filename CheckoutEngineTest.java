@@ -0,0 +1,122 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of CheckoutEngine.
+ *  @author Srikar Hanumanula
+ */
+public class CheckoutEngineTest {
+
+    /** A modification time long past, in ms since the epoch. */
+    private static final long OLD = 1_000_000_000_000L;
+
+    /** Scratch directory and store. */
+    private StoreFixture _fixture;
+    /** The engine tested. */
+    private CheckoutEngine _engine;
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _engine = new CheckoutEngine(_fixture.store(), new StatCache(
+            Utils.join(_fixture.dir(), StatCache.FILE_NAME)),
+            new WorkingTree(_fixture.dir()));
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    /** Return the working file NAME. */
+    private File file(String name) {
+        return Utils.join(_fixture.dir(), name);
+    }
+
+    /** Return a commit whose snapshot maps the working files NAMES, in
+     *  order, to blobs holding TEXTS, written with the working files. */
+    private Commit checkedOut(String[] names, String[] texts) {
+        for (int i = 0; i < names.length; i += 1) {
+            _fixture.write(names[i], texts[i]);
+        }
+        return commit(names, texts);
+    }
+
+    /** Return a commit whose snapshot maps the working files NAMES, in
+     *  order, to blobs holding TEXTS. */
+    private Commit commit(String[] names, String[] texts) {
+        Map<String, String> files = new TreeMap<>();
+        for (int i = 0; i < names.length; i += 1) {
+            files.put(names[i], texts[i]);
+        }
+        return Commit.load(_fixture.store(), _fixture.commit(files));
+    }
+
+    @Test
+    public void changedPathsAreWrittenOrDeleted() {
+        Commit from = checkedOut(new String[] {"a", "b", "dir/c"},
+                                 new String[] {"a\n", "b\n", "c\n"});
+        Commit to = commit(new String[] {"a", "b", "dir/d"},
+                           new String[] {"a\n", "b2\n", "d\n"});
+        _engine.checkout(from, to);
+        assertEquals("a\n", _fixture.read("a"));
+        assertEquals("b2\n", _fixture.read("b"));
+        assertNull(_fixture.read("dir/c"));
+        assertEquals("d\n", _fixture.read("dir/d"));
+    }
+
+    @Test
+    public void untrackedFilesArePreserved() {
+        Commit from = checkedOut(new String[] {"a"}, new String[] {"a\n"});
+        _fixture.write("untracked", "mine\n");
+        _engine.checkout(from, commit(new String[] {"b"},
+                                      new String[] {"b\n"}));
+        assertEquals("mine\n", _fixture.read("untracked"));
+        assertNull(_fixture.read("a"));
+        assertEquals("b\n", _fixture.read("b"));
+    }
+
+    @Test
+    public void deletedAndEditedFilesAreRestored() {
+        String[] names = {"a", "b"}, texts = {"a\n", "b\n"};
+        Commit from = checkedOut(names, texts);
+        file("a").delete();
+        _fixture.write("b", "edited\n");
+        _engine.checkout(from, from);
+        assertEquals("a\n", _fixture.read("a"));
+        assertEquals("b\n", _fixture.read("b"));
+    }
+
+    @Test
+    public void branchCheckoutsLeaveUnchangedAndUntrackedFiles() {
+        StoreFixture repo = new StoreFixture();
+        try {
+            repo.gitlet("init");
+            repo.write("a.txt", "a\n");
+            repo.gitlet("add", "a.txt");
+            repo.gitlet("commit", "add a");
+            repo.gitlet("branch", "other");
+            repo.write("b.txt", "b\n");
+            repo.gitlet("add", "b.txt");
+            repo.gitlet("commit", "add b");
+            repo.write("untracked.txt", "mine\n");
+            Utils.join(repo.dir(), "a.txt").setLastModified(OLD);
+            assertEquals("", repo.gitlet("checkout", "other"));
+            assertNull(repo.read("b.txt"));
+            assertEquals("mine\n", repo.read("untracked.txt"));
+            assertEquals(OLD, Utils.join(repo.dir(), "a.txt").lastModified());
+            repo.gitlet("checkout", "master");
+            assertEquals("b\n", repo.read("b.txt"));
+        } finally {
+            repo.delete();
+        }
+    }
+
+}
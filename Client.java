@@ -0,0 +1,67 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+/** Thin client for a gitlet daemon: sends its arguments as a command to
+ *  the daemon serving the repository in the current directory and prints
+ *  the reply, its output to standard output and its errors to standard
+ *  error, exiting with the status of the command.  If no daemon is
+ *  running, the command is run in this process instead, with the same
+ *  output.  Once the command has been sent, it is never run again here,
+ *  since the daemon may have run it already: if the connection fails, the
+ *  client reports the failure and exits.
+ *  @author Srikar Hanumanula
+ */
+public class Client {
+    /** Usage: java gitlet.Client ARGS, where ARGS are as for gitlet.Main. */
+    public static void main(String... args) {
+        File socket = Daemon.socket(new File(Gitlet.GITLET_DIR));
+        if (!socket.exists()) {
+            Main.main(args);
+            return;
+        }
+        SocketChannel channel = connect(socket);
+        if (channel == null) {
+            Main.main(args);
+            return;
+        }
+        try (channel) {
+            Daemon.writeRequest(Channels.newOutputStream(channel), args);
+            int status = Daemon.readReply(Channels.newInputStream(channel),
+                                          System.out, System.err);
+            if (status != 0) {
+                System.exit(status);
+            }
+        } catch (IOException excp) {
+            System.out.flush();
+            System.err.println("Lost connection to the gitlet daemon: "
+                               + excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Return a channel connected to the daemon listening on SOCKET, or
+     *  null if none can be reached. */
+    private static SocketChannel connect(File socket) {
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(UnixDomainSocketAddress.of(socket.toPath()));
+            return channel;
+        } catch (IOException excp) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    /* Nothing more to release. */
+                }
+            }
+            return null;
+        }
+    }
+}
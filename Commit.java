@@ -1,21 +1,68 @@
 package gitlet;
 
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.TreeMap;
 
+/** A commit: message, time, parents and the root tree of its snapshot.
+ *  Commits are stored in a compact binary form, and a commit's id is the
+ *  hash of that form, computed when the commit is made or read and kept.
+ *  The form is
+ *
+ *      int     MAGIC
+ *      byte    VERSION
+ *      long    time, in ms since the epoch
+ *      byte    number of parents, then each parent's 20-byte raw id
+ *      20-byte raw id of the root tree
+ *      int     length of the message in bytes, then its UTF-8 bytes
+ *
+ *  Commits made before this form was introduced are Java-serialized, and
+ *  are read, and keep their ids, as they are.  Their snapshots may be flat
+ *  maps of blobs rather than trees; the trees of such snapshots are
+ *  stored when the repository is migrated, so that reading a commit
+ *  never writes to the store.
+ *  @author Srikar Hanumanula
+ */
 public class Commit implements Serializable {
+    /** Serialization version, fixed so older repositories stay readable. */
+    private static final long serialVersionUID = 2376203008181117202L;
+
+    /** File signature, "GCMT". */
+    private static final int MAGIC = 0x47434d54;
+
+    /** Format version. */
+    private static final byte VERSION = 1;
+
+    /** Format of commit timestamps. */
+    private static final String DATE_FORMAT = "EEE MMM dd HH:mm:ss yyyy Z";
+
+    /** Formats commit timestamps. */
+    private static final DateTimeFormatter FORMATTER =
+        DateTimeFormatter.ofPattern(DATE_FORMAT);
+
     /** Commit message. */
     private String _message;
 
-    /** Commit timestamp. */
+    /** Commit timestamp, in Java-serialized commits. */
     private String _timestamp;
 
-    /** Commit blobs. */
-    private TreeMap<String, String> blobs = new TreeMap<>();
+    /** Commit blobs, in Java-serialized commits made before trees. */
+    private TreeMap<String, String> blobs;
+
+    /** Root tree of the snapshot. */
+    private String _tree;
 
     /** Commit parent. */
     private String _parent;
@@ -23,58 +70,139 @@ public class Commit implements Serializable {
     /** Commit merge parent. */
     private String _parent2;
 
-    public Commit(String message, String parent) {
-        _message = message;
-        _parent = parent;
-        String format = "EEE MMM dd HH:mm:ss yyyy Z";
-        SimpleDateFormat f = new SimpleDateFormat(format);
-        if (_parent == null) {
-            _timestamp = f.format(new Date(0));
-        } else {
-            _timestamp = f.format(new Date());
-            File p = new File(Gitlet.GITLET_DIR + parent);
-            Commit parentObj = Utils.readObject(p, Commit.class);
-            this.blobs = parentObj.blobs;
-        }
-    }
+    /** Commit time, in ms since the epoch. */
+    private transient long _time;
+
+    /** Store this commit was loaded from, if any. */
+    private transient ObjectStore _store;
+
+    /** Id of this commit. */
+    private transient String _hash;
 
-    public Commit(String message, String parent, String parent2) {
+    /** Snapshot of the root tree, once read. */
+    private transient TreeMap<String, String> _files;
+
+    public Commit(String message, String tree, String parent,
+                  String parent2) {
         _message = message;
+        _tree = tree;
         _parent = parent;
         _parent2 = parent2;
-        String format = "EEE MMM dd HH:mm:ss yyyy Z";
-        SimpleDateFormat f = new SimpleDateFormat(format);
-        if (_parent == null) {
-            _timestamp = f.format(new Date(0));
-        } else {
-            _timestamp = f.format(new Date());
-            File p = new File(Gitlet.GITLET_DIR + parent);
-            Commit parentObj = Utils.readObject(p, Commit.class);
-            this.blobs = parentObj.blobs;
-        }
+        _time = parent == null ? 0 : System.currentTimeMillis();
+        _store = ObjectStore.local();
+        _hash = Utils.sha1(encode());
+    }
+
+    /** A commit read from the binary form. */
+    private Commit() {
     }
 
     public static Commit getCommit(String abrev) {
         if (abrev == null) {
             return null;
         }
-        String hash = null;
-        for (String filename : Utils.plainFilenamesIn(Gitlet.GITLET_DIR)) {
-            if (filename.indexOf(abrev) == 0) {
-                hash = filename;
+        ObjectStore store = ObjectStore.local();
+        String hash = store.resolve(ObjectStore.COMMITS, abrev);
+        if (hash == null) {
+            throw Utils.error("No commit with that id exists.");
+        }
+        return load(store, hash);
+    }
+
+    /** Return commit HASH of STORE, decoding it only if STORE has not
+     *  already. */
+    public static Commit load(ObjectStore store, String hash) {
+        return store.commits().get(hash, id -> read(store, id));
+    }
+
+    /** Return commit HASH of STORE, decoded afresh. */
+    private static Commit read(ObjectStore store, String hash) {
+        byte[] contents = store.read(ObjectStore.COMMITS, hash);
+        Commit commit;
+        if (isEncoded(contents)) {
+            commit = decode(contents);
+        } else {
+            commit = Utils.deserialize(contents, Commit.class);
+        }
+        commit._store = store;
+        commit._hash = hash;
+        return commit;
+    }
+
+    /** Return the binary form of this commit. */
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(_time);
+            out.writeByte(_parent == null ? 0 : _parent2 == null ? 1 : 2);
+            if (_parent != null) {
+                out.write(CommitGraph.toBytes(_parent));
+            }
+            if (_parent != null && _parent2 != null) {
+                out.write(CommitGraph.toBytes(_parent2));
             }
+            out.write(CommitGraph.toBytes(getTree()));
+            byte[] message = _message.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(message.length);
+            out.write(message);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
         }
-        if (hash == null) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
+        return bytes.toByteArray();
+    }
+
+    /** Return true iff CONTENTS are a commit in the binary form. */
+    private static boolean isEncoded(byte[] contents) {
+        return contents.length >= 4
+            && ((contents[0] & 0xff) << 24 | (contents[1] & 0xff) << 16
+                | (contents[2] & 0xff) << 8 | (contents[3] & 0xff)) == MAGIC;
+    }
+
+    /** Return the commit whose binary form is CONTENTS. */
+    private static Commit decode(byte[] contents) {
+        Commit commit = new Commit();
+        byte[] raw = new byte[Utils.UID_LENGTH / 2];
+        try (DataInputStream in =
+                 new DataInputStream(new ByteArrayInputStream(contents))) {
+            in.readInt();
+            if (in.readByte() != VERSION) {
+                throw Utils.error("Unknown commit format.");
+            }
+            commit._time = in.readLong();
+            int parents = in.readByte();
+            for (int i = 0; i < parents; i += 1) {
+                in.readFully(raw);
+                if (i == 0) {
+                    commit._parent = CommitGraph.toHex(raw);
+                } else {
+                    commit._parent2 = CommitGraph.toHex(raw);
+                }
+            }
+            in.readFully(raw);
+            commit._tree = CommitGraph.toHex(raw);
+            byte[] message = new byte[in.readInt()];
+            in.readFully(message);
+            commit._message = new String(message, StandardCharsets.UTF_8);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
         }
-        File commitFile = new File(Gitlet.GITLET_DIR + hash);
-        Commit result = Utils.readObject(commitFile, Commit.class);
-        return result;
+        commit._hash = Utils.sha1(contents);
+        return commit;
     }
 
-    public void setParent2(String hash) {
-        _parent2 = hash;
+    /** Read a commit Java-serialized in the older form, whose id must be
+     *  set by the reader. */
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        try {
+            _time = new SimpleDateFormat(DATE_FORMAT).parse(_timestamp)
+                .getTime();
+        } catch (ParseException e) {
+            _time = 0;
+        }
     }
 
     public String getMessage() {
@@ -82,7 +210,12 @@ public class Commit implements Serializable {
     }
 
     public String getTimestamp() {
-        return _timestamp;
+        return FORMATTER.format(
+            Instant.ofEpochMilli(_time).atZone(ZoneId.systemDefault()));
+    }
+
+    public long getTime() {
+        return _time;
     }
 
     public String getParent() {
@@ -90,11 +223,39 @@ public class Commit implements Serializable {
     }
 
     public String getHash() {
-        return Utils.sha1(Utils.serialize(this));
+        if (_hash == null) {
+            _hash = Utils.sha1(encode());
+        }
+        return _hash;
     }
 
     public TreeMap<String, String> getBlobs() {
-        return this.blobs;
+        if (blobs != null) {
+            return blobs;
+        }
+        if (_files == null) {
+            _files = Tree.flatten(store(), _tree);
+        }
+        return _files;
+    }
+
+    public String getTree() {
+        if (_tree == null) {
+            _tree = Tree.id(blobs);
+        }
+        return _tree;
+    }
+
+    /** Store the trees of this commit's snapshot if it is a flat map of
+     *  blobs, as in commits made before trees. */
+    void storeTrees() {
+        if (blobs != null) {
+            Tree.build(store(), blobs);
+        }
+    }
+
+    private ObjectStore store() {
+        return _store == null ? ObjectStore.local() : _store;
     }
 
     public String getParent2() {
@@ -0,0 +1,337 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** The commit graph of a repository, kept in the binary file
+ *  .gitlet/commit-graph so that history can be walked without reading
+ *  commit objects.  After an 8-byte header the file is a sequence of
+ *  fixed-width records, one per commit and always after the records of
+ *  its parents:
+ *
+ *      20 bytes   commit id (raw SHA-1)
+ *       4 bytes   index of the first parent, or -1
+ *       4 bytes   index of the second parent, or -1
+ *       8 bytes   commit time in milliseconds since the epoch
+ *       4 bytes   generation number (1 for root commits, otherwise one
+ *                 more than the largest generation of the parents)
+ *
+ *  New commits are appended; the file is never rewritten.  An append
+ *  first cuts off any partial record left at the end of the file by an
+ *  interrupted write, so later records stay aligned.  Appends hold a lock
+ *  on the file, so processes sharing it append one at a time; a graph
+ *  that finds records appended by another process since it read the file
+ *  rereads it and adds its own new commits after them.
+ *  @author Srikar Hanumanula
+ */
+class CommitGraph {
+    /** Name of the graph file within a .gitlet directory. */
+    static final String FILE_NAME = "commit-graph";
+    /** Marks a missing parent. */
+    static final int NONE = -1;
+    /** File signature, "CGPH". */
+    private static final int MAGIC = 0x43475048;
+    /** Format version. */
+    private static final int VERSION = 1;
+    /** Size of the file header in bytes. */
+    private static final int HEADER = 8;
+    /** Size of a raw SHA-1 in bytes. */
+    private static final int ID_BYTES = Utils.UID_LENGTH / 2;
+    /** Size of one record in bytes. */
+    private static final int RECORD = ID_BYTES + 4 + 4 + 8 + 4;
+
+    /** Graph of the repository in the current directory. */
+    private static CommitGraph _local;
+
+    /** The graph file. */
+    private final File _file;
+    /** Store holding the commits described by this graph. */
+    private final ObjectStore _store;
+    /** Record number of each commit id. */
+    private final HashMap<String, Integer> _index = new HashMap<>();
+    /** Commit ids by record number. */
+    private String[] _ids = new String[16];
+    /** First parents by record number. */
+    private int[] _parent1 = new int[16];
+    /** Second parents by record number. */
+    private int[] _parent2 = new int[16];
+    /** Commit times by record number. */
+    private long[] _times = new long[16];
+    /** Generation numbers by record number. */
+    private int[] _generations = new int[16];
+    /** Number of records. */
+    private int _size;
+    /** Length of the graph file up to the end of its last whole record. */
+    private long _length;
+    /** Number of records in the graph file. */
+    private int _flushed;
+    /** Records not yet appended to the file. */
+    private final ByteArrayOutputStream _pending = new ByteArrayOutputStream();
+
+    /** The graph of the commits in STORE, read from FILE. */
+    private CommitGraph(ObjectStore store, File file) {
+        _store = store;
+        _file = file;
+    }
+
+    /** Return the graph of the repository in the current directory. */
+    static CommitGraph local() {
+        if (_local == null) {
+            _local = open(ObjectStore.local());
+        }
+        return _local;
+    }
+
+    /** Forget the commit graph of the repository in the current directory, so
+     *  that local reads it afresh. */
+    static void discardLocal() {
+        _local = null;
+    }
+
+    /** Return the graph of the commits in STORE, building the graph file
+     *  from the commit objects if it does not exist yet. */
+    static CommitGraph open(ObjectStore store) {
+        CommitGraph graph =
+            new CommitGraph(store, Utils.join(store.dir(), FILE_NAME));
+        if (graph._file.isFile()) {
+            graph.load();
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(VERSION);
+            graph._pending.write(header.array(), 0, HEADER);
+            for (String id : store.list(ObjectStore.COMMITS)) {
+                graph.insert(id);
+            }
+            graph.flush();
+        }
+        return graph;
+    }
+
+    /** Return the number of commits in the graph. */
+    int size() {
+        return _size;
+    }
+
+    /** Return true iff commit ID has a record. */
+    boolean contains(String id) {
+        return _index.containsKey(id);
+    }
+
+    /** Return the record number of commit ID, adding it and any missing
+     *  ancestors from the object store if necessary. */
+    int index(String id) {
+        Integer k = _index.get(id);
+        if (k != null) {
+            return k;
+        }
+        insert(id);
+        flush();
+        return _index.get(id);
+    }
+
+    /** Add commit ID and any missing ancestors to the graph. */
+    void add(String id) {
+        index(id);
+    }
+
+    /** Return the commit id of record K. */
+    String id(int k) {
+        return _ids[k];
+    }
+
+    /** Return the first parent of record K, or NONE. */
+    int parent1(int k) {
+        return _parent1[k];
+    }
+
+    /** Return the second parent of record K, or NONE. */
+    int parent2(int k) {
+        return _parent2[k];
+    }
+
+    /** Return the commit time of record K. */
+    long time(int k) {
+        return _times[k];
+    }
+
+    /** Return the generation number of record K. */
+    int generation(int k) {
+        return _generations[k];
+    }
+
+    /** Add commit ID and its missing ancestors, parents first, without
+     *  writing them out.  Return the record number of ID. */
+    private int insert(String id) {
+        HashMap<String, Commit> loaded = new HashMap<>();
+        ArrayDeque<String> todo = new ArrayDeque<>();
+        todo.push(id);
+        while (!todo.isEmpty()) {
+            String top = todo.peek();
+            if (_index.containsKey(top)) {
+                todo.pop();
+                continue;
+            }
+            Commit commit = loaded.get(top);
+            if (commit == null) {
+                commit = Commit.load(_store, top);
+                loaded.put(top, commit);
+            }
+            boolean ready = true;
+            for (String p : new String[] {commit.getParent(),
+                                          commit.getParent2()}) {
+                if (p != null && !_index.containsKey(p)) {
+                    todo.push(p);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                todo.pop();
+                loaded.remove(top);
+                append(top, indexOrNone(commit.getParent()),
+                       indexOrNone(commit.getParent2()), commit.getTime());
+            }
+        }
+        return _index.get(id);
+    }
+
+    /** Return the record number of ID, or NONE if ID is null. */
+    private int indexOrNone(String id) {
+        return id == null ? NONE : _index.get(id);
+    }
+
+    /** Add a record for commit ID with parents P1 and P2 and time TIME. */
+    private void append(String id, int p1, int p2, long time) {
+        int gen = 1;
+        if (p1 != NONE) {
+            gen = Math.max(gen, _generations[p1] + 1);
+        }
+        if (p2 != NONE) {
+            gen = Math.max(gen, _generations[p2] + 1);
+        }
+        ByteBuffer rec = ByteBuffer.allocate(RECORD);
+        rec.put(toBytes(id)).putInt(p1).putInt(p2).putLong(time).putInt(gen);
+        _pending.write(rec.array(), 0, RECORD);
+        record(id, p1, p2, time, gen);
+    }
+
+    /** Add a record to the in-memory tables. */
+    private void record(String id, int p1, int p2, long time, int gen) {
+        if (_size == _ids.length) {
+            int n = 2 * _size;
+            _ids = Arrays.copyOf(_ids, n);
+            _parent1 = Arrays.copyOf(_parent1, n);
+            _parent2 = Arrays.copyOf(_parent2, n);
+            _times = Arrays.copyOf(_times, n);
+            _generations = Arrays.copyOf(_generations, n);
+        }
+        _ids[_size] = id;
+        _parent1[_size] = p1;
+        _parent2[_size] = p2;
+        _times[_size] = time;
+        _generations[_size] = gen;
+        _index.put(id, _size);
+        _size += 1;
+    }
+
+    /** Append pending records to the graph file, over any record left
+     *  incomplete at its end, first rereading the file if another process
+     *  has added records to it. */
+    private void flush() {
+        if (_pending.size() == 0) {
+            return;
+        }
+        try (FileChannel channel =
+                 FileChannel.open(_file.toPath(), StandardOpenOption.CREATE,
+                                  StandardOpenOption.READ,
+                                  StandardOpenOption.WRITE)) {
+            channel.lock();
+            long added = channel.size() - _length;
+            if (added >= (_length == 0 ? HEADER : RECORD)) {
+                reload(channel);
+            }
+            channel.truncate(_length);
+            channel.position(_length);
+            ByteBuffer buf = ByteBuffer.wrap(_pending.toByteArray());
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            _length = channel.size();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _pending.reset();
+        _flushed = _size;
+    }
+
+    /** Replace the records with those of the graph file, read from
+     *  CHANNEL, and add again the commits whose records were pending. */
+    private void reload(FileChannel channel) throws IOException {
+        String[] mine = Arrays.copyOfRange(_ids, _flushed, _size);
+        _index.clear();
+        _size = 0;
+        _pending.reset();
+        ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, buf.position()) < 0) {
+                break;
+            }
+        }
+        buf.flip();
+        load(buf);
+        for (String id : mine) {
+            if (!_index.containsKey(id)) {
+                insert(id);
+            }
+        }
+    }
+
+    /** Read the graph file.  A trailing partial record, left by an
+     *  interrupted write, is ignored. */
+    private void load() {
+        load(ByteBuffer.wrap(Utils.readContents(_file)));
+    }
+
+    /** Read the records of the graph file whose contents are BUF, ignoring
+     *  a trailing partial record. */
+    private void load(ByteBuffer buf) {
+        if (buf.remaining() < HEADER || buf.getInt() != MAGIC
+            || buf.getInt() != VERSION) {
+            throw Utils.error("Corrupt commit graph.");
+        }
+        byte[] raw = new byte[ID_BYTES];
+        while (buf.remaining() >= RECORD) {
+            buf.get(raw);
+            record(toHex(raw), buf.getInt(), buf.getInt(), buf.getLong(),
+                   buf.getInt());
+        }
+        _length = buf.position();
+        _flushed = _size;
+    }
+
+    /** Return the raw bytes of hexadecimal id ID. */
+    static byte[] toBytes(String id) {
+        byte[] result = new byte[id.length() / 2];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = (byte) Integer.parseInt(
+                id.substring(2 * i, 2 * i + 2), 16);
+        }
+        return result;
+    }
+
+    /** Return the hexadecimal form of raw id RAW. */
+    static String toHex(byte[] raw) {
+        StringBuilder result = new StringBuilder(2 * raw.length);
+        for (byte b : raw) {
+            result.append(Character.forDigit((b >> 4) & 0xf, 16));
+            result.append(Character.forDigit(b & 0xf, 16));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,162 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of CommitGraph.
+ *  @author Srikar Hanumanula
+ */
+public class CommitGraphTest {
+
+    /** Scratch directory and store. */
+    private StoreFixture _fixture;
+    /** The store of _fixture. */
+    private ObjectStore _store;
+    /** A root commit, its child, a second root, and a merge of the child
+     *  and the second root. */
+    private String _root, _child, _other, _merge;
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _store = _fixture.store();
+        _root = _fixture.commit(Map.of("a", "1\n"));
+        _child = _fixture.commit(Map.of("a", "2\n"), _root);
+        _other = _fixture.commit(Map.of("b", "1\n"));
+        _merge = _fixture.commit(Map.of("a", "2\n", "b", "1\n"),
+                                 _child, _other);
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    /** Return the graph file of _store. */
+    private File file() {
+        return Utils.join(_fixture.gitletDir(), CommitGraph.FILE_NAME);
+    }
+
+    /** Return the generation number of commit ID in GRAPH. */
+    private static int generation(CommitGraph graph, String id) {
+        return graph.generation(graph.index(id));
+    }
+
+    @Test
+    public void openingBuildsTheGraphFromTheStore() {
+        assertFalse(file().exists());
+        CommitGraph graph = CommitGraph.open(_store);
+        assertTrue(file().isFile());
+        assertEquals(4, graph.size());
+        for (String id : new String[] {_root, _child, _other, _merge}) {
+            assertTrue(graph.contains(id));
+        }
+    }
+
+    @Test
+    public void generationsCountTheLongestPathToARoot() {
+        CommitGraph graph = CommitGraph.open(_store);
+        assertEquals(1, generation(graph, _root));
+        assertEquals(1, generation(graph, _other));
+        assertEquals(2, generation(graph, _child));
+        assertEquals(3, generation(graph, _merge));
+    }
+
+    @Test
+    public void recordsGiveParentsAndTimes() {
+        CommitGraph graph = CommitGraph.open(_store);
+        int merge = graph.index(_merge);
+        assertEquals(_child, graph.id(graph.parent1(merge)));
+        assertEquals(_other, graph.id(graph.parent2(merge)));
+        assertEquals(CommitGraph.NONE, graph.parent1(graph.index(_root)));
+        assertEquals(CommitGraph.NONE, graph.parent2(graph.index(_child)));
+        assertEquals(Commit.load(_store, _child).getTime(),
+                     graph.time(graph.index(_child)));
+        assertTrue(graph.parent1(merge) < merge);
+        assertTrue(graph.parent2(merge) < merge);
+    }
+
+    @Test
+    public void addedCommitsAreAppendedAndReadBack() {
+        CommitGraph graph = CommitGraph.open(_store);
+        long length = file().length();
+        String next = _fixture.commit(Map.of("a", "3\n"), _merge);
+        String last = _fixture.commit(Map.of("a", "4\n"), next);
+        graph.add(last);
+        assertEquals(6, graph.size());
+        assertTrue(graph.index(next) < graph.index(last));
+        assertTrue(file().length() > length);
+        CommitGraph reopened = CommitGraph.open(_store);
+        assertEquals(6, reopened.size());
+        assertEquals(5, generation(reopened, last));
+        assertEquals(_merge,
+                     reopened.id(reopened.parent1(reopened.index(next))));
+    }
+
+    @Test
+    public void partialRecordsAreIgnored() throws IOException {
+        CommitGraph.open(_store);
+        try (RandomAccessFile out = new RandomAccessFile(file(), "rw")) {
+            out.seek(out.length());
+            out.write(new byte[] { 1, 2, 3 });
+        }
+        CommitGraph graph = CommitGraph.open(_store);
+        assertEquals(4, graph.size());
+        assertEquals(3, generation(graph, _merge));
+    }
+
+    @Test
+    public void appendsReplaceAPartialRecord() throws IOException {
+        CommitGraph.open(_store);
+        long length = file().length();
+        try (RandomAccessFile out = new RandomAccessFile(file(), "rw")) {
+            out.setLength(length - 5);
+        }
+        CommitGraph graph = CommitGraph.open(_store);
+        assertEquals(3, graph.size());
+        String next = _fixture.commit(Map.of("a", "3\n"), _merge);
+        graph.add(next);
+        CommitGraph reopened = CommitGraph.open(_store);
+        assertEquals(5, reopened.size());
+        assertEquals(4, generation(reopened, next));
+        int merge = reopened.index(_merge);
+        assertEquals(_child, reopened.id(reopened.parent1(merge)));
+        assertEquals(_other, reopened.id(reopened.parent2(merge)));
+        assertEquals(_merge,
+                     reopened.id(reopened.parent1(reopened.index(next))));
+    }
+
+    @Test
+    public void appendsKeepRecordsAppendedByOthers() {
+        CommitGraph first = CommitGraph.open(_store);
+        CommitGraph second = CommitGraph.open(_store);
+        String next = _fixture.commit(Map.of("a", "3\n"), _merge);
+        String other = _fixture.commit(Map.of("b", "2\n"), _other);
+        first.add(next);
+        second.add(other);
+        assertEquals(other, second.id(second.index(other)));
+        CommitGraph reopened = CommitGraph.open(_store);
+        assertEquals(6, reopened.size());
+        assertEquals(4, generation(reopened, next));
+        assertEquals(2, generation(reopened, other));
+        assertEquals(_merge,
+                     reopened.id(reopened.parent1(reopened.index(next))));
+        assertEquals(_other,
+                     reopened.id(reopened.parent1(reopened.index(other))));
+    }
+
+    @Test
+    public void idsConvertToRawBytesAndBack() {
+        byte[] raw = CommitGraph.toBytes(_merge);
+        assertEquals(Utils.UID_LENGTH / 2, raw.length);
+        assertEquals(_merge, CommitGraph.toHex(raw));
+    }
+
+}
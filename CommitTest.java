@@ -0,0 +1,124 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Commit.
+ *  @author Srikar Hanumanula
+ */
+public class CommitTest {
+
+    /** Scratch directory and store. */
+    private StoreFixture _fixture;
+    /** The store of _fixture. */
+    private ObjectStore _store;
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _store = _fixture.store();
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    /** Return the id of a blob holding TEXT. */
+    private static String blob(String text) {
+        return Utils.sha1(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void encodedCommitsDecodeToTheSameCommit() {
+        String parent = _fixture.commit(Map.of());
+        String parent2 = _fixture.commit(Map.of("a", "a\n"), parent);
+        String tree =
+            Tree.build(_store, Map.of("dir/b", _fixture.blob("b\n")));
+        Commit commit =
+            new Commit("a message\nover lines", tree, parent, parent2);
+        byte[] encoded = commit.encode();
+        assertEquals(Utils.sha1(encoded), commit.getHash());
+        _store.write(ObjectStore.COMMITS, commit.getHash(), encoded);
+        Commit read = Commit.load(_store, commit.getHash());
+        assertEquals(commit.getHash(), read.getHash());
+        assertEquals("a message\nover lines", read.getMessage());
+        assertEquals(commit.getTime(), read.getTime());
+        assertEquals(parent, read.getParent());
+        assertEquals(parent2, read.getParent2());
+        assertEquals(tree, read.getTree());
+        assertEquals(Map.of("dir/b", blob("b\n")), read.getBlobs());
+        assertArrayEquals(encoded, read.encode());
+    }
+
+    @Test
+    public void initialCommitsAreTimelessAndParentless() {
+        String id = _fixture.commit(Map.of());
+        Commit initial = Commit.load(_store, id);
+        assertEquals(0, initial.getTime());
+        assertNull(initial.getParent());
+        assertTrue(initial.getBlobs().isEmpty());
+        assertEquals(id, Utils.sha1(initial.encode()));
+    }
+
+    @Test
+    public void serializedCommitsKeepTheirIds() {
+        StoreFixture old = new StoreFixture();
+        try {
+            old.copyLegacy();
+            ObjectStore store = old.store();
+            Commit commit = Commit.load(store, StoreFixture.ADD_B);
+            assertEquals(StoreFixture.ADD_B, commit.getHash());
+            assertEquals(StoreFixture.ADD_B,
+                         Utils.sha1(store.read(ObjectStore.COMMITS,
+                                               StoreFixture.ADD_B)));
+            assertEquals("add b", commit.getMessage());
+            assertEquals(StoreFixture.ADD_A, commit.getParent());
+            assertNull(commit.getParent2());
+            assertEquals(Map.of("a.txt", blob("hello\n"),
+                                "b.txt", blob("world\n")),
+                         commit.getBlobs());
+            assertEquals(commit.getBlobs(),
+                         Tree.flatten(store, commit.getTree()));
+            assertEquals(0, Commit.load(store, StoreFixture.INITIAL)
+                         .getTime());
+        } finally {
+            old.delete();
+        }
+    }
+
+    @Test
+    public void treesOfSerializedCommitsAreStoredOnlyByMigration() {
+        StoreFixture old = new StoreFixture();
+        try {
+            old.copyLegacy();
+            String tree = Commit.load(old.store(), StoreFixture.ADD_B)
+                .getTree();
+            assertTrue(old.store().contains(ObjectStore.TREES, tree));
+            assertTrue(old.store().file(ObjectStore.TREES, tree).delete());
+            ObjectStore store = new ObjectStore(old.gitletDir());
+            Commit commit = Commit.load(store, StoreFixture.ADD_B);
+            assertEquals(tree, commit.getTree());
+            assertFalse(store.contains(ObjectStore.TREES, tree));
+        } finally {
+            old.delete();
+        }
+    }
+
+    @Test(expected = GitletException.class)
+    public void unknownVersionsAreRejected() {
+        byte[] encoded =
+            new Commit("message", Tree.build(_store, Map.of()), null, null)
+            .encode();
+        encoded[4] += 1;
+        String id = Utils.sha1(encoded);
+        _store.write(ObjectStore.COMMITS, id, encoded);
+        Commit.load(_store, id);
+    }
+
+}
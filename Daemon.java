@@ -0,0 +1,252 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/** Serves gitlet commands for the repository in the current directory
+ *  from one long-running process, so that each command is spared JVM
+ *  startup and runs with warm caches and compiled code.  Clients connect
+ *  to the Unix domain socket SOCKET in the .gitlet directory and send one
+ *  command per connection: the number of its arguments as a big-endian
+ *  int, then the arguments, each followed by a NUL byte.  Arguments may
+ *  thus hold any character but NUL, newlines included.  The daemon
+ *  replies with exactly what the command would have printed when run on
+ *  its own, as a sequence of frames, then closes the connection.  Each
+ *  frame is a byte naming the stream, OUT or ERR, an int length and that
+ *  many bytes of output; the last frame is EXIT and an int exit status.
+ *  Each connection is served by its own thread, so a client that is slow
+ *  to send its request holds up no one else, but commands run one at a
+ *  time, through Repository, which keeps what they load for the next
+ *  command while it is still current.  The request STATS is answered with
+ *  the sizes and hit and miss counts of the object store's caches.
+ *  @author Srikar Hanumanula
+ */
+class Daemon {
+    /** Name of the socket within the .gitlet directory. */
+    static final String SOCKET = "daemon.sock";
+    /** Arguments of the request that stops the daemon. */
+    static final String[] STOP = {"daemon", "stop"};
+    /** Arguments of the request for the counters of the caches. */
+    static final String[] STATS = {"daemon", "stats"};
+    /** Terminates each argument of a request. */
+    static final int END_ARG = 0;
+    /** Tags of frames holding standard output, holding error output, and
+     *  ending a reply. */
+    static final int OUT = 1, ERR = 2, EXIT = 3;
+
+    /** The .gitlet directory. */
+    private final File _dir;
+    /** True until the daemon is asked to stop. */
+    private volatile boolean _running = true;
+
+    /** A daemon for the repository whose metadata lives in DIR. */
+    Daemon(File dir) {
+        _dir = dir;
+    }
+
+    /** Return the socket of the daemon for the repository whose metadata
+     *  lives in DIR. */
+    static File socket(File dir) {
+        return Utils.join(dir, SOCKET);
+    }
+
+    /** Accept and run commands until asked to stop.  The socket is bound
+     *  under a temporary name and renamed once it listens, so that clients
+     *  that find it can connect. */
+    void serve() {
+        File socket = socket(_dir);
+        File temp = new File(socket.getPath() + ".tmp");
+        socket.delete();
+        temp.delete();
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(temp.toPath()));
+            Files.move(temp.toPath(), socket.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+            while (_running) {
+                SocketChannel client;
+                try {
+                    client = server.accept();
+                } catch (ClosedChannelException excp) {
+                    break;
+                }
+                Thread worker = new Thread(() -> serve(server, client));
+                worker.setDaemon(true);
+                worker.start();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            temp.delete();
+            socket.delete();
+        }
+    }
+
+    /** Run the command sent by CLIENT of SERVER, sending it the output, and
+     *  close SERVER if the command asked the daemon to stop. */
+    private void serve(ServerSocketChannel server, SocketChannel client) {
+        try (client) {
+            if (!handle(client)) {
+                server.close();
+            }
+        } catch (IOException excp) {
+            /* The client has gone; there is no one to tell. */
+        }
+    }
+
+    /** Run the command sent by CLIENT, sending it the output.  Return false
+     *  iff the command asked the daemon to stop.  A malformed request, or
+     *  one that arrives once the daemon is stopping, is dropped. */
+    private boolean handle(SocketChannel client) throws IOException {
+        String[] args;
+        try {
+            args = readRequest(Channels.newInputStream(client));
+        } catch (IOException excp) {
+            return true;
+        }
+        DataOutputStream reply = new DataOutputStream(
+            new BufferedOutputStream(Channels.newOutputStream(client)));
+        PrintStream out = frames(reply, OUT);
+        PrintStream err = frames(reply, ERR);
+        int status = 0;
+        synchronized (this) {
+            if (!_running) {
+                return false;
+            }
+            if (Arrays.equals(args, STOP)) {
+                _running = false;
+                out.println("Daemon stopped.");
+            } else if (Arrays.equals(args, STATS)) {
+                ObjectStore store = ObjectStore.local();
+                out.println("Commits: " + store.commits());
+                out.println("Objects: " + store.objects());
+            } else {
+                PrintStream stdout = System.out;
+                System.setOut(out);
+                try {
+                    Main.run(args);
+                } catch (GitletException excp) {
+                    out.println(excp.getMessage());
+                } catch (RuntimeException excp) {
+                    excp.printStackTrace(err);
+                    status = 1;
+                } finally {
+                    System.setOut(stdout);
+                }
+            }
+            out.flush();
+            err.flush();
+        }
+        reply.writeByte(EXIT);
+        reply.writeInt(status);
+        reply.flush();
+        return _running;
+    }
+
+    /** Return a stream that writes what is printed to it to REPLY, in
+     *  frames tagged TAG.  Output is framed when the stream is flushed or
+     *  its buffer fills. */
+    private static PrintStream frames(DataOutputStream reply, int tag) {
+        OutputStream framer = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (len > 0) {
+                    reply.writeByte(tag);
+                    reply.writeInt(len);
+                    reply.write(b, off, len);
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                reply.flush();
+            }
+        };
+        return new PrintStream(new BufferedOutputStream(framer), false,
+                               StandardCharsets.UTF_8);
+    }
+
+    /** Copy the reply read from IN to OUT and ERR as its frames direct, and
+     *  return the exit status it ends with. */
+    static int readReply(InputStream in, OutputStream out, OutputStream err)
+        throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] buf = new byte[8192];
+        while (true) {
+            int tag = data.readUnsignedByte();
+            if (tag == EXIT) {
+                return data.readInt();
+            }
+            if (tag != OUT && tag != ERR) {
+                throw new IOException("malformed reply");
+            }
+            OutputStream dest = tag == OUT ? out : err;
+            for (int left = data.readInt(); left > 0; ) {
+                int n = data.read(buf, 0, Math.min(left, buf.length));
+                if (n < 0) {
+                    throw new EOFException("truncated reply");
+                }
+                dest.write(buf, 0, n);
+                left -= n;
+            }
+            dest.flush();
+        }
+    }
+
+    /** Write the request to run the command ARGS to OUT. */
+    static void writeRequest(OutputStream out, String... args)
+        throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(args.length);
+        for (String arg : args) {
+            data.write(arg.getBytes(StandardCharsets.UTF_8));
+            data.write(END_ARG);
+        }
+        data.flush();
+    }
+
+    /** Return the arguments of the request read from IN. */
+    static String[] readRequest(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int count = data.readInt();
+        if (count < 0) {
+            throw new IOException("malformed request");
+        }
+        String[] args = new String[count];
+        ByteArrayOutputStream arg = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i += 1) {
+            for (int c = data.read(); c != END_ARG; c = data.read()) {
+                if (c < 0) {
+                    throw new EOFException("truncated request");
+                }
+                arg.write(c);
+            }
+            args[i] = arg.toString(StandardCharsets.UTF_8);
+            arg.reset();
+        }
+        return args;
+    }
+}
@@ -0,0 +1,156 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Daemon and Client.
+ *  @author Srikar Hanumanula
+ */
+public class DaemonTest {
+
+    /** Scratch directory holding a repository. */
+    private StoreFixture _fixture;
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _fixture.gitlet("init");
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    /** Return the arguments of the request written for ARGS, as read. */
+    private static String[] roundTrip(String... args) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Daemon.writeRequest(out, args);
+        return Daemon.readRequest(new ByteArrayInputStream(
+            out.toByteArray()));
+    }
+
+    @Test
+    public void requestsKeepEveryArgumentWhole() throws IOException {
+        String[] args = {"commit", "a message\nover\r\nlines\n", "", "\u00e9"};
+        assertArrayEquals(args, roundTrip(args));
+        assertArrayEquals(new String[0], roundTrip());
+        assertArrayEquals(new String[] {""}, roundTrip(""));
+    }
+
+    /** Check that reading the request whose bytes are BYTES fails. */
+    private static void checkMalformed(byte[] bytes) {
+        try {
+            Daemon.readRequest(new ByteArrayInputStream(bytes));
+            fail("read a malformed request");
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    @Test
+    public void malformedRequestsAreRejected() {
+        checkMalformed(new byte[0]);
+        checkMalformed(new byte[] {-1, -1, -1, -1});
+        checkMalformed(new byte[] {0, 0, 0, 2, 'a', 0, 'b'});
+    }
+
+    @Test
+    public void repliesSeparateOutputFromErrors() throws IOException {
+        ByteArrayOutputStream reply = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(reply);
+        data.writeByte(Daemon.OUT);
+        data.writeInt(3);
+        data.writeBytes("out");
+        data.writeByte(Daemon.ERR);
+        data.writeInt(3);
+        data.writeBytes("err");
+        data.writeByte(Daemon.OUT);
+        data.writeInt(1);
+        data.writeBytes("\n");
+        data.writeByte(Daemon.EXIT);
+        data.writeInt(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        assertEquals(1, Daemon.readReply(
+            new ByteArrayInputStream(reply.toByteArray()), out, err));
+        assertEquals("out\n", out.toString(StandardCharsets.UTF_8));
+        assertEquals("err", err.toString(StandardCharsets.UTF_8));
+    }
+
+    /** Start a daemon for _fixture and return it once it serves. */
+    private Process daemon() throws InterruptedException {
+        Process daemon = _fixture.start("gitlet.Main", "daemon");
+        File socket = Daemon.socket(_fixture.gitletDir());
+        for (int i = 0; i < 1000 && !socket.exists(); i += 1) {
+            assertTrue(daemon.isAlive());
+            Thread.sleep(10);
+        }
+        assertTrue(socket.exists());
+        return daemon;
+    }
+
+    @Test
+    public void daemonRepliesAsCommandsRunAloneWould()
+        throws InterruptedException {
+        Process daemon = daemon();
+        try {
+            _fixture.write("a.txt", "a\n");
+            assertEquals("", _fixture.run("gitlet.Client", "add", "a.txt"));
+            _fixture.run("gitlet.Client", "commit", "add a");
+            assertEquals("", _fixture.gitlet("status", "--porcelain"));
+            _fixture.write("a.txt", "changed\n");
+            assertEquals(" M a.txt\n", _fixture.run("gitlet.Client",
+                                                    "status",
+                                                    "--porcelain"));
+            _fixture.run("gitlet.Client", "add", "a.txt");
+            _fixture.run("gitlet.Client", "commit", "two\nlines");
+            String stats = _fixture.run("gitlet.Client", "daemon", "stats");
+            assertTrue(stats.startsWith("Commits: "));
+            assertTrue(stats.contains("\nObjects: "));
+            assertFalse(stats.startsWith("Commits: 0 cached, 0 hits"));
+            assertTrue(_fixture.gitlet("log").contains("two\nlines\n"));
+            assertEquals("No reason to remove the file.\n",
+                         _fixture.run("gitlet.Client", "rm", "absent"));
+            assertEquals("Daemon stopped.\n",
+                         _fixture.run("gitlet.Client", "daemon", "stop"));
+            daemon.waitFor();
+            assertFalse(Daemon.socket(_fixture.gitletDir()).exists());
+        } finally {
+            daemon.destroy();
+        }
+    }
+
+    @Test
+    public void idleClientsDoNotHoldUpOthers()
+        throws InterruptedException, IOException {
+        Process daemon = daemon();
+        try (SocketChannel idle =
+                 SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            idle.connect(UnixDomainSocketAddress.of(
+                Daemon.socket(_fixture.gitletDir()).toPath()));
+            _fixture.write("a.txt", "a\n");
+            assertEquals("?? a.txt\n", _fixture.run("gitlet.Client",
+                                                     "status",
+                                                     "--porcelain"));
+            assertEquals("Daemon stopped.\n",
+                         _fixture.run("gitlet.Client", "daemon", "stop"));
+            daemon.waitFor();
+        } finally {
+            daemon.destroy();
+        }
+    }
+
+}
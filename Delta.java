@@ -0,0 +1,158 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** Binary deltas: the instructions for rebuilding one sequence of bytes,
+ *  the target, from another, its base.  A delta is
+ *
+ *      long    length of the target
+ *      instructions, each one of
+ *          byte COPY, int offset, int length: bytes of the base
+ *          byte INSERT, int length, the bytes themselves
+ *
+ *  Deltas are made by indexing the base by the hashes of its BLOCK-byte
+ *  blocks, then rolling a hash of as many bytes along the target and
+ *  extending each block found in both as far as it goes either way.  They
+ *  work on bytes rather than lines, so they rebuild line endings and
+ *  binary files exactly.
+ *  @author Srikar Hanumanula
+ */
+class Delta {
+    /** Length of the blocks matched between base and target. */
+    private static final int BLOCK = 16;
+    /** Multiplier of the rolling hash. */
+    private static final int PRIME = 31;
+    /** PRIME to the power BLOCK - 1, that is, the weight of the byte
+     *  leaving the hash. */
+    private static final int OUTGOING;
+    /** Instruction copying bytes of the base. */
+    private static final byte COPY = 0;
+    /** Instruction inserting bytes. */
+    private static final byte INSERT = 1;
+
+    static {
+        int weight = 1;
+        for (int i = 1; i < BLOCK; i += 1) {
+            weight *= PRIME;
+        }
+        OUTGOING = weight;
+    }
+
+    /** Deltas are used through their static methods. */
+    private Delta() {
+    }
+
+    /** Return a delta rebuilding TARGET from BASE. */
+    static byte[] create(byte[] base, byte[] target) {
+        HashMap<Integer, Integer> blocks = new HashMap<>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            blocks.putIfAbsent(hash(base, i), i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeLong(target.length);
+            int pending = 0;
+            int j = 0;
+            int h = target.length >= BLOCK ? hash(target, 0) : 0;
+            while (j + BLOCK <= target.length) {
+                Integer i = blocks.get(h);
+                if (i != null && Arrays.equals(base, i, i + BLOCK,
+                                               target, j, j + BLOCK)) {
+                    int start = i, from = j;
+                    while (start > 0 && from > pending
+                           && base[start - 1] == target[from - 1]) {
+                        start -= 1;
+                        from -= 1;
+                    }
+                    int end = i + BLOCK, to = j + BLOCK;
+                    while (end < base.length && to < target.length
+                           && base[end] == target[to]) {
+                        end += 1;
+                        to += 1;
+                    }
+                    insert(out, target, pending, from);
+                    out.writeByte(COPY);
+                    out.writeInt(start);
+                    out.writeInt(end - start);
+                    pending = j = to;
+                    if (j + BLOCK <= target.length) {
+                        h = hash(target, j);
+                    }
+                    continue;
+                }
+                if (j + BLOCK < target.length) {
+                    h = (h - target[j] * OUTGOING) * PRIME
+                        + target[j + BLOCK];
+                }
+                j += 1;
+            }
+            insert(out, target, pending, target.length);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Return the target rebuilt from BASE by the delta that is the LENGTH
+     *  bytes of DELTA starting at OFFSET. */
+    static byte[] apply(byte[] base, byte[] delta, int offset, int length) {
+        ByteBuffer in = ByteBuffer.wrap(delta, offset, length);
+        try {
+            byte[] result = new byte[(int) in.getLong()];
+            int pos = 0;
+            while (in.hasRemaining()) {
+                byte op = in.get();
+                if (op == COPY) {
+                    int start = in.getInt(), count = in.getInt();
+                    System.arraycopy(base, start, result, pos, count);
+                    pos += count;
+                } else if (op == INSERT) {
+                    int count = in.getInt();
+                    in.get(result, pos, count);
+                    pos += count;
+                } else {
+                    throw new IllegalArgumentException("corrupt delta");
+                }
+            }
+            if (pos != result.length) {
+                throw new IllegalArgumentException("corrupt delta");
+            }
+            return result;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException excp) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+    }
+
+    /** Return the length of the target of the delta starting at OFFSET in
+     *  DELTA. */
+    static long size(byte[] delta, int offset) {
+        return ByteBuffer.wrap(delta, offset, Long.BYTES).getLong();
+    }
+
+    /** Write to OUT an instruction inserting bytes FROM to TO of TARGET,
+     *  if there are any. */
+    private static void insert(DataOutputStream out, byte[] target,
+                               int from, int to) throws IOException {
+        if (from < to) {
+            out.writeByte(INSERT);
+            out.writeInt(to - from);
+            out.write(target, from, to - from);
+        }
+    }
+
+    /** Return the hash of the BLOCK bytes of DATA starting at START. */
+    private static int hash(byte[] data, int start) {
+        int result = 0;
+        for (int i = start; i < start + BLOCK; i += 1) {
+            result = result * PRIME + data[i];
+        }
+        return result;
+    }
+}
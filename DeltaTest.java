@@ -0,0 +1,164 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Delta and of blobs stored as deltas.
+ *  @author Srikar Hanumanula
+ */
+public class DeltaTest {
+
+    /** Scratch directory and store. */
+    private StoreFixture _fixture;
+    /** The store of _fixture. */
+    private ObjectStore _store;
+    /** Source of random contents. */
+    private Random _random = new Random(25);
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _store = _fixture.store();
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    /** Return LENGTH random bytes. */
+    private byte[] random(int length) {
+        byte[] result = new byte[length];
+        _random.nextBytes(result);
+        return result;
+    }
+
+    /** Return CONTENTS with a few random bytes overwritten, a run of them
+     *  deleted and a run of random bytes inserted. */
+    private byte[] edit(byte[] contents) {
+        byte[] result = contents.clone();
+        for (int i = 0; i < 5; i += 1) {
+            result[_random.nextInt(result.length)] ^= 0x5a;
+        }
+        int cut = _random.nextInt(result.length / 2);
+        byte[] insert = random(100);
+        byte[] edited = new byte[result.length - 50 + insert.length];
+        System.arraycopy(result, 0, edited, 0, cut);
+        System.arraycopy(insert, 0, edited, cut, insert.length);
+        System.arraycopy(result, cut + 50, edited, cut + insert.length,
+                         result.length - cut - 50);
+        return edited;
+    }
+
+    /** Check that a delta from BASE to TARGET rebuilds TARGET, and return
+     *  its length. */
+    private static int roundTrip(byte[] base, byte[] target) {
+        byte[] delta = Delta.create(base, target);
+        assertArrayEquals(target, Delta.apply(base, delta, 0, delta.length));
+        assertEquals(target.length, Delta.size(delta, 0));
+        return delta.length;
+    }
+
+    /** Store CONTENTS as a blob, as a new version of blob BASE, and return
+     *  its id. */
+    private String insert(byte[] contents, String base) throws IOException {
+        File source = Utils.join(_fixture.dir(), "file");
+        Files.write(source.toPath(), contents);
+        return _store.insertBlob(source, base);
+    }
+
+    @Test
+    public void binaryRoundTrip() {
+        byte[] base = random(100_000);
+        byte[] target = edit(base);
+        assertTrue(roundTrip(base, target) < target.length / 10);
+    }
+
+    @Test
+    public void edgeCasesRoundTrip() {
+        byte[] base = random(1000);
+        roundTrip(base, base);
+        roundTrip(base, new byte[0]);
+        roundTrip(new byte[0], base);
+        roundTrip(base, random(1000));
+        roundTrip(base, Arrays.copyOf(base, 7));
+        roundTrip("a\r\nb\r\n".repeat(100).getBytes(),
+                  "a\nb\r\n".repeat(100).getBytes());
+    }
+
+    @Test
+    public void deltasApplyAtAnOffset() {
+        byte[] base = random(5000), target = edit(base);
+        byte[] delta = Delta.create(base, target);
+        byte[] framed = new byte[delta.length + 10];
+        System.arraycopy(delta, 0, framed, 3, delta.length);
+        assertArrayEquals(target, Delta.apply(base, framed, 3, delta.length));
+        assertEquals(target.length, Delta.size(framed, 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedDeltasAreRejected() {
+        byte[] base = random(5000);
+        byte[] delta = Delta.create(base, edit(base));
+        Delta.apply(base, delta, 0, delta.length - 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deltasForOtherBasesAreRejected() {
+        byte[] base = random(5000);
+        byte[] delta = Delta.create(base, edit(base));
+        Delta.apply(new byte[10], delta, 0, delta.length);
+    }
+
+    @Test
+    public void newVersionsAreStoredAsDeltas() throws IOException {
+        byte[] v1 = random(50_000), v2 = edit(v1);
+        String id1 = insert(v1, null);
+        String id2 = insert(v2, id1);
+        assertEquals(Utils.sha1(v2), id2);
+        assertEquals(id1, _store.deltaBase(id2));
+        assertNull(_store.deltaBase(id1));
+        assertTrue(_store.contains(ObjectStore.BLOBS, id2));
+        assertFalse(_store.file(ObjectStore.BLOBS, id2).exists());
+        assertEquals(v2.length, _store.size(ObjectStore.BLOBS, id2));
+        assertArrayEquals(v2, new ObjectStore(_fixture.gitletDir())
+                          .read(ObjectStore.BLOBS, id2));
+    }
+
+    @Test
+    public void smallAndUnrelatedFilesAreStoredWhole() throws IOException {
+        String base = insert(random(50_000), null);
+        String small = insert(random(100), base);
+        assertNull(_store.deltaBase(small));
+        String unrelated = insert(random(50_000), base);
+        assertNull(_store.deltaBase(unrelated));
+    }
+
+    @Test
+    public void chainsOfDeltasAreBounded() throws IOException {
+        byte[] contents = random(20_000);
+        String id = insert(contents, null);
+        for (int i = 0; i < 25; i += 1) {
+            contents = edit(contents);
+            id = insert(contents, id);
+            int depth = 0;
+            for (String b = _store.deltaBase(id); b != null;
+                 b = _store.deltaBase(b)) {
+                depth += 1;
+            }
+            assertTrue(depth <= 10);
+            assertArrayEquals(contents,
+                              new ObjectStore(_fixture.gitletDir())
+                              .read(ObjectStore.BLOBS, id));
+        }
+    }
+
+}
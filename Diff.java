@@ -9,12 +9,11 @@ import java.nio.file.Path;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 
 import java.io.IOException;
 import java.nio.file.InvalidPathException;
 
-import static java.lang.Math.max;
-
 /** A comparison of two sequences of strings.  After executing setSequences to
  *  initialize the data, methods allow computing longest common sequences
  *  and differences in the form of edits needed to convert one sequence to the
@@ -27,8 +26,8 @@ public class Diff {
     public void setSequences(Collection<String> seq1, Collection<String> seq2) {
         _lines1 = new ArrayList<>(seq1);
         _lines2 = new ArrayList<>(seq2);
-        _lls = null;
-        _todo = null;
+        _ids1 = _ids2 = null;
+        _match = null;
     }
 
     /** Set the sequences currently being compared to the contents
@@ -48,8 +47,8 @@ public class Diff {
                  excp) {
             _lines2 = Collections.emptyList();
         }
-        _lls = null;
-        _todo = null;
+        _ids1 = _ids2 = null;
+        _match = null;
     }
 
     /** Return the first of the current sequences. */
@@ -76,66 +75,24 @@ public class Diff {
      *  items, respectively, of the current data sequences. */
     public int lls(int k1, int k2) {
         checkData();
-        if (_lls == null) {
-            _lls = new int[_lines1.size() + 1][_lines2.size() + 1];
-            for (int[] row : _lls) {
-                Arrays.fill(row, -1);
-            }
-        }
-        if (k1 == 0 || k2 == 0
-            || k1 > _lines1.size() || k2 > _lines2.size()) {
+        k1 = Math.min(k1, _lines1.size());
+        k2 = Math.min(k2, _lines2.size());
+        if (k1 <= 0 || k2 <= 0) {
             return 0;
-        } else if (_lls[k1][k2] == -1) {
-            initStack();
-            push(k1, k2, 0);
-            while (!empty()) {
-                pop();
-                if (_llsTop1 == 0 || _llsTop2 == 0) {
-                    _lls[_llsTop1][_llsTop2] = 0;
-                } else if (_lls[_llsTop1][_llsTop2] != -1) {
-                    continue;
-                } else {
-                    switch (_llsState) {
-                    case 0:
-                        if (_lines1.get(_llsTop1 - 1)
-                            .equals(_lines2.get(_llsTop2 - 1))) {
-                            push(_llsTop1, _llsTop2, 4);
-                            push(_llsTop1 - 1, _llsTop2 - 1, 0);
-                        } else {
-                            push(_llsTop1, _llsTop2, 1);
-                        }
-                        continue;
-                    case 1:
-                        push(_llsTop1, _llsTop2, 2);
-                        push(_llsTop1, _llsTop2 - 1, 0);
-                        continue;
-                    case 2:
-                        push(_llsTop1, _llsTop2, 3);
-                        push(_llsTop1 - 1, _llsTop2, 0);
-                        continue;
-                    case 3:
-                        _lls[_llsTop1][_llsTop2]
-                            = max(_lls[_llsTop1][_llsTop2 - 1],
-                                  _lls[_llsTop1 - 1][_llsTop2]);
-                        continue;
-                    case 4:
-                        _lls[_llsTop1][_llsTop2]
-                            = _lls[_llsTop1 - 1][_llsTop2 - 1] + 1;
-                        continue;
-                    default:
-                        assert false;
-                    }
-                }
-            }
         }
-        return _lls[k1][k2];
+        if (k1 == _lines1.size() && k2 == _lines2.size()) {
+            return lls();
+        }
+        intern();
+        return (k1 + k2 - distance(k1, k2)) / 2;
     }
 
     /** Return the length of the longest common subsequence of the current
      *  data subsequences. */
     public int lls() {
         checkData();
-        return lls(_lines1.size(), _lines2.size());
+        match();
+        return _matched;
     }
 
     /** Return true iff the sequences currently being compared have identical
@@ -145,7 +102,8 @@ public class Diff {
         if (_lines1.size() != _lines2.size()) {
             return false;
         }
-        return lls(_lines1.size(), _lines2.size()) == _lines1.size();
+        intern();
+        return Arrays.equals(_ids1, _ids2);
     }
 
     /** Return an array containing the int values of the items in LIST. */
@@ -166,28 +124,24 @@ public class Diff {
      *  first file (0-based), si2 is the starting position in the second
      *  file, and Li is the length of the subsequence. */
     public int[] commonSubsequence() {
-        ArrayDeque<Integer> resultList = new ArrayDeque<>();
-
-        int k1, k2;
-        k1 = _lines1.size(); k2 = _lines2.size();
-        while (k1 > 0 && k2 > 0) {
-            int ls = lls(k1, k2);
-            if (lls(k1 - 1, k2) == ls) {
-                k1 -= 1;
-            } else if (lls(k1, k2 - 1) == ls) {
-                k2 -= 1;
-            } else {
-                int L;
-                L = 1;
-                while (k1 > L && k2 > L && lls(k1 - L - 1, k2 - L) != ls - L
-                       && lls(k1 - L, k2 - L  - 1) != ls - L) {
-                    L += 1;
-                }
-                resultList.offerFirst(L);
-                resultList.offerFirst(k2 - L);
-                resultList.offerFirst(k1 - L);
-                k1 -= L; k2 -= L;
+        checkData();
+        match();
+        ArrayList<Integer> resultList = new ArrayList<>();
+        int k1 = 0;
+        while (k1 < _match.length) {
+            if (_match[k1] < 0) {
+                k1 += 1;
+                continue;
+            }
+            int k2 = _match[k1];
+            int L = 1;
+            while (k1 + L < _match.length && _match[k1 + L] == k2 + L) {
+                L += 1;
             }
+            resultList.add(k1);
+            resultList.add(k2);
+            resultList.add(L);
+            k1 += L;
         }
         return toIntArr(resultList);
     }
@@ -232,45 +186,223 @@ public class Diff {
         }
     }
 
-    /** Initialize work stack for lls. */
-    private void initStack() {
-        _todo = new int[6 * (_lines1.size() +  _lines2.size() + 1)];
-        _todop = 0;
+    /** Replace each line of the current sequences by a small integer,
+     *  equal lines getting equal integers, so that lines are compared by
+     *  integer comparison. */
+    private void intern() {
+        if (_ids1 != null) {
+            return;
+        }
+        HashMap<String, Integer> ids = new HashMap<>();
+        _ids1 = new int[_lines1.size()];
+        _ids2 = new int[_lines2.size()];
+        for (int i = 0; i < _ids1.length; i += 1) {
+            _ids1[i] = ids.computeIfAbsent(_lines1.get(i), x -> ids.size());
+        }
+        for (int i = 0; i < _ids2.length; i += 1) {
+            _ids2[i] = ids.computeIfAbsent(_lines2.get(i), x -> ids.size());
+        }
+    }
+
+    /** Compute _match and _matched, if not already done, using Myers'
+     *  O((N+M)D) algorithm with its linear-space refinement: each region
+     *  is trimmed of its common prefix and suffix and then split at the
+     *  middle of an optimal edit path into two smaller regions.  Regions
+     *  are kept on an explicit stack rather than by recursion. */
+    private void match() {
+        if (_match != null) {
+            return;
+        }
+        intern();
+        _match = new int[_ids1.length];
+        Arrays.fill(_match, -1);
+        _matched = 0;
+        int vlen = _ids1.length + _ids2.length + 4;
+        _forward = new int[vlen];
+        _reverse = new int[vlen];
+        ArrayDeque<int[]> regions = new ArrayDeque<>();
+        regions.push(new int[] {0, _ids1.length, 0, _ids2.length});
+        while (!regions.isEmpty()) {
+            int[] r = regions.pop();
+            int lo1 = r[0], hi1 = r[1], lo2 = r[2], hi2 = r[3];
+            while (lo1 < hi1 && lo2 < hi2 && _ids1[lo1] == _ids2[lo2]) {
+                record(lo1, lo2);
+                lo1 += 1;
+                lo2 += 1;
+            }
+            while (lo1 < hi1 && lo2 < hi2
+                   && _ids1[hi1 - 1] == _ids2[hi2 - 1]) {
+                hi1 -= 1;
+                hi2 -= 1;
+                record(hi1, hi2);
+            }
+            if (lo1 == hi1 || lo2 == hi2) {
+                continue;
+            }
+            if (hi1 - lo1 == 1 || hi2 - lo2 == 1) {
+                matchSingle(lo1, hi1, lo2, hi2);
+                continue;
+            }
+            int[] split = bisect(lo1, hi1, lo2, hi2);
+            if (split == null) {
+                continue;
+            }
+            regions.push(new int[] {split[0], hi1, split[1], hi2});
+            regions.push(new int[] {lo1, split[0], lo2, split[1]});
+        }
+        _forward = _reverse = null;
+    }
+
+    /** Record that line K1 of the first sequence is matched with line K2
+     *  of the second. */
+    private void record(int k1, int k2) {
+        _match[k1] = k2;
+        _matched += 1;
     }
 
-    /** Push an item on the work stack for computing lls(I1, I2). STATE
-     *  indicates which inner recursive calls have happened so far for these
-     *  arguments. */
-    private void push(int i1, int i2, int state) {
-        _todo[_todop + 1] = i1;
-        _todo[_todop + 2] = i2;
-        _todo[_todop] = state;
-        _todop += 3;
+    /** Match the lines of the regions [LO1 .. HI1-1] and [LO2 .. HI2-1],
+     *  one of which has a single line, whose first and last lines are
+     *  known to differ. */
+    private void matchSingle(int lo1, int hi1, int lo2, int hi2) {
+        if (hi1 - lo1 == 1) {
+            for (int k2 = lo2; k2 < hi2; k2 += 1) {
+                if (_ids1[lo1] == _ids2[k2]) {
+                    record(lo1, k2);
+                    return;
+                }
+            }
+        } else {
+            for (int k1 = lo1; k1 < hi1; k1 += 1) {
+                if (_ids1[k1] == _ids2[lo2]) {
+                    record(k1, lo2);
+                    return;
+                }
+            }
+        }
     }
 
-    /** Pop an item from the work stack. */
-    private void pop() {
-        _todop -= 3;
-        _llsTop1 = _todo[_todop + 1]; _llsTop2 = _todo[_todop + 2];
-        _llsState = _todo[_todop];
+    /** Find the middle of an optimal edit path between the regions
+     *  [LO1 .. HI1-1] and [LO2 .. HI2-1], by running the greedy search
+     *  forward from the start and backward from the end until the two
+     *  meet.  Return the point {k1, k2} at which they meet, or null if the
+     *  regions have nothing in common. */
+    private int[] bisect(int lo1, int hi1, int lo2, int hi2) {
+        int n = hi1 - lo1, m = hi2 - lo2;
+        int maxD = (n + m + 1) / 2;
+        int off = maxD + 1;
+        int[] v1 = _forward, v2 = _reverse;
+        Arrays.fill(v1, 0, 2 * off + 1, -1);
+        Arrays.fill(v2, 0, 2 * off + 1, -1);
+        v1[off + 1] = 0;
+        v2[off + 1] = 0;
+        int delta = n - m;
+        boolean front = (delta & 1) != 0;
+        int k1start = 0, k1end = 0, k2start = 0, k2end = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            for (int k = -d + k1start; k <= d - k1end; k += 2) {
+                int x;
+                if (k == -d || (k != d && v1[off + k - 1] < v1[off + k + 1])) {
+                    x = v1[off + k + 1];
+                } else {
+                    x = v1[off + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && _ids1[lo1 + x] == _ids2[lo2 + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                v1[off + k] = x;
+                if (x > n) {
+                    k1end += 2;
+                } else if (y > m) {
+                    k1start += 2;
+                } else if (front) {
+                    int k2 = off + delta - k;
+                    if (k2 >= 0 && k2 < 2 * off + 1 && v2[k2] != -1
+                        && x >= n - v2[k2]) {
+                        return new int[] {lo1 + x, lo2 + y};
+                    }
+                }
+            }
+            for (int k = -d + k2start; k <= d - k2end; k += 2) {
+                int x;
+                if (k == -d || (k != d && v2[off + k - 1] < v2[off + k + 1])) {
+                    x = v2[off + k + 1];
+                } else {
+                    x = v2[off + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m
+                       && _ids1[hi1 - x - 1] == _ids2[hi2 - y - 1]) {
+                    x += 1;
+                    y += 1;
+                }
+                v2[off + k] = x;
+                if (x > n) {
+                    k2end += 2;
+                } else if (y > m) {
+                    k2start += 2;
+                } else if (!front) {
+                    int k1 = off + delta - k;
+                    if (k1 >= 0 && k1 < 2 * off + 1 && v1[k1] != -1) {
+                        int x1 = v1[k1];
+                        int y1 = off + x1 - k1;
+                        if (x1 >= n - x) {
+                            return new int[] {lo1 + x1, lo2 + y1};
+                        }
+                    }
+                }
+            }
+        }
+        return null;
     }
 
-    /** Return true iff the work stack is empty. */
-    private boolean empty() {
-        return _todop <= 0;
+    /** Return the length of the shortest edit script between the first K1
+     *  lines of the first sequence and the first K2 lines of the second,
+     *  by the greedy forward search of Myers' algorithm. */
+    private int distance(int k1, int k2) {
+        int max = k1 + k2;
+        int off = max + 1;
+        int[] v = new int[2 * max + 3];
+        v[off + 1] = 0;
+        for (int d = 0; d <= max; d += 1) {
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[off + k - 1] < v[off + k + 1])) {
+                    x = v[off + k + 1];
+                } else {
+                    x = v[off + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < k1 && y < k2 && _ids1[x] == _ids2[y]) {
+                    x += 1;
+                    y += 1;
+                }
+                v[off + k] = x;
+                if (x >= k1 && y >= k2) {
+                    return d;
+                }
+            }
+        }
+        return max;
     }
 
     /** The sequences being compared. */
     private List<String> _lines1, _lines2;
 
-    /** The memo table for longest common subsequence.  _lls[a][b] contains the
-     *  length of the longest common sequence of the prefixes of the current
-     *  data sequences of lengths a and b, or -1 if not calculated. */
-    private int[][] _lls;
+    /** The lines of _lines1 and _lines2 as interned integers, or null if
+     *  not yet computed. */
+    private int[] _ids1, _ids2;
+
+    /** For each line of the first sequence, the index of the line of the
+     *  second sequence it is matched with in a longest common subsequence,
+     *  or -1.  Null if not yet computed. */
+    private int[] _match;
+
+    /** The number of matched lines in _match. */
+    private int _matched;
 
-    /** A stack structure used by lls. */
-    private int[] _todo;
-    /** Structure for the work queue used by lls. */
-    private int _todop, _llsState, _llsTop1, _llsTop2;
+    /** Work arrays for bisect, indexed by diagonal. */
+    private int[] _forward, _reverse;
 
 }
@@ -0,0 +1,138 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Diff.
+ *  @author Srikar Hanumanula
+ */
+public class DiffTest {
+
+    /** Return the lines of TEXT, one per character. */
+    private static List<String> lines(String text) {
+        return Arrays.asList(text.split(""));
+    }
+
+    /** Return the length of the longest common subsequence of A and B,
+     *  computed by the quadratic table Diff used to fill. */
+    private static int lcs(List<String> a, List<String> b) {
+        int[][] table = new int[a.size() + 1][b.size() + 1];
+        for (int i = 1; i <= a.size(); i += 1) {
+            for (int j = 1; j <= b.size(); j += 1) {
+                if (a.get(i - 1).equals(b.get(j - 1))) {
+                    table[i][j] = table[i - 1][j - 1] + 1;
+                } else {
+                    table[i][j] = Math.max(table[i - 1][j], table[i][j - 1]);
+                }
+            }
+        }
+        return table[a.size()][b.size()];
+    }
+
+    /** Return the result of applying the edits of DIFF to its first
+     *  sequence. */
+    private static List<String> apply(Diff diff) {
+        int[] edits = diff.diffs();
+        ArrayList<String> result = new ArrayList<>();
+        int k1 = 0;
+        for (int e = 0; e < edits.length; e += 4) {
+            result.addAll(diff.sequence1().subList(k1, edits[e]));
+            result.addAll(diff.sequence2().subList(edits[e + 2],
+                                                   edits[e + 2]
+                                                   + edits[e + 3]));
+            k1 = edits[e] + edits[e + 1];
+        }
+        result.addAll(diff.sequence1().subList(k1, diff.sequence1().size()));
+        return result;
+    }
+
+    /** Check that the common subsequence DIFF reports is one: its runs
+     *  hold equal lines, in order, and are lls() lines long in all. */
+    private static void checkCommon(Diff diff) {
+        int[] common = diff.commonSubsequence();
+        int total = 0, e1 = 0, e2 = 0;
+        for (int k = 0; k < common.length; k += 3) {
+            assertTrue(common[k] >= e1 && common[k + 1] >= e2);
+            for (int i = 0; i < common[k + 2]; i += 1) {
+                assertEquals(diff.get1(common[k] + i),
+                             diff.get2(common[k + 1] + i));
+            }
+            e1 = common[k] + common[k + 2];
+            e2 = common[k + 1] + common[k + 2];
+            total += common[k + 2];
+        }
+        assertEquals(diff.lls(), total);
+    }
+
+    @Test
+    public void textbookExample() {
+        Diff diff = new Diff();
+        diff.setSequences(lines("ABCABBA"), lines("CBABAC"));
+        assertEquals(4, diff.lls());
+        assertFalse(diff.sequencesEqual());
+        checkCommon(diff);
+        assertEquals(lines("CBABAC"), apply(diff));
+    }
+
+    @Test
+    public void equalAndEmptySequences() {
+        Diff diff = new Diff();
+        diff.setSequences(lines("abc"), lines("abc"));
+        assertTrue(diff.sequencesEqual());
+        assertEquals(0, diff.diffs().length);
+        assertArrayEquals(new int[] { 0, 0, 3 }, diff.commonSubsequence());
+
+        diff.setSequences(Collections.emptyList(), lines("xy"));
+        assertEquals(0, diff.lls());
+        assertArrayEquals(new int[] { 0, 0, 0, 2 }, diff.diffs());
+
+        diff.setSequences(lines("xy"), Collections.emptyList());
+        assertArrayEquals(new int[] { 0, 2, 0, 0 }, diff.diffs());
+    }
+
+    @Test
+    public void agreesWithQuadraticTable() {
+        Random random = new Random(61);
+        Diff diff = new Diff();
+        for (int trial = 0; trial < 200; trial += 1) {
+            ArrayList<String> a = new ArrayList<>(), b = new ArrayList<>();
+            for (int i = random.nextInt(40); i > 0; i -= 1) {
+                a.add("l" + random.nextInt(4));
+            }
+            for (int i = random.nextInt(40); i > 0; i -= 1) {
+                b.add("l" + random.nextInt(4));
+            }
+            diff.setSequences(a, b);
+            assertEquals(lcs(a, b), diff.lls());
+            int k1 = random.nextInt(a.size() + 1);
+            int k2 = random.nextInt(b.size() + 1);
+            assertEquals(lcs(a.subList(0, k1), b.subList(0, k2)),
+                         diff.lls(k1, k2));
+            checkCommon(diff);
+            assertEquals(b, apply(diff));
+        }
+    }
+
+    @Test
+    public void largeFilesWithFewEdits() {
+        ArrayList<String> a = new ArrayList<>();
+        for (int i = 0; i < 200000; i += 1) {
+            a.add("line " + i);
+        }
+        ArrayList<String> b = new ArrayList<>(a);
+        b.remove(100);
+        b.set(50000, "changed");
+        b.add(150000, "inserted");
+        Diff diff = new Diff();
+        diff.setSequences(a, b);
+        assertEquals(a.size() - 2, diff.lls());
+        assertEquals(b, apply(diff));
+    }
+
+}
@@ -0,0 +1,211 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Removes from a store the objects that no branch or staged file refers
+ *  to.  Collection marks every object reachable from the roots, from the
+ *  store's reachability bitmaps if it keeps them and otherwise by walking
+ *  the trees of the reachable commits in parallel, along with the bases
+ *  of the reachable blobs stored as deltas, then sweeps the rest.
+ *  Loose objects are swept in parallel; a pack holding unreachable objects
+ *  is replaced by one holding only its reachable ones, and segments
+ *  holding unreachable objects are rewritten likewise.  Temporary files
+ *  left by interrupted writes are removed too.  Nothing modified within
+ *  the grace period is removed, so objects written by a command that has
+ *  not yet recorded them survive.
+ *  @author Srikar Hanumanula
+ */
+class GarbageCollector {
+    /** Default grace period, in milliseconds: two weeks. */
+    static final long GRACE = 14L * 24 * 60 * 60 * 1000;
+
+    /** Namespaces swept. */
+    private static final String[] KINDS = {
+        ObjectStore.COMMITS, ObjectStore.TREES, ObjectStore.BLOBS,
+        ObjectStore.DELTAS,
+    };
+
+    /** The store collected. */
+    private final ObjectStore _store;
+    /** Commit graph of _store. */
+    private final CommitGraph _graph;
+    /** Files modified after this time, in ms since the epoch, are kept. */
+    private final long _cutoff;
+    /** Reachable objects, each as its namespace followed by its id. */
+    private final Set<String> _marked = ConcurrentHashMap.newKeySet();
+    /** Number of objects and files removed. */
+    private final AtomicLong _removed = new AtomicLong();
+    /** Number of bytes freed. */
+    private final AtomicLong _bytes = new AtomicLong();
+
+    /** A collector for STORE, whose commit graph is GRAPH, keeping files
+     *  modified less than GRACE milliseconds ago. */
+    GarbageCollector(ObjectStore store, CommitGraph graph, long grace) {
+        _store = store;
+        _graph = graph;
+        _cutoff = System.currentTimeMillis() - grace;
+    }
+
+    /** Remove the objects not reachable from the commits TIPS nor among
+     *  BLOBS, and return what was removed. */
+    GcResult collect(Collection<String> tips, Collection<String> blobs) {
+        long start = System.nanoTime();
+        Bitmaps bitmaps = Bitmaps.open(_store, _graph);
+        if (bitmaps != null) {
+            mark(bitmaps, tips);
+        } else {
+            mark(tips);
+        }
+        for (String blob : blobs) {
+            _marked.add(ObjectStore.BLOBS + blob);
+        }
+        markBases();
+        for (String kind : KINDS) {
+            sweep(kind);
+        }
+        for (Pack pack : new ArrayList<>(_store.packs())) {
+            repack(pack);
+        }
+        SegmentStore segments = _store.segments();
+        if (segments != null) {
+            long[] freed = segments.rewrite(_marked::contains, _cutoff);
+            _removed.addAndGet(freed[0]);
+            _bytes.addAndGet(freed[1]);
+        }
+        sweepTemporary(_store.objectsDir());
+        sweepTemporary(_store.packDir());
+        sweepTemporary(Utils.join(_store.objectsDir(), SegmentStore.DIR));
+        if (bitmaps != null) {
+            Bitmaps fresh = Bitmaps.create(_store, _graph);
+            fresh.update(tips);
+            fresh.save();
+        }
+        return new GcResult(_removed.get(), _bytes.get(),
+                            (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Mark the objects reachable from TIPS, according to BITMAPS. */
+    private void mark(Bitmaps bitmaps, Collection<String> tips) {
+        BitSet reachable = bitmaps.reachable(tips);
+        for (int n = reachable.nextSetBit(0); n >= 0;
+             n = reachable.nextSetBit(n + 1)) {
+            _marked.add(bitmaps.kind(n) + bitmaps.id(n));
+        }
+    }
+
+    /** Mark the commits reachable from TIPS, then, in parallel, their
+     *  trees and blobs.  A tree already marked is passed over with
+     *  everything below it. */
+    private void mark(Collection<String> tips) {
+        ArrayList<String> commits = new ArrayList<>();
+        HashSet<Integer> seen = new HashSet<>();
+        ArrayList<Integer> stack = new ArrayList<>();
+        for (String tip : tips) {
+            stack.add(_graph.index(tip));
+        }
+        while (!stack.isEmpty()) {
+            int k = stack.remove(stack.size() - 1);
+            if (k == CommitGraph.NONE || !seen.add(k)) {
+                continue;
+            }
+            commits.add(_graph.id(k));
+            stack.add(_graph.parent1(k));
+            stack.add(_graph.parent2(k));
+        }
+        commits.parallelStream().forEach(commit -> {
+            _marked.add(ObjectStore.COMMITS + commit);
+            Tree.walk(_store, Commit.load(_store, commit).getTree(),
+                tree -> !_marked.add(ObjectStore.TREES + tree),
+                (kind, id) -> _marked.add(kind + id));
+        });
+    }
+
+    /** Mark the deltas of the marked blobs stored as deltas, and the
+     *  blobs they are rebuilt from. */
+    private void markBases() {
+        for (String id : _store.list(ObjectStore.DELTAS)) {
+            String blob = id;
+            while (_marked.contains(ObjectStore.BLOBS + blob)) {
+                String base = _store.deltaBase(blob);
+                if (base == null || !_marked.add(ObjectStore.DELTAS + blob)) {
+                    break;
+                }
+                _marked.add(ObjectStore.BLOBS + base);
+                blob = base;
+            }
+        }
+    }
+
+    /** Remove the unmarked loose objects of namespace KIND. */
+    private void sweep(String kind) {
+        _store.loose(kind).parallelStream()
+            .filter(id -> !_marked.contains(kind + id))
+            .forEach(id -> remove(_store.file(kind, id)));
+    }
+
+    /** Replace PACK by a pack of its marked objects if it holds any that
+     *  are unmarked and it is older than the grace period. */
+    private void repack(Pack pack) {
+        if (pack.file().lastModified() >= _cutoff) {
+            return;
+        }
+        ArrayList<String[]> keep = new ArrayList<>();
+        int dropped = 0;
+        for (String kind : KINDS) {
+            for (String id : pack.ids(kind).keySet()) {
+                if (_marked.contains(kind + id)) {
+                    keep.add(new String[] {kind, id});
+                } else {
+                    dropped += 1;
+                }
+            }
+        }
+        if (dropped == 0) {
+            return;
+        }
+        PackWriter writer = new PackWriter(_store);
+        for (String[] object : keep) {
+            writer.add(object[0], object[1], _store);
+        }
+        Pack replacement = writer.finish();
+        long length = pack.file().length();
+        _store.addPack(replacement);
+        _store.removePack(pack);
+        if (pack.file().delete()) {
+            _removed.addAndGet(dropped);
+            _bytes.addAndGet(length - (replacement == null ? 0
+                                       : replacement.file().length()));
+        }
+    }
+
+    /** Remove the temporary files directly in DIR that are older than
+     *  the grace period. */
+    private void sweepTemporary(File dir) {
+        List<String> names = Utils.plainFilenamesIn(dir);
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            if (name.startsWith("tmp-") || name.endsWith(".tmp")) {
+                remove(Utils.join(dir, name));
+            }
+        }
+    }
+
+    /** Delete FILE, counting it, if it is older than the grace period. */
+    private void remove(File file) {
+        long length = file.length();
+        if (file.lastModified() < _cutoff && file.delete()) {
+            _removed.incrementAndGet();
+            _bytes.addAndGet(length);
+        }
+    }
+}
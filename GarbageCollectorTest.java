@@ -0,0 +1,161 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of GarbageCollector.
+ *  @author Srikar Hanumanula
+ */
+public class GarbageCollectorTest {
+
+    /** A grace period that leaves every file old enough to remove. */
+    private static final long NONE = -60_000;
+
+    /** Scratch directory and store. */
+    private StoreFixture _fixture;
+    /** Store collected. */
+    private ObjectStore _store;
+    /** A root commit, and its child, the tip. */
+    private String _c1, _c2;
+    /** Commit unreachable from the tip, with a snapshot of its own. */
+    private String _orphan;
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _store = _fixture.store();
+        _c1 = _fixture.commit(Map.of("a", "1\n", "dir/b", "b\n"));
+        _c2 = _fixture.commit(Map.of("a", "2\n", "dir/b", "b\n"), _c1);
+        _orphan = _fixture.commit(Map.of("a", "orphan\n"));
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    /** Store TEXT as a blob, as a new version of blob BASE, and return its
+     *  id. */
+    private String insert(String text, String base) throws IOException {
+        File source = Utils.join(_fixture.dir(), "file");
+        Files.writeString(source.toPath(), text);
+        return _store.insertBlob(source, base);
+    }
+
+    /** Return the root tree of commit ID. */
+    private String tree(String id) {
+        return Commit.load(_store, id).getTree();
+    }
+
+    /** Collect _store with grace period GRACE, keeping what the tip and
+     *  the staged blobs BLOBS refer to. */
+    private GcResult collect(long grace, String... blobs) {
+        return new GarbageCollector(_store, CommitGraph.open(_store), grace)
+            .collect(List.of(_c2), List.of(blobs));
+    }
+
+    /** Check that the history of the tip is intact and the orphan and its
+     *  snapshot are gone. */
+    private void checkCollected() {
+        for (String commit : List.of(_c1, _c2)) {
+            assertTrue(_store.contains(ObjectStore.COMMITS, commit));
+            Tree.walk(_store, tree(commit), t -> false,
+                (kind, id) -> assertTrue(_store.contains(kind, id)));
+        }
+        assertFalse(_store.contains(ObjectStore.COMMITS, _orphan));
+        assertFalse(_store.contains(ObjectStore.BLOBS,
+                                    Utils.sha1("orphan\n".getBytes(
+                                        StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void unreachableLooseObjectsAreRemoved() {
+        String orphanTree = tree(_orphan);
+        String staged = _fixture.blob("staged\n"),
+            garbage = _fixture.blob("garbage\n");
+        GcResult result = collect(NONE, staged);
+        checkCollected();
+        assertFalse(_store.contains(ObjectStore.TREES, orphanTree));
+        assertTrue(_store.contains(ObjectStore.BLOBS, staged));
+        assertFalse(_store.contains(ObjectStore.BLOBS, garbage));
+        assertEquals(4, result.getRemoved());
+        assertTrue(result.getBytes() > 0);
+        assertEquals(0, collect(NONE, staged).getRemoved());
+    }
+
+    @Test
+    public void recentObjectsAreKept() {
+        String garbage = _fixture.blob("garbage\n");
+        assertEquals(0, collect(GarbageCollector.GRACE).getRemoved());
+        assertTrue(_store.contains(ObjectStore.COMMITS, _orphan));
+        assertTrue(_store.contains(ObjectStore.BLOBS, garbage));
+    }
+
+    @Test
+    public void packsAreRewrittenWithoutUnreachableObjects() {
+        String orphanTree = tree(_orphan);
+        PackWriter writer = new PackWriter(_store);
+        writer.add(ObjectStore.COMMITS, _orphan, _store);
+        writer.add(ObjectStore.COMMITS, _c1, _store);
+        writer.add(ObjectStore.TREES, orphanTree, _store);
+        _store.addPack(writer.finish());
+        _store.file(ObjectStore.COMMITS, _orphan).delete();
+        _store.file(ObjectStore.COMMITS, _c1).delete();
+        _store.file(ObjectStore.TREES, orphanTree).delete();
+        collect(NONE);
+        checkCollected();
+        assertFalse(_store.contains(ObjectStore.TREES, orphanTree));
+        assertEquals(1, _store.packs().size());
+        assertTrue(_store.packs().get(0).contains(ObjectStore.COMMITS, _c1));
+    }
+
+    @Test
+    public void bitmapsGiveTheSameResult() {
+        Bitmaps bitmaps = Bitmaps.create(_store, CommitGraph.open(_store));
+        bitmaps.update(List.of(_c2));
+        bitmaps.save();
+        assertEquals(3, collect(NONE).getRemoved());
+        checkCollected();
+    }
+
+    @Test
+    public void deltaBasesOfReachableBlobsAreKept() throws IOException {
+        String text = "a line of a file long enough to store as deltas\n";
+        String v1 = insert(text.repeat(100), null);
+        String v2 = insert(text.repeat(100) + "v2\n", v1);
+        String v3 = insert(text.repeat(100) + "v3\n", v1);
+        assertEquals(v1, _store.deltaBase(v2));
+        assertEquals(v1, _store.deltaBase(v3));
+        Commit tip = new Commit("v2", Tree.build(_store, Map.of("f", v2)),
+                                _c2, null);
+        _store.write(ObjectStore.COMMITS, tip.getHash(), tip.encode());
+        _c2 = tip.getHash();
+        collect(NONE);
+        checkCollected();
+        assertTrue(_store.contains(ObjectStore.BLOBS, v1));
+        assertFalse(_store.contains(ObjectStore.BLOBS, v3));
+        assertEquals(text.repeat(100) + "v2\n",
+                     new String(_store.read(ObjectStore.BLOBS, v2),
+                                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void temporaryFilesAreRemoved() throws IOException {
+        File objects = Utils.join(_fixture.gitletDir(), "objects");
+        File temp = File.createTempFile("tmp-", ".obj", objects);
+        collect(GarbageCollector.GRACE);
+        assertTrue(temp.exists());
+        collect(NONE);
+        assertFalse(temp.exists());
+    }
+
+}
@@ -0,0 +1,33 @@
+package gitlet;
+
+/** What the gc command removed, and how long it took.
+ *  @author Srikar Hanumanula
+ */
+public class GcResult {
+    /** Number of objects and stray files removed. */
+    private final long _removed;
+    /** Number of bytes of storage freed. */
+    private final long _bytes;
+    /** Time taken, in milliseconds. */
+    private final long _millis;
+
+    /** A collection that removed REMOVED objects and files, freeing BYTES
+     *  bytes, in MILLIS milliseconds. */
+    GcResult(long removed, long bytes, long millis) {
+        _removed = removed;
+        _bytes = bytes;
+        _millis = millis;
+    }
+
+    public long getRemoved() {
+        return _removed;
+    }
+
+    public long getBytes() {
+        return _bytes;
+    }
+
+    public long getMillis() {
+        return _millis;
+    }
+}
@@ -2,32 +2,31 @@ package gitlet;
 
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.TreeMap;
-import java.util.Map;
-import java.util.LinkedList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Collections;
+import java.util.TreeSet;
+import java.util.List;
+import java.util.function.Consumer;
 
 
-public class Gitlet implements Serializable {
+public class Gitlet {
     /**
-     * HEAD of current branch.
+     * HEAD of current branch, once loaded.
      */
     private Commit _HEAD;
     /**
-     * Branches.
+     * Branches and the current branch.
      */
-    private TreeMap<String, String> branches;
+    private final Refs _refs;
     /**
      * Staged files.
      */
-    private TreeMap<String, String> staged;
-    /**
-     * Current Branch.
-     */
-    private String currentBranch;
+    private final MapFile _staged;
     /**
      * Gitlet Directory.
      */
@@ -35,526 +34,561 @@ public class Gitlet implements Serializable {
     /**
      * Remotes.
      */
-    private TreeMap<String, String> remotes;
+    private final MapFile _remotes;
+    /**
+     * Name of the staging index file.
+     */
+    static final String STAGED_FILE = "staged";
+    /**
+     * Name of the remotes file.
+     */
+    static final String REMOTES_FILE = "remotes";
+    /**
+     * Name of the file holding the whole state in older repositories.
+     */
+    static final String LEGACY_FILE = "gitlet";
 
 
     public Gitlet() {
-        branches = new TreeMap<>();
-        staged = new TreeMap<>();
-        remotes = new TreeMap<>();
-        _HEAD = new Commit("initial commit", null);
-        File file = new File(GITLET_DIR + _HEAD.getHash());
-        Utils.writeObject(file, _HEAD);
-        currentBranch = "master";
-        branches.put(currentBranch, _HEAD.getHash());
+        File dir = new File(GITLET_DIR);
+        _refs = new Refs(dir);
+        _staged = new MapFile(Utils.join(dir, STAGED_FILE));
+        _remotes = new MapFile(Utils.join(dir, REMOTES_FILE));
+    }
+
+    public void init() {
+        _HEAD = new Commit("initial commit",
+                Tree.build(ObjectStore.local(), new TreeMap<>()), null, null);
+        saveCommit(_HEAD);
+        _refs.setHead("master");
+        _refs.put("master", _HEAD.getHash());
+    }
+
+    public void save() {
+        boolean moved = _refs.changed();
+        _refs.save();
+        _staged.save();
+        _remotes.save();
+        if (moved && Bitmaps.kept(ObjectStore.local())) {
+            Bitmaps.refresh(ObjectStore.local(), CommitGraph.local(),
+                    tips(_refs));
+        }
+    }
+
+    public GcResult gc(long grace) {
+        ArrayList<String> blobs = new ArrayList<>();
+        for (String blob : staged().values()) {
+            if (blob != null) {
+                blobs.add(blob);
+            }
+        }
+        return new GarbageCollector(ObjectStore.local(), CommitGraph.local(),
+                grace).collect(tips(_refs), blobs);
+    }
+
+    public void writeBitmaps() {
+        Bitmaps bitmaps = Bitmaps.create(ObjectStore.local(),
+                CommitGraph.local());
+        bitmaps.update(tips(_refs));
+        bitmaps.save();
+    }
+
+    public void useSegments() {
+        ObjectStore.local().useSegments();
+    }
+
+    private Commit head() {
+        if (_HEAD == null) {
+            _HEAD = Commit.load(ObjectStore.local(),
+                    _refs.get(_refs.head()));
+        }
+        return _HEAD;
+    }
+
+    private TreeMap<String, String> staged() {
+        return _staged.map();
+    }
+
+    private TreeMap<String, String> remotes() {
+        return _remotes.map();
     }
 
 
     public void add(String arg) {
-        byte[] contents = null;
-        try {
-            contents = Utils.readContents(new File(arg));
-        } catch (IllegalArgumentException e) {
-            System.out.println("File does not exist.");
-            System.exit(0);
-        }
-        String hash = Utils.sha1(contents);
-        if (_HEAD.getBlobs().containsKey(arg)
-                && _HEAD.getBlobs().get(arg).equals(hash)) {
-            staged.remove(arg);
+        arg = WorkingTree.normalize(arg);
+        File file = new File(arg);
+        String hash = StatCache.local().hash(arg);
+        if (hash == null) {
+            throw Utils.error("File does not exist.");
+        }
+        if (head().getBlobs().containsKey(arg)
+                && head().getBlobs().get(arg).equals(hash)) {
+            staged().remove(arg);
             return;
         }
-        File dest = new File(GITLET_DIR + hash);
-        staged.put(arg, hash);
-        Utils.writeContents(dest, contents);
+        ObjectStore store = ObjectStore.local();
+        if (!store.contains(ObjectStore.BLOBS, hash)) {
+            String base = staged().get(arg);
+            if (base == null) {
+                base = head().getBlobs().get(arg);
+            }
+            hash = store.insertBlob(file, base);
+        }
+        staged().put(arg, hash);
     }
 
-    public void commit(String message) {
-        if (staged.size() == 0) {
-            System.out.println("No changes added to the commit.");
-            System.exit(0);
+    public String commit(String message) {
+        if (staged().size() == 0) {
+            throw Utils.error("No changes added to the commit.");
         }
         if (message.equals("")) {
-            System.out.println("Please enter a commit message.");
+            throw Utils.error("Please enter a commit message.");
         }
-        Commit newCommit = new Commit(message, _HEAD.getHash());
+        Commit newCommit = new Commit(message, newTree(), head().getHash(),
+                null);
         _HEAD = newCommit;
-        TreeMap<String, String> newBlobs = newCommit.getBlobs();
-        for (Map.Entry<String, String> entry : staged.entrySet()) {
-            if (entry.getValue() == null) {
-                newBlobs.remove(entry.getKey());
-            } else {
-                newBlobs.put(entry.getKey(), entry.getValue());
-            }
-        }
-        staged.clear();
-        branches.put(currentBranch, _HEAD.getHash());
-        File file = new File(GITLET_DIR + newCommit.getHash());
-        Utils.writeObject(file, newCommit);
+        staged().clear();
+        _refs.put(_refs.head(), head().getHash());
+        saveCommit(newCommit);
+        return newCommit.getHash();
     }
 
     public void commitMerge(String message, String parent2) {
-        Commit newCommit = new Commit(message, _HEAD.getHash(), parent2);
-        newCommit.setParent2(branches.get(parent2));
+        Commit newCommit = new Commit(message, newTree(), head().getHash(),
+                _refs.get(parent2));
         _HEAD = newCommit;
-        TreeMap<String, String> newBlobs = newCommit.getBlobs();
-        for (Map.Entry<String, String> entry : staged.entrySet()) {
-            if (entry.getValue() == null) {
-                newBlobs.remove(entry.getKey());
-            } else {
-                newBlobs.put(entry.getKey(), entry.getValue());
-            }
-        }
-        staged.clear();
-        branches.put(currentBranch, _HEAD.getHash());
-        File file = new File(GITLET_DIR + newCommit.getHash());
-        Utils.writeObject(file, newCommit);
+        staged().clear();
+        _refs.put(_refs.head(), head().getHash());
+        saveCommit(newCommit);
+    }
+
+    private String newTree() {
+        return Tree.update(ObjectStore.local(), head().getTree(), staged());
     }
 
     public void rm(String arg) {
+        arg = WorkingTree.normalize(arg);
         boolean removed = false;
-        if (staged.containsKey(arg)) {
-            staged.remove(arg);
+        if (staged().containsKey(arg)) {
+            staged().remove(arg);
             removed = true;
         }
-        if (_HEAD.getBlobs().containsKey(arg)) {
-            staged.put(arg, null);
+        if (head().getBlobs().containsKey(arg)) {
+            staged().put(arg, null);
             removed = true;
-            Utils.restrictedDelete(arg);
+            WorkingTree.local().delete(arg);
+            StatCache.local().remove(arg);
         }
         if (!removed) {
-            System.out.println("No reason to remove the file.");
+            throw Utils.error("No reason to remove the file.");
         }
     }
 
-    public void log() {
-        Commit trace = _HEAD;
-        while (trace != null) {
-            System.out.println("===");
-            System.out.println("commit " + trace.getHash());
-            System.out.println("Date: " + trace.getTimestamp());
-            System.out.println(trace.getMessage());
-            System.out.println();
-            trace = Commit.getCommit(trace.getParent());
+    public List<Commit> log() {
+        ObjectStore store = ObjectStore.local();
+        CommitGraph graph = CommitGraph.local();
+        ArrayList<Commit> result = new ArrayList<>();
+        int k = graph.index(head().getHash());
+        while (k != CommitGraph.NONE) {
+            result.add(Commit.load(store, graph.id(k)));
+            k = graph.parent1(k);
         }
+        return result;
     }
 
-    public void checkoutFile(String[] args) {
-        String fileName;
-        Commit commit;
-        if (args[1].equals("--")) {
-            Main.checkArgs(3, args.length);
-            fileName = args[2];
-            commit = _HEAD;
-        } else {
-            Main.checkArgs(4, args.length);
-            if (!args[2].equals("--")) {
-                System.out.println("Incorrect operands.");
-            }
-            commit = Commit.getCommit(args[1]);
-            fileName = args[3];
-        }
+    public void checkoutFile(String commitID, String fileName) {
+        fileName = WorkingTree.normalize(fileName);
+        Commit commit = commitID == null ? head()
+                : Commit.getCommit(commitID);
         if (!commit.getBlobs().containsKey(fileName)) {
-            System.out.println("File does not exist in that commit.");
-            System.exit(0);
+            throw Utils.error("File does not exist in that commit.");
         }
-        File currentFile = new File(fileName);
-        File replacement = new File(GITLET_DIR
-                + commit.getBlobs().get(fileName));
-        byte[] contents = Utils.readContents(replacement);
-        Utils.writeContents(currentFile, contents);
+        String blob = commit.getBlobs().get(fileName);
+        ObjectStore.local().copyTo(ObjectStore.BLOBS, blob,
+                WorkingTree.local().create(fileName));
+        StatCache.local().record(fileName, blob);
     }
 
     public void checkoutBranch(String name) {
-        if (!branches.containsKey(name)) {
-            System.out.println("No such branch exists.");
-            System.exit(0);
+        if (!_refs.containsKey(name)) {
+            throw Utils.error("No such branch exists.");
         }
-        if (currentBranch.equals(name)) {
-            System.out.println("No need to checkout the current branch.");
-            System.exit(0);
+        if (_refs.head().equals(name)) {
+            throw Utils.error("No need to checkout the current branch.");
         }
-        currentBranch = name;
-        staged.clear();
-        Commit newHEAD = _HEAD;
-        if (!branches.get(name).equals(_HEAD.getHash())) {
-            newHEAD = Commit.getCommit(branches.get(name));
+        Commit newHEAD = head();
+        if (!_refs.get(name).equals(head().getHash())) {
+            newHEAD = Commit.getCommit(_refs.get(name));
         }
+        _refs.setHead(name);
+        staged().clear();
         untrackedCheck(newHEAD);
+        new CheckoutEngine().checkout(head(), newHEAD);
         _HEAD = newHEAD;
-        for (String fileName : Utils.plainFilenamesIn("./")) {
-            if (!_HEAD.getBlobs().containsKey(fileName)) {
-                Utils.restrictedDelete(fileName);
-            }
-        }
-        for (String file : _HEAD.getBlobs().keySet()) {
-            byte[] contents = Utils.readContents(
-                    new File(GITLET_DIR + _HEAD.getBlobs().get(file)));
-            Utils.writeContents(new File(file), contents);
-        }
     }
 
-    public void globalLog() {
-        for (String filename : Utils.plainFilenamesIn(GITLET_DIR)) {
-            Commit commit;
-            try {
-                commit = Commit.getCommit(filename);
-            } catch (IllegalArgumentException e) {
-                continue;
-            }
-            System.out.println("===");
-            System.out.println("commit " + commit.getHash());
-            System.out.println("Date: " + commit.getTimestamp());
-            System.out.println(commit.getMessage());
-            System.out.println();
+    public List<Commit> globalLog() {
+        ObjectStore store = ObjectStore.local();
+        ArrayList<Commit> result = new ArrayList<>();
+        for (String hash : store.list(ObjectStore.COMMITS)) {
+            result.add(Commit.load(store, hash));
         }
+        return result;
     }
 
-    public void find(String message) {
-        boolean found = false;
-        for (String filename : Utils.plainFilenamesIn(GITLET_DIR)) {
-            Commit commit;
-            try {
-                commit = Commit.getCommit(filename);
-            } catch (IllegalArgumentException e) {
-                continue;
-            }
+    public List<String> find(String message) {
+        ArrayList<String> result = new ArrayList<>();
+        ObjectStore store = ObjectStore.local();
+        for (String hash : store.list(ObjectStore.COMMITS)) {
+            Commit commit = Commit.load(store, hash);
             if (commit.getMessage().equals(message)) {
-                System.out.println(commit.getHash());
-                found = true;
+                result.add(commit.getHash());
             }
         }
-        if (!found) {
-            System.out.println("Found no commit with that message.");
-            System.exit(0);
+        if (result.isEmpty()) {
+            throw Utils.error("Found no commit with that message.");
         }
+        return result;
     }
 
-    public void status() {
-        System.out.println("=== Branches ===");
-        for (String branch : branches.keySet()) {
-            String selector = "";
-            if (currentBranch.equals(branch)) {
-                selector = "*";
+    public Status status() {
+        ArrayList<String> stagedFiles = new ArrayList<>();
+        ArrayList<String> removedFiles = new ArrayList<>();
+        for (String file : staged().keySet()) {
+            if (staged().get(file) != null) {
+                stagedFiles.add(file);
+            } else {
+                removedFiles.add(file);
             }
-            System.out.println(selector + branch);
         }
-        System.out.println();
-        System.out.println("=== Staged Files ===");
-        for (String file : staged.keySet()) {
-            if (staged.get(file) != null) {
-                System.out.println(file);
+        TreeMap<String, String> modifications = new TreeMap<>();
+        ChangeDetector detector = new ChangeDetector();
+        for (String fileName : head().getBlobs().keySet()) {
+            if (staged().containsKey(fileName)) {
+                continue;
             }
-        }
-        System.out.println();
-        System.out.println("=== Removed Files ===");
-        for (String file : staged.keySet()) {
-            if (staged.get(file) == null) {
-                System.out.println(file);
+            if (!detector.exists(fileName)) {
+                modifications.put(fileName, Status.DELETED);
+            } else if (detector.changed(fileName,
+                    head().getBlobs().get(fileName))) {
+                modifications.put(fileName, Status.MODIFIED);
             }
         }
-        System.out.println();
-        System.out.println("=== Modifications Not Staged For Commit ===");
-        for (String fileName : _HEAD.getBlobs().keySet()) {
-            File current = new File(fileName);
-            if (current.exists()) {
-                File file = new File(GITLET_DIR
-                        + _HEAD.getBlobs().get(fileName));
-                Diff d = new Diff();
-                d.setSequences(current, file);
-                if (!d.sequencesEqual() && !staged.containsKey(fileName)) {
-                    System.out.println(fileName + "(modified)");
-                }
-            } else {
-                if (!staged.containsKey(fileName)) {
-                    System.out.println(fileName + "(deleted)");
-                }
+        ArrayList<String> untracked = new ArrayList<>();
+        for (String fileName : WorkingTree.local().files()) {
+            if (!head().getBlobs().containsKey(fileName)
+                    && !staged().containsKey(fileName)) {
+                untracked.add(fileName);
             }
         }
-        System.out.println();
-        System.out.println("=== Untracked Files ===");
-        for (String fileName : Utils.plainFilenamesIn("./")) {
-            if (!_HEAD.getBlobs().containsKey(fileName)
-                    && !staged.containsKey(fileName)) {
-                System.out.println(fileName);
+        return new Status(new ArrayList<>(_refs.keySet()), _refs.head(),
+                stagedFiles, removedFiles, modifications, untracked);
+    }
+
+    public void statusPorcelain(Consumer<String> out) {
+        ChangeDetector detector = new ChangeDetector();
+        TreeSet<String> paths = new TreeSet<>(head().getBlobs().keySet());
+        paths.addAll(staged().keySet());
+        paths.addAll(WorkingTree.local().files());
+        for (String path : paths) {
+            String head = head().getBlobs().get(path);
+            boolean isStaged = staged().containsKey(path);
+            String index = isStaged ? staged().get(path) : head;
+            char x = ' ', y = ' ';
+            if (isStaged) {
+                x = index == null ? 'D' : head == null ? 'A' : 'M';
+            }
+            boolean exists = detector.exists(path);
+            if (index != null && !exists) {
+                y = 'D';
+            } else if (index != null && detector.changed(path, index)) {
+                y = 'M';
+            }
+            if (x != ' ' || y != ' ') {
+                out.accept("" + x + y + " " + path);
+            }
+            if (index == null && exists) {
+                out.accept("?? " + path);
             }
         }
     }
 
     public void branch(String branchName) {
-        if (branches.containsKey(branchName)) {
-            System.out.println("A branch with that name already exists.");
-            System.exit(0);
+        if (!Refs.isValidName(branchName)) {
+            throw Utils.error("Invalid branch name.");
         }
-        branches.put(branchName, _HEAD.getHash());
+        if (_refs.containsKey(branchName)) {
+            throw Utils.error("A branch with that name already exists.");
+        }
+        if (_refs.collides(branchName)) {
+            throw Utils.error("A branch name cannot extend another's.");
+        }
+        _refs.put(branchName, head().getHash());
     }
 
     public void rmBranch(String branchName) {
-        if (!branches.containsKey(branchName)) {
-            System.out.println("A branch with that name does not exist.");
-            System.exit(0);
+        if (!_refs.containsKey(branchName)) {
+            throw Utils.error("A branch with that name does not exist.");
         }
-        if (currentBranch.equals(branchName)) {
-            System.out.println("Cannot remove the current branch.");
-            System.exit(0);
+        if (_refs.head().equals(branchName)) {
+            throw Utils.error("Cannot remove the current branch.");
         }
-        branches.remove(branchName);
+        _refs.remove(branchName);
     }
 
     public void reset(String commitID) {
         Commit reset = Commit.getCommit(commitID);
         untrackedCheck(reset);
-        staged.clear();
-        for (String fileName : _HEAD.getBlobs().keySet()) {
-            if (!reset.getBlobs().containsKey(fileName)) {
-                Utils.restrictedDelete(new File(fileName));
-            }
-        }
-        for (String fileName : reset.getBlobs().keySet()) {
-            String[] args = {"checkout", reset.getHash(), "--", fileName};
-            checkoutFile(args);
-        }
+        staged().clear();
+        new CheckoutEngine().checkout(head(), reset);
         _HEAD = reset;
-        branches.put(currentBranch, _HEAD.getHash());
+        _refs.put(_refs.head(), head().getHash());
     }
 
     public void mergeChecks(String given) {
-        if (staged.size() > 0) {
-            System.out.println("You have uncommitted changes.");
-            System.exit(0);
+        if (staged().size() > 0) {
+            throw Utils.error("You have uncommitted changes.");
         }
-        if (!branches.containsKey(given)) {
-            System.out.println("A branch with that name does not exist.");
-            System.exit(0);
+        if (!_refs.containsKey(given)) {
+            throw Utils.error("A branch with that name does not exist.");
         }
-        if (currentBranch.equals(given)) {
-            System.out.println("Cannot merge a branch with itself.");
-            System.exit(0);
+        if (_refs.head().equals(given)) {
+            throw Utils.error("Cannot merge a branch with itself.");
         }
     }
 
-    public void merge(String given) {
+    public boolean merge(String given) {
         mergeChecks(given);
-        LinkedList<String> givenCommits = bfs(branches.get(given));
-        LinkedList<String> currentCommits = bfs(branches.get(currentBranch));
-        String split = null;
-        for (String commit : currentCommits) {
-            if (givenCommits.contains(commit)) {
-                split = commit;
-                break;
-            }
-        }
+        String split = MergeBase.best(CommitGraph.local(),
+                _refs.get(_refs.head()), _refs.get(given));
         Commit splitCommit = Commit.getCommit(split);
-        Commit currentCommit = Commit.getCommit(branches.get(currentBranch));
-        Commit givenCommit = Commit.getCommit(branches.get(given));
+        Commit currentCommit = Commit.getCommit(_refs.get(_refs.head()));
+        Commit givenCommit = Commit.getCommit(_refs.get(given));
         untrackedCheck(givenCommit);
-        if (split.equals(branches.get(given))) {
-            System.out.println("Given branch is an "
+        if (split.equals(_refs.get(given))) {
+            throw Utils.error("Given branch is an "
                     + "ancestor of the current branch.");
-            System.exit(0);
         }
-        if (split.equals(branches.get(currentBranch))) {
+        if (split.equals(_refs.get(_refs.head()))) {
             checkoutBranch(given);
-            System.out.println("Current branch fast-forwarded.");
-            System.exit(0);
-        }
-        HashSet<String> files = new HashSet<>();
-        String[] givenFiles = givenCommit.getBlobs().keySet().toArray(
-                new String[0]);
-        String[] cwdFiles = Utils.plainFilenamesIn("./").toArray(
-                new String[0]);
-        Collections.addAll(files, givenFiles);
-        Collections.addAll(files, cwdFiles);
-        boolean conflict = mergeHelper(files, currentCommit, splitCommit,
-                givenCommit, given, false);
-        commitMerge("Merged " + given + " into " + currentBranch + ".", given);
-        if (conflict) {
-            System.out.println("Encountered a merge conflict.");
-        }
-    }
-
-    private boolean mergeHelper(HashSet<String> files, Commit currentCommit,
-                                Commit splitCommit,
-                                Commit givenCommit,
-                                String given, boolean conflict) {
-        for (String fileName : files) {
-            String currentFileName = currentCommit.getBlobs().get(fileName);
-            String splitFileName = splitCommit.getBlobs().get(fileName);
-            String givenFileName = givenCommit.getBlobs().get(fileName);
-            File currentFile = null;
-            File givenFile = null;
-            if (currentFileName != null) {
-                currentFile = new File(GITLET_DIR + currentFileName);
-            }
-            if (givenFileName != null) {
-                givenFile = new File(GITLET_DIR + givenFileName);
-            }
+            throw Utils.error("Current branch fast-forwarded.");
+        }
+        boolean conflict = false;
+        ObjectStore store = ObjectStore.local();
+        List<MergeEngine.Change> changes = new MergeEngine(store).merge(
+                splitCommit.getTree(), currentCommit.getTree(),
+                givenCommit.getTree());
+        WorkingTree tree = WorkingTree.local();
+        changes.parallelStream().forEach(c -> writeMerge(store, tree, c));
+        for (MergeEngine.Change change : changes) {
+            conflict |= stageMerge(change);
+        }
+        commitMerge("Merged " + given + " into " + _refs.head() + ".", given);
+        return conflict;
+    }
 
-            File splitFile = new File(GITLET_DIR + splitFileName);
-            Diff givenDiff = new Diff();
-            givenDiff.setSequences(givenFile, splitFile);
-            Diff currentDiff = new Diff();
-            currentDiff.setSequences(currentFile, splitFile);
-            Diff changed = new Diff();
-            changed.setSequences(currentFile, givenFile);
-            if (!givenDiff.sequencesEqual() && currentDiff.sequencesEqual()) {
-                if (givenFile != null) {
-                    String[] args = {"checkout",
-                            branches.get(given), "--", fileName};
-                    checkoutFile(args);
-                    add(fileName);
-                } else {
-                    rm(fileName);
-                }
-            } else if (!givenDiff.sequencesEqual()
-                    && !currentDiff.sequencesEqual()
-                    && !changed.sequencesEqual()) {
-                conflict = true;
-                String currentContents = "";
-                String givenContents = "";
-                if (currentFile != null) {
-                    currentContents = Utils.readContentsAsString(currentFile);
-                }
-                if (givenFile != null) {
-                    givenContents = Utils.readContentsAsString(givenFile);
-                }
-                String contents = "<<<<<<< HEAD\n"
-                        + currentContents + "=======\n"
-                        + givenContents + ">>>>>>>\n";
-                Utils.writeContents(new File(fileName), contents);
-                add(fileName);
-            }
+    public String mergeBase(String first, String second) {
+        return MergeBase.best(CommitGraph.local(),
+                resolveCommit(first), resolveCommit(second));
+    }
+
+    private String resolveCommit(String name) {
+        if (_refs.containsKey(name)) {
+            return _refs.get(name);
         }
-        return conflict;
+        String hash = ObjectStore.local().resolve(ObjectStore.COMMITS, name);
+        if (hash == null) {
+            throw Utils.error("No commit with that id exists.");
+        }
+        return hash;
     }
 
-    private LinkedList<String> bfs(String s) {
-        HashMap<String, Boolean> visited = new HashMap<>();
-        visited.put(s, true);
-        LinkedList<String> queue = new LinkedList<>();
-        LinkedList<String> order = new LinkedList<>();
-        order.add(s);
-        queue.add(s);
-        while (queue.size() != 0) {
-            s = queue.poll();
-            order.add(s);
-            String n = Commit.getCommit(s).getParent();
-            if (n != null) {
-                if (!visited.containsKey(n)) {
-                    visited.put(n, true);
-                    queue.add(n);
-                }
-            }
-            n = Commit.getCommit(s).getParent2();
-            if (n != null) {
-                if (!visited.containsKey(n)) {
-                    visited.put(n, true);
-                    queue.add(n);
-                }
-            }
+    private static void writeMerge(ObjectStore store, WorkingTree tree,
+                                   MergeEngine.Change change) {
+        if (change.isRemoval()) {
+            return;
+        }
+        File file = tree.create(change.path());
+        if (change.contents() != null) {
+            Utils.writeContents(file, change.contents());
+        } else {
+            store.copyTo(ObjectStore.BLOBS, change.blob(), file);
+        }
+    }
+
+    private boolean stageMerge(MergeEngine.Change change) {
+        String path = change.path();
+        if (change.isRemoval()) {
+            rm(path);
+            return false;
+        }
+        StatCache.local().record(path, change.blob());
+        staged().put(path, change.blob());
+        return change.isConflict();
+    }
+
+    private static ArrayList<String> tips(Refs refs) {
+        ArrayList<String> result = new ArrayList<>();
+        for (String branch : refs.keySet()) {
+            result.add(refs.get(branch));
         }
-        return order;
+        return result;
     }
 
     private void untrackedCheck(Commit reset) {
-        for (String filename : Utils.plainFilenamesIn("./")) {
-            String hash = Utils.sha1(Utils.readContents(new File(filename)));
-            if (!_HEAD.getBlobs().containsKey(filename)
-                    && !staged.containsKey(filename)
+        StatCache cache = StatCache.local();
+        for (String filename : WorkingTree.local().files()) {
+            if (!head().getBlobs().containsKey(filename)
+                    && !staged().containsKey(filename)
                     && reset.getBlobs().containsKey(filename)
-                    && !reset.getBlobs().get(filename).equals(hash)) {
-                System.out.println("There is an untracked file in the way; "
+                    && !reset.getBlobs().get(filename).equals(
+                            cache.hash(filename))) {
+                throw Utils.error("There is an untracked file in the way; "
                         + "delete it, or add and commit it first.");
-                System.exit(0);
             }
         }
     }
 
     public void addRemote(String name, String path) {
-        if (remotes.containsKey(name)) {
-            System.out.println("A remote with that name already exists.");
-            System.exit(0);
+        if (remotes().containsKey(name)) {
+            throw Utils.error("A remote with that name already exists.");
         }
-        remotes.put(name, path);
+        remotes().put(name, path);
     }
 
     public void rmRemote(String name) {
-        if (!remotes.containsKey(name)) {
-            System.out.println("A remote with that name does not exist.");
-            System.exit(0);
+        if (!remotes().containsKey(name)) {
+            throw Utils.error("A remote with that name does not exist.");
         }
-        remotes.remove(name);
+        remotes().remove(name);
     }
 
     public void push(String name, String branch) {
-        File remoteDir = new File(remotes.get(name));
+        if (!Refs.isValidName(branch)) {
+            throw Utils.error("Invalid branch name.");
+        }
+        File remoteDir = new File(remotes().get(name));
         if (!remoteDir.exists()) {
-            System.out.println("Remote directory not found.");
-            System.exit(0);
-        }
-        Gitlet remote = Utils.readObject(new
-                File(remotes.get(name) + "/gitlet"), Gitlet.class);
-        if (!remote.branches.containsKey(branch)) {
-            remote.branch(branch);
-        }
-        String remoteBranch = remote.branches.get(branch);
-        LinkedList<String> history = bfs(_HEAD.getHash());
-        if (!history.contains(remoteBranch)) {
-            System.out.println("Please pull down remote"
+            throw Utils.error("Remote directory not found.");
+        }
+        migrate(remoteDir);
+        Refs remote = new Refs(remoteDir);
+        if (remote.collides(branch)) {
+            throw Utils.error("A branch name cannot extend another's.");
+        }
+        if (!remote.containsKey(branch)) {
+            remote.put(branch, remote.get(remote.head()));
+        }
+        String remoteBranch = remote.get(branch);
+        ObjectStore store = ObjectStore.local();
+        CommitGraph graph = CommitGraph.local();
+        ObjectStore remoteStore = new ObjectStore(remoteDir);
+        remoteStore.migrate();
+        if (!store.contains(ObjectStore.COMMITS, remoteBranch)
+                || !MergeBase.isAncestor(graph, remoteBranch,
+                        head().getHash())) {
+            throw Utils.error("Please pull down remote"
                     + " changes before pushing.");
-            System.exit(0);
-        }
-        int start = history.indexOf(remoteBranch);
-        for (; start < history.size(); start++) {
-            String commit = history.get(start);
-            Utils.writeContents(new File(remotes.get(name) + commit),
-                    Utils.readContents(new File(GITLET_DIR + commit)));
-            for (String blob : Commit.getCommit(commit).getBlobs().values()) {
-                Utils.writeContents(new File(remotes.get(name) + blob),
-                        Utils.readContents(new File(GITLET_DIR + blob)));
-            }
         }
-        remote.branches.put(branch, _HEAD.getHash());
+        new Transfer(store, graph, remoteStore).send(
+                List.of(head().getHash()), tips(remote));
+        CommitGraph remoteGraph = CommitGraph.open(remoteStore);
+        remoteGraph.add(head().getHash());
+        remote.put(branch, head().getHash());
+        remote.save();
+        Bitmaps.refresh(remoteStore, remoteGraph, tips(remote));
     }
 
     public void fetch(String name, String branch) {
-        File remoteDir = new File(remotes.get(name));
+        if (!Refs.isValidName(name + "/" + branch)) {
+            throw Utils.error("Invalid branch name.");
+        }
+        if (_refs.collides(name + "/" + branch)) {
+            throw Utils.error("A branch name cannot extend another's.");
+        }
+        File remoteDir = new File(remotes().get(name));
         if (!remoteDir.exists()) {
-            System.out.println("Remote directory not found.");
-            System.exit(0);
-        }
-        Gitlet remote = Utils.readObject(new File(remotes.get(name)
-                + "/gitlet"), Gitlet.class);
-        if (!remote.branches.containsKey(branch)) {
-            System.out.println("That remote does not have that branch.");
-            System.exit(0);
-        }
-        if (!branches.containsKey(name + "/" + branch)) {
-            branch(name + "/" + branch);
-        }
-
-        LinkedList<String> history = remote.bfs(remote.branches.get(branch));
-
-        int start = history.indexOf(_HEAD.getHash());
-        if (start == -1) {
-            start = history.size() - 1;
-        }
-        for (; start >= 0; start--) {
-            String commit = history.get(start);
-            Utils.writeContents(new File(GITLET_DIR + commit),
-                    Utils.readContents(new File(remotes.get(name)
-                            + "/" + commit)));
-            for (String blob : Commit.getCommit(commit).getBlobs().values()) {
-                Utils.writeContents(new File(GITLET_DIR + blob),
-                        Utils.readContents(new File(remotes.get(name)
-                                + "/" + blob)));
-            }
+            throw Utils.error("Remote directory not found.");
+        }
+        migrate(remoteDir);
+        Refs remote = new Refs(remoteDir);
+        if (!remote.containsKey(branch)) {
+            throw Utils.error("That remote does not have that branch.");
+        }
+        String tip = remote.get(branch);
+        ObjectStore store = ObjectStore.local();
+        ObjectStore remoteStore = new ObjectStore(remoteDir);
+        remoteStore.migrate();
+        new Transfer(remoteStore, CommitGraph.open(remoteStore), store)
+                .send(List.of(tip), tips(_refs));
+        CommitGraph.local().add(tip);
+        _refs.put(name + "/" + branch, tip);
+    }
+
+    static void migrate(File dir) {
+        File legacy = Utils.join(dir, LEGACY_FILE);
+        if (!legacy.isFile() || Refs.exists(dir)) {
+            return;
         }
-        branches.put(name + "/" + branch, history.get(history.size() - 1));
+        Legacy state;
+        try (ObjectInputStream in = new ObjectInputStream(
+                new FileInputStream(legacy)) {
+                @Override
+                protected ObjectStreamClass readClassDescriptor()
+                        throws IOException, ClassNotFoundException {
+                    ObjectStreamClass desc = super.readClassDescriptor();
+                    if (desc.getName().equals(Gitlet.class.getName())) {
+                        return ObjectStreamClass.lookup(Legacy.class);
+                    }
+                    return desc;
+                }
+            }) {
+            state = (Legacy) in.readObject();
+        } catch (IOException | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        MapFile staged = new MapFile(Utils.join(dir, STAGED_FILE));
+        staged.putAll(state.staged);
+        staged.save();
+        MapFile remotes = new MapFile(Utils.join(dir, REMOTES_FILE));
+        remotes.putAll(state.remotes);
+        remotes.save();
+        Refs refs = new Refs(dir);
+        for (String branch : state.branches.keySet()) {
+            refs.put(branch, state.branches.get(branch));
+        }
+        refs.setHead(state.currentBranch);
+        refs.save();
+        legacy.delete();
+    }
+
+    /** The state of a repository as a whole, as saved by older versions
+     *  in a Java-serialized Gitlet, whose fields these mirror. */
+    private static class Legacy implements Serializable {
+        /** Serialization version. */
+        private static final long serialVersionUID = -436790298869345816L;
+        /** HEAD of current branch. */
+        private Commit _HEAD;
+        /** Branches. */
+        private TreeMap<String, String> branches;
+        /** Staged files. */
+        private TreeMap<String, String> staged;
+        /** Current Branch. */
+        private String currentBranch;
+        /** Remotes. */
+        private TreeMap<String, String> remotes;
+    }
+
+    private static void saveCommit(Commit commit) {
+        String hash = commit.getHash();
+        ObjectStore store = ObjectStore.local();
+        store.write(ObjectStore.COMMITS, hash, commit.encode());
+        store.commits().put(hash, commit);
+        CommitGraph.local().add(hash);
     }
 
-    public void pull(String name, String branch) {
+    public boolean pull(String name, String branch) {
         fetch(name, branch);
-        merge(branch);
+        return merge(branch);
     }
 }
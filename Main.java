@@ -1,6 +1,8 @@
 package gitlet;
 
 import java.io.File;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Driver class for Gitlet, the tiny stupid version-control system.
@@ -10,133 +12,232 @@ import java.io.File;
 public class Main {
     /** Gitlet Directory. */
     private static final File GITLED_DIR = new File(".gitlet");
-    /** Gitlet Object. */
-    private static final File GITLET_OBJ = new File(".gitlet/gitlet");
 
     /**
      * Usage: java gitlet.Main ARGS, where ARGS contains
      * <COMMAND> <OPERAND> ....
      */
     public static void main(String... args) {
-        if (args.length == 0) {
-            System.out.println("Please enter a command.");
-            System.exit(0);
-        }
-        String command = args[0];
-        Gitlet gitlet = null;
-        if (GITLED_DIR.exists()) {
-            if (command.equals("init")) {
-                System.out.println("A Gitlet version-control system "
-                        + "already exists in the current directory.");
-                System.exit(0);
+        try {
+            if (args.length > 0 && args[0].equals("daemon")) {
+                checkArgs(1, args.length);
+                if (!GITLED_DIR.isDirectory()) {
+                    throw Utils.error("Not in an initialized Gitlet "
+                            + "directory.");
+                }
+                new Daemon(GITLED_DIR).serve();
+                return;
             }
-            gitlet = Utils.readObject(GITLET_OBJ, Gitlet.class);
-        } else if (!command.equals("init")) {
-            System.out.println("Not in an initialized Gitlet directory.");
+            run(args);
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
             System.exit(0);
-        } else if (command.equals("init")) {
-            GITLED_DIR.mkdir();
         }
-        int numArgs = args.length;
+    }
+
+    /** Run the command ARGS on the repository in the current directory,
+     *  printing its results. */
+    static void run(String... args) {
+        if (args.length == 0) {
+            throw Utils.error("Please enter a command.");
+        }
+        String command = args[0];
         if (command.equals("init")) {
-            checkArgs(1, numArgs);
-            gitlet = new Gitlet();
+            checkArgs(1, args.length);
+            Repository.init();
         } else {
-            cases(command, numArgs, gitlet, args);
+            cases(command, args.length, Repository.open(), args);
         }
-        Utils.writeObject(GITLET_OBJ, gitlet);
     }
 
     public static void cases(String command, int numArgs,
-                             Gitlet gitlet, String[] args) {
+                             Repository repo, String[] args) {
         switch (command) {
         case "add":
             checkArgs(2, numArgs);
-            gitlet.add(args[1]);
+            repo.add(args[1]);
             break;
         case "commit":
             checkArgs(2, numArgs);
-            gitlet.commit(args[1]);
+            repo.commit(args[1]);
             break;
         case "rm":
             checkArgs(2, numArgs);
-            gitlet.rm(args[1]);
+            repo.rm(args[1]);
             break;
         case "log":
             checkArgs(1, numArgs);
-            gitlet.log();
+            printLog(repo.log());
             break;
         case "checkout":
-            if (args.length > 2) {
-                gitlet.checkoutFile(args);
-            } else {
-                checkArgs(2, numArgs);
-                gitlet.checkoutBranch(args[1]);
-            }
+            checkout(numArgs, repo, args);
             break;
         case "global-log":
             checkArgs(1, numArgs);
-            gitlet.globalLog();
+            printLog(repo.globalLog());
             break;
         case "find":
             checkArgs(2, numArgs);
-            gitlet.find(args[1]);
+            repo.find(args[1]).forEach(System.out::println);
             break;
         case "status":
-            checkArgs(1, numArgs);
-            gitlet.status();
+            if (numArgs == 2 && args[1].equals("--porcelain")) {
+                repo.statusPorcelain(System.out::println);
+            } else {
+                checkArgs(1, numArgs);
+                printStatus(repo.status());
+            }
             break;
         case "branch":
             checkArgs(2, numArgs);
-            gitlet.branch(args[1]);
+            repo.branch(args[1]);
             break;
         case "rm-branch":
             checkArgs(2, numArgs);
-            gitlet.rmBranch(args[1]);
+            repo.rmBranch(args[1]);
             break;
         case "reset":
             checkArgs(2, numArgs);
-            gitlet.reset(args[1]);
+            repo.reset(args[1]);
             break;
         case "merge":
             checkArgs(2, numArgs);
-            gitlet.merge(args[1]);
+            printMerge(repo.merge(args[1]));
             break;
         default:
-            more(command, numArgs, gitlet, args);
+            more(command, numArgs, repo, args);
             break;
         }
     }
 
     public static void more(String command, int numArgs,
-                            Gitlet gitlet, String[] args) {
+                            Repository repo, String[] args) {
         switch (command) {
         case "add-remote":
-            gitlet.addRemote(args[1], args[2]);
+            repo.addRemote(args[1], args[2]);
             break;
         case "rm-remote":
-            gitlet.rmRemote(args[1]);
+            repo.rmRemote(args[1]);
             break;
         case "push":
-            gitlet.push(args[1], args[2]);
+            repo.push(args[1], args[2]);
             break;
         case "fetch":
-            gitlet.fetch(args[1], args[2]);
+            repo.fetch(args[1], args[2]);
             break;
         case "pull":
-            gitlet.pull(args[1], args[2]);
+            printMerge(repo.pull(args[1], args[2]));
+            break;
+        case "merge-base":
+            checkArgs(3, numArgs);
+            String base = repo.mergeBase(args[1], args[2]);
+            if (base != null) {
+                System.out.println(base);
+            }
+            break;
+        case "gc":
+            printGc(repo.gc(grace(numArgs, args)));
+            break;
+        case "write-bitmaps":
+            checkArgs(1, numArgs);
+            repo.writeBitmaps();
+            break;
+        case "use-segments":
+            checkArgs(1, numArgs);
+            repo.useSegments();
             break;
         default:
-            System.out.println("No command with that name exists.");
-            System.exit(0);
+            throw Utils.error("No command with that name exists.");
         }
 
     }
 
+    private static void checkout(int numArgs, Repository repo,
+                                 String[] args) {
+        if (numArgs <= 2) {
+            checkArgs(2, numArgs);
+            repo.checkoutBranch(args[1]);
+        } else if (args[1].equals("--")) {
+            checkArgs(3, numArgs);
+            repo.checkoutFile(args[2]);
+        } else {
+            checkArgs(4, numArgs);
+            if (!args[2].equals("--")) {
+                throw Utils.error("Incorrect operands.");
+            }
+            repo.checkoutFile(args[1], args[3]);
+        }
+    }
+
+    private static void printLog(List<Commit> commits) {
+        for (Commit commit : commits) {
+            System.out.println("===");
+            System.out.println("commit " + commit.getHash());
+            System.out.println("Date: " + commit.getTimestamp());
+            System.out.println(commit.getMessage());
+            System.out.println();
+        }
+    }
+
+    private static void printStatus(Status status) {
+        System.out.println("=== Branches ===");
+        for (String branch : status.getBranches()) {
+            String selector = "";
+            if (status.getCurrentBranch().equals(branch)) {
+                selector = "*";
+            }
+            System.out.println(selector + branch);
+        }
+        System.out.println();
+        System.out.println("=== Staged Files ===");
+        status.getStaged().forEach(System.out::println);
+        System.out.println();
+        System.out.println("=== Removed Files ===");
+        status.getRemoved().forEach(System.out::println);
+        System.out.println();
+        System.out.println("=== Modifications Not Staged For Commit ===");
+        for (Map.Entry<String, String> e
+                 : status.getModifications().entrySet()) {
+            System.out.println(e.getKey() + "(" + e.getValue() + ")");
+        }
+        System.out.println();
+        System.out.println("=== Untracked Files ===");
+        status.getUntracked().forEach(System.out::println);
+    }
+
+    private static long grace(int numArgs, String[] args) {
+        if (numArgs == 1) {
+            return GarbageCollector.GRACE;
+        }
+        checkArgs(2, numArgs);
+        if (args[1].equals("--prune=now")) {
+            return 0;
+        }
+        try {
+            if (args[1].startsWith("--prune=")) {
+                return 1000 * Long.parseLong(args[1].substring(8));
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through to the error. */
+        }
+        throw Utils.error("Incorrect operands.");
+    }
+
+    private static void printGc(GcResult result) {
+        System.out.println("Removed " + result.getRemoved() + " objects, "
+                + "reclaimed " + result.getBytes() + " bytes in "
+                + result.getMillis() + " ms.");
+    }
+
+    private static void printMerge(boolean conflict) {
+        if (conflict) {
+            System.out.println("Encountered a merge conflict.");
+        }
+    }
+
     public static void checkArgs(int n, int s) {
         if (n != s) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            throw Utils.error("Incorrect operands.");
         }
     }
 }
@@ -0,0 +1,100 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** A small sorted map from strings to strings, some of which may be null,
+ *  kept in one file of the .gitlet directory, such as the staging index
+ *  or the list of remotes.  The file is read when the map is first used,
+ *  and save writes it back only if the map changed.  It holds
+ *
+ *      int     number of entries
+ *      entries, in key order, each: UTF key, boolean value present,
+ *              UTF value if present
+ *
+ *  @author Srikar Hanumanula
+ */
+class MapFile {
+    /** The file. */
+    private final File _file;
+    /** The map, or null if not read yet. */
+    private TreeMap<String, String> _map;
+    /** The map as last read or written. */
+    private TreeMap<String, String> _saved;
+
+    /** The map stored in FILE, which is empty if FILE does not exist. */
+    MapFile(File file) {
+        _file = file;
+    }
+
+    /** Return the map, which may be modified. */
+    TreeMap<String, String> map() {
+        if (_map == null) {
+            _saved = _file.isFile() ? read() : new TreeMap<>();
+            _map = new TreeMap<>(_saved);
+        }
+        return _map;
+    }
+
+    /** Replace the contents of the map with those of MAP. */
+    void putAll(Map<String, String> map) {
+        map().clear();
+        _map.putAll(map);
+    }
+
+    /** Write out the map if it was read and has changed since. */
+    void save() {
+        if (_map == null || _map.equals(_saved)) {
+            return;
+        }
+        File temp = new File(_file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(
+                     Files.newOutputStream(temp.toPath())))) {
+            out.writeInt(_map.size());
+            for (Map.Entry<String, String> e : _map.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeBoolean(e.getValue() != null);
+                if (e.getValue() != null) {
+                    out.writeUTF(e.getValue());
+                }
+            }
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            Files.move(temp.toPath(), _file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _saved = new TreeMap<>(_map);
+    }
+
+    /** Return the map stored in the file. */
+    private TreeMap<String, String> read() {
+        TreeMap<String, String> result = new TreeMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                 Files.newInputStream(_file.toPath())))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i += 1) {
+                String key = in.readUTF();
+                result.put(key, in.readBoolean() ? in.readUTF() : null);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+}
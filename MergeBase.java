@@ -0,0 +1,165 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** Computes merge bases (best common ancestors) of two commits by walking
+ *  the commit graph from both sides at once, highest generation first.
+ *  Each visited commit is painted with the side(s) it is reachable from;
+ *  a commit painted from both sides is a common ancestor, and everything
+ *  below it is stale.  The walk stops as soon as only stale commits remain
+ *  queued, so it visits the commits on the diverging part of the history
+ *  rather than the whole history.
+ *  @author Srikar Hanumanula
+ */
+class MergeBase {
+    /** Reachable from the first commit. */
+    private static final int SIDE1 = 1;
+    /** Reachable from the second commit. */
+    private static final int SIDE2 = 2;
+    /** Below a common ancestor. */
+    private static final int STALE = 4;
+
+    /** Return the ids of all merge bases of commits A and B in GRAPH, best
+     *  first: no result is an ancestor of another, so criss-cross histories
+     *  yield several bases. */
+    static List<String> all(CommitGraph graph, String a, String b) {
+        int ka = graph.index(a), kb = graph.index(b);
+        ArrayList<String> result = new ArrayList<>();
+        if (ka == kb) {
+            result.add(a);
+            return result;
+        }
+        List<Integer> common = paint(graph, ka, kb);
+        common = removeRedundant(graph, common);
+        common.sort((x, y) -> compare(graph, x, y));
+        for (int k : common) {
+            result.add(graph.id(k));
+        }
+        return result;
+    }
+
+    /** Return the best merge base of commits A and B in GRAPH, or null if
+     *  they have no common ancestor. */
+    static String best(CommitGraph graph, String a, String b) {
+        List<String> bases = all(graph, a, b);
+        return bases.isEmpty() ? null : bases.get(0);
+    }
+
+    /** Return true iff commit ANCESTOR is reachable from commit DESCENDANT
+     *  in GRAPH. */
+    static boolean isAncestor(CommitGraph graph, String ancestor,
+                              String descendant) {
+        int ka = graph.index(ancestor), kd = graph.index(descendant);
+        return reaches(graph, kd, ka);
+    }
+
+    /** Order records X and Y of GRAPH by decreasing generation, then
+     *  decreasing time, then id. */
+    private static int compare(CommitGraph graph, int x, int y) {
+        if (graph.generation(x) != graph.generation(y)) {
+            return Integer.compare(graph.generation(y), graph.generation(x));
+        }
+        if (graph.time(x) != graph.time(y)) {
+            return Long.compare(graph.time(y), graph.time(x));
+        }
+        return graph.id(x).compareTo(graph.id(y));
+    }
+
+    /** Walk down from records KA and KB of GRAPH and return the common
+     *  ancestors that are not below another common ancestor found first.
+     *  Since parents always have lower generations than their children, a
+     *  commit's paint is final by the time it leaves the queue, so each
+     *  commit is queued at most once. */
+    private static List<Integer> paint(CommitGraph graph, int ka, int kb) {
+        HashMap<Integer, Integer> flags = new HashMap<>();
+        PriorityQueue<Integer> queue =
+            new PriorityQueue<>((x, y) -> compare(graph, x, y));
+        flags.put(ka, SIDE1);
+        flags.put(kb, SIDE2);
+        queue.add(ka);
+        queue.add(kb);
+        int live = 2;
+        ArrayList<Integer> result = new ArrayList<>();
+        while (live > 0) {
+            int k = queue.poll();
+            int f = flags.get(k);
+            if ((f & STALE) == 0) {
+                live -= 1;
+            }
+            int sides = f & (SIDE1 | SIDE2 | STALE);
+            if ((sides & (SIDE1 | SIDE2)) == (SIDE1 | SIDE2)) {
+                if ((f & STALE) == 0) {
+                    result.add(k);
+                }
+                sides |= STALE;
+            }
+            for (int p : new int[] {graph.parent1(k), graph.parent2(k)}) {
+                if (p == CommitGraph.NONE) {
+                    continue;
+                }
+                int pf = flags.getOrDefault(p, 0);
+                if ((pf & sides) == sides) {
+                    continue;
+                }
+                int nf = pf | sides;
+                flags.put(p, nf);
+                if (pf == 0) {
+                    queue.add(p);
+                    if ((nf & STALE) == 0) {
+                        live += 1;
+                    }
+                } else if ((pf & STALE) == 0 && (nf & STALE) != 0) {
+                    live -= 1;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the members of CANDIDATES (records of GRAPH) that are not
+     *  ancestors of other members. */
+    private static List<Integer> removeRedundant(CommitGraph graph,
+                                                 List<Integer> candidates) {
+        ArrayList<Integer> result = new ArrayList<>();
+        for (int x : candidates) {
+            boolean redundant = false;
+            for (int y : candidates) {
+                if (x != y && reaches(graph, y, x)) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if (!redundant) {
+                result.add(x);
+            }
+        }
+        return result;
+    }
+
+    /** Return true iff record TO of GRAPH is reachable from record FROM.
+     *  Commits with a generation below that of TO cannot lead to it and are
+     *  not explored. */
+    private static boolean reaches(CommitGraph graph, int from, int to) {
+        int floor = graph.generation(to);
+        ArrayList<Integer> stack = new ArrayList<>();
+        HashMap<Integer, Boolean> seen = new HashMap<>();
+        stack.add(from);
+        while (!stack.isEmpty()) {
+            int k = stack.remove(stack.size() - 1);
+            if (k == to) {
+                return true;
+            }
+            if (k == CommitGraph.NONE || seen.containsKey(k)
+                || graph.generation(k) <= floor) {
+                continue;
+            }
+            seen.put(k, true);
+            stack.add(graph.parent1(k));
+            stack.add(graph.parent2(k));
+        }
+        return false;
+    }
+}
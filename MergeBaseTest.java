@@ -0,0 +1,144 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of MergeBase.
+ *  @author Srikar Hanumanula
+ */
+public class MergeBaseTest {
+
+    /** Scratch directory and store. */
+    private StoreFixture _fixture;
+    /** Store holding the commits. */
+    private ObjectStore _store;
+    /** Parents of each commit made. */
+    private HashMap<String, List<String>> _parents = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _store = _fixture.store();
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    /** Store a commit of no files whose parents are PARENTS, if any, and
+     *  return its id. */
+    private String commit(String... parents) {
+        String id = _fixture.commit(Map.of(), parents);
+        _parents.put(id, List.of(parents));
+        return id;
+    }
+
+    /** Return ID and all its ancestors. */
+    private HashSet<String> ancestors(String id) {
+        HashSet<String> result = new HashSet<>();
+        ArrayDeque<String> queue = new ArrayDeque<>(List.of(id));
+        while (!queue.isEmpty()) {
+            String next = queue.poll();
+            if (result.add(next)) {
+                queue.addAll(_parents.get(next));
+            }
+        }
+        return result;
+    }
+
+    /** Return the merge bases of A and B found by comparing all their
+     *  ancestors: the common ancestors that are not ancestors of other
+     *  common ancestors. */
+    private HashSet<String> bases(String a, String b) {
+        HashSet<String> common = ancestors(a);
+        common.retainAll(ancestors(b));
+        HashSet<String> result = new HashSet<>(common);
+        for (String c : common) {
+            HashSet<String> below = ancestors(c);
+            below.remove(c);
+            result.removeAll(below);
+        }
+        return result;
+    }
+
+    @Test
+    public void linearHistory() {
+        String a = commit(), b = commit(a), c = commit(b);
+        CommitGraph graph = CommitGraph.open(_store);
+        assertEquals(b, MergeBase.best(graph, b, c));
+        assertEquals(b, MergeBase.best(graph, c, b));
+        assertEquals(c, MergeBase.best(graph, c, c));
+        assertTrue(MergeBase.isAncestor(graph, a, c));
+        assertTrue(MergeBase.isAncestor(graph, c, c));
+        assertFalse(MergeBase.isAncestor(graph, c, a));
+    }
+
+    @Test
+    public void forkAndMerge() {
+        String root = commit(), fork = commit(root);
+        String left = commit(fork), right = commit(commit(fork));
+        CommitGraph graph = CommitGraph.open(_store);
+        assertEquals(fork, MergeBase.best(graph, left, right));
+        String merged = commit(left, right);
+        String after = commit(right);
+        graph = CommitGraph.open(_store);
+        assertEquals(right, MergeBase.best(graph, merged, after));
+        assertTrue(MergeBase.isAncestor(graph, right, merged));
+        assertFalse(MergeBase.isAncestor(graph, after, merged));
+    }
+
+    @Test
+    public void crissCrossHasTwoBases() {
+        String root = commit();
+        String a = commit(root), b = commit(root);
+        String a2 = commit(a, b), b2 = commit(b, a);
+        CommitGraph graph = CommitGraph.open(_store);
+        List<String> bases = MergeBase.all(graph, a2, b2);
+        assertEquals(new HashSet<>(List.of(a, b)), new HashSet<>(bases));
+    }
+
+    @Test
+    public void unrelatedHistoriesHaveNoBase() {
+        String a = commit(), b = commit(commit());
+        CommitGraph graph = CommitGraph.open(_store);
+        assertNull(MergeBase.best(graph, commit(a), b));
+        assertFalse(MergeBase.isAncestor(graph, a, b));
+    }
+
+    @Test
+    public void agreesWithComparingAllAncestors() {
+        Random random = new Random(2);
+        ArrayList<String> commits = new ArrayList<>();
+        commits.add(commit());
+        for (int i = 0; i < 150; i += 1) {
+            String p1 = commits.get(random.nextInt(commits.size()));
+            if (random.nextInt(4) == 0) {
+                String p2 = commits.get(random.nextInt(commits.size()));
+                commits.add(p1.equals(p2) ? commit(p1) : commit(p1, p2));
+            } else {
+                commits.add(commit(p1));
+            }
+        }
+        CommitGraph graph = CommitGraph.open(_store);
+        for (int trial = 0; trial < 300; trial += 1) {
+            String a = commits.get(random.nextInt(commits.size()));
+            String b = commits.get(random.nextInt(commits.size()));
+            assertEquals(bases(a, b),
+                         new HashSet<>(MergeBase.all(graph, a, b)));
+            assertEquals(ancestors(b).contains(a),
+                         MergeBase.isAncestor(graph, a, b));
+        }
+    }
+
+}
@@ -0,0 +1,259 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/** Three-way merge of two snapshots against their split point.  Each path
+ *  is first classified by comparing its blob ids in the split, current and
+ *  given snapshots; only paths changed differently on both sides have
+ *  their contents read, and those are merged line by line with diff3, so
+ *  that conflicts are confined to the hunks both sides changed.  Paths
+ *  are merged independently of one another, in parallel on the common
+ *  fork-join pool; the results come back in path order regardless.
+ *  @author Srikar Hanumanula
+ */
+class MergeEngine {
+    /** Marks the start of the current side of a conflict. */
+    static final String OURS = "<<<<<<< HEAD\n";
+    /** Separates the two sides of a conflict. */
+    static final String SEPARATOR = "=======\n";
+    /** Marks the end of the given side of a conflict. */
+    static final String THEIRS = ">>>>>>>\n";
+
+    /** Store holding the blobs being merged. */
+    private final ObjectStore _store;
+
+    /** A merge engine reading blobs from STORE. */
+    MergeEngine(ObjectStore store) {
+        _store = store;
+    }
+
+    /** What merging needs done to one path of the current snapshot. */
+    static class Change {
+        /** The path. */
+        private final String _path;
+        /** Blob the path ends up holding, or null if it is removed. */
+        private final String _blob;
+        /** Merged contents, if the contents were merged, in which case they
+         *  are already stored as _blob. */
+        private final byte[] _contents;
+        /** True iff _contents contain conflict markers. */
+        private final boolean _conflict;
+
+        /** A change to PATH: make it hold BLOB, whose contents are CONTENTS
+         *  if they were merged, with conflicts iff CONFLICT, or, if BLOB is
+         *  null, remove PATH. */
+        Change(String path, String blob, byte[] contents, boolean conflict) {
+            _path = path;
+            _blob = blob;
+            _contents = contents;
+            _conflict = conflict;
+        }
+
+        /** Return the path changed. */
+        String path() {
+            return _path;
+        }
+
+        /** Return the blob PATH ends up holding, or null. */
+        String blob() {
+            return _blob;
+        }
+
+        /** Return the merged contents, or null if BLOB is simply taken
+         *  from the given side. */
+        byte[] contents() {
+            return _contents;
+        }
+
+        /** Return true iff PATH is to be removed. */
+        boolean isRemoval() {
+            return _blob == null;
+        }
+
+        /** Return true iff the merged contents have conflicts. */
+        boolean isConflict() {
+            return _conflict;
+        }
+    }
+
+    /** Return the changes, in path order, that merge the snapshot whose
+     *  root tree is GIVEN into the one whose root tree is CURRENT, given
+     *  that the root tree of their split point is SPLIT.  Only the paths
+     *  that the given side changed can need merging, and directories whose
+     *  trees match are not even read. */
+    List<Change> merge(String split, String current, String given) {
+        TreeMap<String, String[]> ours = Tree.diff(_store, split, current);
+        TreeMap<String, String[]> theirs = Tree.diff(_store, split, given);
+        return new ArrayList<>(theirs.keySet()).parallelStream()
+            .map(path -> {
+                String[] t = theirs.get(path), o = ours.get(path);
+                return mergePath(path, t[0], o == null ? t[0] : o[1], t[1]);
+            })
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+
+    /** Return the change that merges PATH, whose blobs in the split,
+     *  current and given snapshots are S, C and G (null where absent), or
+     *  null if the current version stands.  Merged contents are added to
+     *  the store. */
+    Change mergePath(String path, String s, String c, String g) {
+        if (Objects.equals(s, g) || Objects.equals(c, g)) {
+            return null;
+        }
+        if (Objects.equals(s, c)) {
+            return new Change(path, g, null, false);
+        }
+        byte[] ours = read(c), theirs = read(g);
+        if (c == null || g == null || isBinary(ours) || isBinary(theirs)) {
+            return merged(path, wholeConflict(ours, theirs), true);
+        }
+        byte[] base = read(s);
+        if (isBinary(base)) {
+            return merged(path, wholeConflict(ours, theirs), true);
+        }
+        boolean[] conflict = new boolean[1];
+        return merged(path, merge3(base, ours, theirs, conflict),
+                      conflict[0]);
+    }
+
+    /** Return a change writing CONTENTS, which have conflicts iff
+     *  CONFLICT, to PATH, having stored them. */
+    private Change merged(String path, byte[] contents, boolean conflict) {
+        String blob = Utils.sha1(contents);
+        _store.write(ObjectStore.BLOBS, blob, contents);
+        return new Change(path, blob, contents, conflict);
+    }
+
+    /** Return the contents of blob ID, or an empty array if ID is null. */
+    private byte[] read(String id) {
+        return id == null ? new byte[0] : _store.read(ObjectStore.BLOBS, id);
+    }
+
+    /** Return a conflict between the whole of OURS and of THEIRS. */
+    private static byte[] wholeConflict(byte[] ours, byte[] theirs) {
+        String text = OURS + latin1(ours) + SEPARATOR + latin1(theirs)
+            + THEIRS;
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Return the result of merging the changes from BASE to OURS with
+     *  those from BASE to THEIRS, line by line.  Hunks changed only on one
+     *  side, or identically on both, are taken; others are written as
+     *  conflicts, in which case CONFLICT[0] is set. */
+    static byte[] merge3(byte[] base, byte[] ours, byte[] theirs,
+                         boolean[] conflict) {
+        List<String> o = lines(base), a = lines(ours), b = lines(theirs);
+        int[] ma = matches(o, a), mb = matches(o, b);
+        StringBuilder out = new StringBuilder();
+        int i = 0, j = 0, k = 0;
+        while (i < o.size() || j < a.size() || k < b.size()) {
+            int run = 0;
+            while (i + run < o.size() && ma[i + run] == j + run
+                   && mb[i + run] == k + run) {
+                run += 1;
+            }
+            if (run > 0) {
+                append(out, o, i, i + run);
+                i += run;
+                j += run;
+                k += run;
+                continue;
+            }
+            int next = i;
+            while (next < o.size() && (ma[next] < 0 || mb[next] < 0)) {
+                next += 1;
+            }
+            int endA = next < o.size() ? ma[next] : a.size();
+            int endB = next < o.size() ? mb[next] : b.size();
+            List<String> oh = o.subList(i, next), ah = a.subList(j, endA),
+                bh = b.subList(k, endB);
+            if (ah.equals(oh) || ah.equals(bh)) {
+                append(out, b, k, endB);
+            } else if (bh.equals(oh)) {
+                append(out, a, j, endA);
+            } else {
+                conflict[0] = true;
+                out.append(OURS);
+                appendTerminated(out, ah);
+                out.append(SEPARATOR);
+                appendTerminated(out, bh);
+                out.append(THEIRS);
+            }
+            i = next;
+            j = endA;
+            k = endB;
+        }
+        return out.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Return, for each line of BASE, the index of the line of OTHER it is
+     *  matched with in a longest common subsequence, or -1. */
+    private static int[] matches(List<String> base, List<String> other) {
+        int[] result = new int[base.size()];
+        Arrays.fill(result, -1);
+        Diff diff = new Diff();
+        diff.setSequences(base, other);
+        int[] common = diff.commonSubsequence();
+        for (int n = 0; n < common.length; n += 3) {
+            for (int d = 0; d < common[n + 2]; d += 1) {
+                result[common[n] + d] = common[n + 1] + d;
+            }
+        }
+        return result;
+    }
+
+    /** Return CONTENTS split into lines, each keeping its terminating
+     *  newline.  Bytes are mapped one-to-one onto chars, so joining the
+     *  lines and encoding them as ISO-8859-1 restores CONTENTS exactly. */
+    private static List<String> lines(byte[] contents) {
+        String text = latin1(contents);
+        ArrayList<String> result = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            end = end < 0 ? text.length() : end + 1;
+            result.add(text.substring(start, end));
+            start = end;
+        }
+        return result;
+    }
+
+    /** Append LINES[FROM .. TO-1] to OUT. */
+    private static void append(StringBuilder out, List<String> lines,
+                               int from, int to) {
+        for (int n = from; n < to; n += 1) {
+            out.append(lines.get(n));
+        }
+    }
+
+    /** Append LINES to OUT, ending with a newline. */
+    private static void appendTerminated(StringBuilder out,
+                                         List<String> lines) {
+        append(out, lines, 0, lines.size());
+        if (out.length() > 0 && out.charAt(out.length() - 1) != '\n') {
+            out.append('\n');
+        }
+    }
+
+    /** Return CONTENTS decoded one byte per char. */
+    private static String latin1(byte[] contents) {
+        return new String(contents, StandardCharsets.ISO_8859_1);
+    }
+
+    /** Return true iff CONTENTS look binary, containing a NUL byte. */
+    private static boolean isBinary(byte[] contents) {
+        for (byte b : contents) {
+            if (b == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,193 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of MergeEngine.
+ *  @author Srikar Hanumanula
+ */
+public class MergeEngineTest {
+
+    /** Scratch directory and store. */
+    private StoreFixture _fixture;
+    /** Store holding the blobs merged. */
+    private ObjectStore _store;
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _store = _fixture.store();
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    /** Return TEXT as bytes. */
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Return the result of merge3 on BASE, OURS and THEIRS as text,
+     *  checking that it has conflicts iff CONFLICT. */
+    private static String merge3(String base, String ours, String theirs,
+                                 boolean conflict) {
+        boolean[] found = new boolean[1];
+        byte[] result = MergeEngine.merge3(bytes(base), bytes(ours),
+                                           bytes(theirs), found);
+        assertEquals(conflict, found[0]);
+        return new String(result, StandardCharsets.ISO_8859_1);
+    }
+
+    /** Store TEXT as a blob and return its id. */
+    private String blob(String text) {
+        return _fixture.blob(text);
+    }
+
+    @Test
+    public void changesToDifferentHunksMergeCleanly() {
+        assertEquals("A\nb\nc\nd\nE\n",
+                     merge3("a\nb\nc\nd\ne\n", "A\nb\nc\nd\ne\n",
+                            "a\nb\nc\nd\nE\n", false));
+        assertEquals("b\nc\nX\n",
+                     merge3("a\nb\nc\n", "b\nc\n", "a\nb\nc\nX\n", false));
+    }
+
+    @Test
+    public void identicalChangesAreTakenOnce() {
+        assertEquals("a\nB\nc\n",
+                     merge3("a\nb\nc\n", "a\nB\nc\n", "a\nB\nc\n", false));
+    }
+
+    @Test
+    public void conflictsAreConfinedToTheirHunks() {
+        assertEquals("a\n" + MergeEngine.OURS + "ours\n"
+                     + MergeEngine.SEPARATOR + "theirs\n"
+                     + MergeEngine.THEIRS + "c\n",
+                     merge3("a\nb\nc\n", "a\nours\nc\n", "a\ntheirs\nc\n",
+                            true));
+    }
+
+    @Test
+    public void deletionAgainstEditConflicts() {
+        assertEquals("a\n" + MergeEngine.OURS + MergeEngine.SEPARATOR
+                     + "B\n" + MergeEngine.THEIRS + "c\n",
+                     merge3("a\nb\nc\n", "a\nc\n", "a\nB\nc\n", true));
+    }
+
+    @Test
+    public void conflictSidesEndWithNewlines() {
+        assertEquals(MergeEngine.OURS + "x\n" + MergeEngine.SEPARATOR
+                     + "y\n" + MergeEngine.THEIRS,
+                     merge3("b", "x", "y", true));
+    }
+
+    @Test
+    public void pathsAreClassifiedByBlobId() {
+        MergeEngine engine = new MergeEngine(_store);
+        String s = blob("s\n"), c = blob("c\n"), g = blob("g\n");
+        assertNull(engine.mergePath("f", s, c, s));
+        assertNull(engine.mergePath("f", s, g, g));
+        MergeEngine.Change taken = engine.mergePath("f", s, s, g);
+        assertEquals(g, taken.blob());
+        assertNull(taken.contents());
+        assertTrue(engine.mergePath("f", s, s, null).isRemoval());
+    }
+
+    @Test
+    public void mergedContentsAreStored() {
+        MergeEngine engine = new MergeEngine(_store);
+        String s = blob("1\n2\n3\n"), c = blob("one\n2\n3\n"),
+            g = blob("1\n2\nthree\n");
+        MergeEngine.Change change = engine.mergePath("f", s, c, g);
+        assertFalse(change.isConflict());
+        assertEquals("one\n2\nthree\n",
+                     new String(change.contents(),
+                                StandardCharsets.ISO_8859_1));
+        assertArrayEquals(change.contents(),
+                          _store.read(ObjectStore.BLOBS, change.blob()));
+    }
+
+    @Test
+    public void removalAgainstEditIsWholeConflict() {
+        MergeEngine engine = new MergeEngine(_store);
+        String s = blob("s\n"), c = blob("c\n");
+        MergeEngine.Change change = engine.mergePath("f", s, c, null);
+        assertTrue(change.isConflict());
+        assertEquals(MergeEngine.OURS + "c\n" + MergeEngine.SEPARATOR
+                     + MergeEngine.THEIRS,
+                     new String(change.contents(),
+                                StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void binaryContentsConflictWhole() {
+        MergeEngine engine = new MergeEngine(_store);
+        String s = blob("a\0\n"), c = blob("b\0\n"), g = blob("c\0\n");
+        MergeEngine.Change change = engine.mergePath("f", s, c, g);
+        assertTrue(change.isConflict());
+        assertEquals(MergeEngine.OURS + "b\0\n" + MergeEngine.SEPARATOR
+                     + "c\0\n" + MergeEngine.THEIRS,
+                     new String(change.contents(),
+                                StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void snapshotsMergeOnlyWhatTheGivenSideChanged() {
+        String a = blob("a\n"), b = blob("b\n"), b2 = blob("b2\n"),
+            d = blob("d\n");
+        TreeMap<String, String> split = new TreeMap<>();
+        split.put("a", a);
+        split.put("dir/b", b);
+        split.put("dir/c", a);
+        TreeMap<String, String> current = new TreeMap<>(split);
+        current.put("a", d);
+        TreeMap<String, String> given = new TreeMap<>(split);
+        given.put("dir/b", b2);
+        given.remove("dir/c");
+        given.put("new", d);
+        List<MergeEngine.Change> changes = new MergeEngine(_store).merge(
+            Tree.build(_store, split), Tree.build(_store, current),
+            Tree.build(_store, given));
+        assertEquals(3, changes.size());
+        assertEquals("dir/b", changes.get(0).path());
+        assertEquals(b2, changes.get(0).blob());
+        assertEquals("dir/c", changes.get(1).path());
+        assertTrue(changes.get(1).isRemoval());
+        assertEquals("new", changes.get(2).path());
+        assertEquals(d, changes.get(2).blob());
+    }
+
+    @Test
+    public void manyPathsMergeInPathOrder() {
+        TreeMap<String, String> split = new TreeMap<>(),
+            current = new TreeMap<>(), given = new TreeMap<>();
+        for (int i = 0; i < 300; i += 1) {
+            String path = String.format("f%03d", i);
+            String head = i % 2 == 0 ? path + "\n" : "shared\n";
+            split.put(path, blob(head + "1\n2\n3\n"));
+            current.put(path, blob(head + "one\n2\n3\n"));
+            given.put(path, blob(head + "1\n2\nthree\n"));
+        }
+        List<MergeEngine.Change> changes = new MergeEngine(_store).merge(
+            Tree.build(_store, split), Tree.build(_store, current),
+            Tree.build(_store, given));
+        assertEquals(300, changes.size());
+        for (int i = 0; i < 300; i += 1) {
+            MergeEngine.Change change = changes.get(i);
+            String head = i % 2 == 0 ? change.path() + "\n" : "shared\n";
+            assertEquals(String.format("f%03d", i), change.path());
+            assertFalse(change.isConflict());
+            assertArrayEquals(bytes(head + "one\n2\nthree\n"),
+                              _store.read(ObjectStore.BLOBS, change.blob()));
+        }
+    }
+
+}
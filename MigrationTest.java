@@ -0,0 +1,97 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of reading repositories written before split state, using the
+ *  repository StoreFixture.LEGACY.
+ *  @author Srikar Hanumanula
+ */
+public class MigrationTest {
+
+    /** Scratch directory holding a copy of the legacy repository. */
+    private StoreFixture _fixture;
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _fixture.copyLegacy();
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    /** Return the id of a blob holding TEXT. */
+    private static String blob(String text) {
+        return Utils.sha1(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Migrate the legacy repository and return its store. */
+    private ObjectStore migrate() {
+        ObjectStore store = _fixture.store();
+        Gitlet.migrate(_fixture.gitletDir());
+        return store;
+    }
+
+    @Test
+    public void stateIsSplitIntoFiles() {
+        migrate();
+        assertFalse(Utils.join(_fixture.gitletDir(), Gitlet.LEGACY_FILE)
+                    .exists());
+        Refs refs = new Refs(_fixture.gitletDir());
+        assertEquals("master", refs.head());
+        assertEquals(StoreFixture.ADD_B, refs.get("master"));
+        assertEquals(StoreFixture.ADD_A, refs.get("other"));
+        MapFile staged = new MapFile(Utils.join(_fixture.gitletDir(),
+                                                Gitlet.STAGED_FILE));
+        assertEquals(Map.of("c.txt", blob("staged\n")), staged.map());
+        assertTrue(new MapFile(Utils.join(_fixture.gitletDir(),
+                                          Gitlet.REMOTES_FILE))
+                   .map().isEmpty());
+    }
+
+    @Test
+    public void historyOfSerializedCommitsIsWalked() {
+        ObjectStore store = migrate();
+        CommitGraph graph = CommitGraph.open(store);
+        assertEquals(3, graph.size());
+        assertEquals(StoreFixture.ADD_A,
+                     MergeBase.best(graph, StoreFixture.ADD_B,
+                                    StoreFixture.ADD_A));
+        assertTrue(MergeBase.isAncestor(graph, StoreFixture.INITIAL,
+                                        StoreFixture.ADD_B));
+    }
+
+    @Test
+    public void migrationIsIdempotent() {
+        migrate();
+        Refs refs = new Refs(_fixture.gitletDir());
+        refs.put("master", StoreFixture.ADD_A);
+        refs.save();
+        ObjectStore store = migrate();
+        assertEquals(StoreFixture.ADD_A,
+                     new Refs(_fixture.gitletDir()).get("master"));
+        assertTrue(store.contains(ObjectStore.COMMITS, StoreFixture.ADD_B));
+    }
+
+    @Test
+    public void commandsRunOnMigratedRepositories() {
+        _fixture.write("a.txt", "hello\n");
+        _fixture.write("b.txt", "world\n");
+        _fixture.write("c.txt", "staged\n");
+        assertEquals("A  c.txt\n", _fixture.gitlet("status", "--porcelain"));
+        _fixture.gitlet("commit", "add c");
+        assertEquals("", _fixture.gitlet("checkout", "other"));
+        assertNull(_fixture.read("b.txt"));
+        assertNull(_fixture.read("c.txt"));
+        assertEquals("hello\n", _fixture.read("a.txt"));
+    }
+
+}
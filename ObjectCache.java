@@ -0,0 +1,95 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/** A cache of objects keyed by id, bounded by the total weight of its
+ *  values and evicting the least recently used first.  Since ids name
+ *  immutable objects, a cached value never goes stale.  A cache may be
+ *  shared between threads; loads run outside its lock, so two threads
+ *  missing on the same id may both load it.  It counts hits and misses.
+ *  @author Srikar Hanumanula
+ */
+class ObjectCache<V> {
+    /** Most total weight of the values held. */
+    private final long _capacity;
+    /** Weight of each value. */
+    private final ToLongFunction<V> _weigher;
+    /** The values, least recently used first. */
+    private final LinkedHashMap<String, V> _values =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** Total weight of _values. */
+    private long _weight;
+    /** Number of lookups that found their id. */
+    private long _hits;
+    /** Number of lookups that did not. */
+    private long _misses;
+
+    /** A cache holding values of total weight at most CAPACITY, each
+     *  weighing what WEIGHER says. */
+    ObjectCache(long capacity, ToLongFunction<V> weigher) {
+        _capacity = capacity;
+        _weigher = weigher;
+    }
+
+    /** Return the value of ID, or null if it is not cached. */
+    synchronized V get(String id) {
+        V value = _values.get(id);
+        if (value == null) {
+            _misses += 1;
+        } else {
+            _hits += 1;
+        }
+        return value;
+    }
+
+    /** Return the value of ID, loading it with LOAD and caching it if it
+     *  is not cached. */
+    V get(String id, Function<String, V> load) {
+        V value = get(id);
+        if (value == null) {
+            value = load.apply(id);
+            put(id, value);
+        }
+        return value;
+    }
+
+    /** Cache VALUE as the value of ID, unless it alone would exceed the
+     *  capacity, evicting values as needed. */
+    synchronized void put(String id, V value) {
+        long weight = _weigher.applyAsLong(value);
+        if (weight > _capacity) {
+            return;
+        }
+        V old = _values.put(id, value);
+        if (old != null) {
+            _weight -= _weigher.applyAsLong(old);
+        }
+        _weight += weight;
+        Iterator<Map.Entry<String, V>> eldest =
+            _values.entrySet().iterator();
+        while (_weight > _capacity) {
+            _weight -= _weigher.applyAsLong(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    /** Return the number of lookups that found their id. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Return the number of lookups that did not. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return _values.size() + " cached, " + _hits + " hits, "
+            + _misses + " misses";
+    }
+}
@@ -0,0 +1,84 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of ObjectCache.
+ *  @author Srikar Hanumanula
+ */
+public class ObjectCacheTest {
+
+    /** Return a cache of strings of total length at most CAPACITY. */
+    private static ObjectCache<String> cache(long capacity) {
+        return new ObjectCache<>(capacity, String::length);
+    }
+
+    @Test
+    public void leastRecentlyUsedValuesAreEvictedByWeight() {
+        ObjectCache<String> cache = cache(10);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        assertEquals("aaaa", cache.get("a"));
+        cache.put("c", "cccc");
+        assertNull(cache.get("b"));
+        assertEquals("aaaa", cache.get("a"));
+        assertEquals("cccc", cache.get("c"));
+        cache.put("d", "dddddddd");
+        assertNull(cache.get("a"));
+        assertNull(cache.get("c"));
+        assertEquals("dddddddd", cache.get("d"));
+    }
+
+    @Test
+    public void valuesHeavierThanTheCapacityAreNotCached() {
+        ObjectCache<String> cache = cache(4);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbbb");
+        assertNull(cache.get("b"));
+        assertEquals("aaaa", cache.get("a"));
+    }
+
+    @Test
+    public void replacedValuesNoLongerWeigh() {
+        ObjectCache<String> cache = cache(6);
+        cache.put("a", "aaaaa");
+        cache.put("a", "a");
+        cache.put("b", "bbbbb");
+        assertEquals("a", cache.get("a"));
+        assertEquals("bbbbb", cache.get("b"));
+    }
+
+    @Test
+    public void missesAreLoadedOnceAndCounted() {
+        ObjectCache<String> cache = cache(100);
+        List<String> loaded = new ArrayList<>();
+        for (int i = 0; i < 3; i += 1) {
+            assertEquals("x!", cache.get("x", id -> {
+                loaded.add(id);
+                return id + "!";
+            }));
+        }
+        assertEquals(List.of("x"), loaded);
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void storesShareDecodedCommits() {
+        StoreFixture fixture = new StoreFixture();
+        try {
+            String id = fixture.commit(Map.of("a", "a\n"));
+            ObjectStore store = fixture.store();
+            assertSame(Commit.load(store, id), Commit.load(store, id));
+            ObjectStore other = new ObjectStore(fixture.gitletDir());
+            assertFalse(Commit.load(store, id) == Commit.load(other, id));
+        } finally {
+            fixture.delete();
+        }
+    }
+
+}
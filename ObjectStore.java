@@ -0,0 +1,763 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/** Content-addressed storage for the objects of one repository.  Commits,
+ *  trees and blobs live in separate namespaces under .gitlet/objects, and
+ *  each namespace is fanned out into subdirectories named by the first two
+ *  hex digits of the object id, so that no lookup has to list more than a
+ *  small slice of the store.  Objects received by push and fetch stay in
+ *  the packs they arrived in, under .gitlet/objects/pack.  A repository
+ *  switched to segments by use-segments appends new objects to the
+ *  segment files of a SegmentStore under .gitlet/objects/segments instead
+ *  of writing them loose; compaction moves the loose objects it still has
+ *  into its segments.
+ *
+ *  Loose objects are Deflater-compressed.  The compressed stream starts
+ *  with a header "NAMESPACE SIZE\0" giving the namespace of the object and
+ *  the length of its contents.  Loose objects written before compression
+ *  was introduced have no header and are read as they are.
+ *
+ *  A blob added as a new version of a file may be stored as a delta
+ *  against the previous version instead, in the namespace deltas: the raw
+ *  id of its base blob, a byte giving the length of its chain of deltas,
+ *  then a Delta.  Such blobs are rebuilt when read, transparently, and
+ *  the blobs rebuilt or used as bases are cached so that reading recent
+ *  versions of a file rebuilds little.  Chains are at most MAX_DEPTH
+ *  deltas long.
+ *  @author Srikar Hanumanula
+ */
+class ObjectStore {
+    /** Namespace holding serialized commits. */
+    static final String COMMITS = "commits";
+    /** Namespace holding file contents. */
+    static final String BLOBS = "blobs";
+    /** Namespace holding directory trees. */
+    static final String TREES = "trees";
+    /** Namespace holding blobs stored as deltas. */
+    static final String DELTAS = "deltas";
+    /** Number of id characters used to name the fan-out directory. */
+    static final int FANOUT = 2;
+    /** Longest header a compressed object may have. */
+    private static final int MAX_HEADER = 64;
+    /** First byte of a zlib stream using Deflate with a 32K window. */
+    private static final int ZLIB_METHOD = 0x78;
+    /** Most decoded commits kept by each store. */
+    private static final int COMMIT_CACHE = 4096;
+    /** Most bytes of small objects kept by each store. */
+    private static final long OBJECT_CACHE = 8 << 20;
+    /** Largest object, in bytes, that read keeps. */
+    private static final int SMALL_OBJECT = 64 << 10;
+    /** Most deltas rebuilding a blob. */
+    private static final int MAX_DEPTH = 10;
+    /** Smallest and largest blobs, in bytes, stored as deltas. */
+    private static final long MIN_DELTA = 1 << 10, MAX_DELTA = 64 << 20;
+    /** Most bytes of rebuilt blobs and their bases kept by each store. */
+    private static final long BASE_CACHE = 32 << 20;
+    /** Length of the part of a delta object before its Delta: raw base id
+     *  and chain length. */
+    private static final int DELTA_HEADER = Utils.UID_LENGTH / 2 + 1;
+
+    /** The store of the repository in the current working directory. */
+    private static ObjectStore _local;
+
+    /** Root of the object directories. */
+    private final File _objects;
+    /** The .gitlet directory this store belongs to. */
+    private final File _gitletDir;
+    /** The packs of this store, or null if not read yet. */
+    private CopyOnWriteArrayList<Pack> _packs;
+    /** The segments of this store, or null if it has none or they have
+     *  not been read yet. */
+    private SegmentStore _segments;
+    /** True iff _segments has been read. */
+    private boolean _segmentsRead;
+    /** Commits decoded from this store, by id. */
+    private final ObjectCache<Commit> _commits =
+        new ObjectCache<>(COMMIT_CACHE, commit -> 1);
+    /** Contents of small objects read from this store, by namespace
+     *  followed by id. */
+    private final ObjectCache<byte[]> _small =
+        new ObjectCache<>(OBJECT_CACHE, contents -> contents.length);
+    /** Contents of blobs rebuilt from deltas or used as bases, by id. */
+    private final ObjectCache<byte[]> _bases =
+        new ObjectCache<>(BASE_CACHE, contents -> contents.length);
+
+    /** A store for the repository whose metadata lives in GITLETDIR. */
+    ObjectStore(File gitletDir) {
+        _gitletDir = gitletDir;
+        _objects = Utils.join(gitletDir, "objects");
+    }
+
+    /** Return the .gitlet directory this store belongs to. */
+    File dir() {
+        return _gitletDir;
+    }
+
+    /** Return the store of the repository in the current directory. */
+    static ObjectStore local() {
+        if (_local == null) {
+            _local = new ObjectStore(new File(Gitlet.GITLET_DIR));
+        }
+        return _local;
+    }
+
+    /** Forget the store of the repository in the current directory, so
+     *  that local reads it afresh. */
+    static void discardLocal() {
+        _local = null;
+    }
+
+    /** Return the file holding object ID of namespace KIND. */
+    File file(String kind, String id) {
+        return Utils.join(_objects, kind, id.substring(0, FANOUT),
+                id.substring(FANOUT));
+    }
+
+    /** Return the directory holding the packs of this store. */
+    File packDir() {
+        return Utils.join(_objects, Pack.DIR);
+    }
+
+    /** Return the packs of this store.  The list may be read while other
+     *  threads add packs to it. */
+    synchronized List<Pack> packs() {
+        if (_packs == null) {
+            ArrayList<Pack> packs = new ArrayList<>();
+            List<String> names = Utils.plainFilenamesIn(packDir());
+            if (names != null) {
+                for (String name : names) {
+                    if (name.endsWith(Pack.SUFFIX)) {
+                        packs.add(new Pack(Utils.join(packDir(), name)));
+                    }
+                }
+            }
+            _packs = new CopyOnWriteArrayList<>(packs);
+        }
+        return _packs;
+    }
+
+    /** Make the objects in PACK, a new pack of this store, visible. */
+    synchronized void addPack(Pack pack) {
+        if (pack != null) {
+            packs().add(pack);
+        }
+    }
+
+    /** Stop using PACK, which is about to be deleted. */
+    synchronized void removePack(Pack pack) {
+        packs().remove(pack);
+    }
+
+    /** Return the segments of this store, or null if it does not use
+     *  segments. */
+    synchronized SegmentStore segments() {
+        if (!_segmentsRead) {
+            _segments = SegmentStore.open(_objects);
+            _segmentsRead = true;
+        }
+        return _segments;
+    }
+
+    /** Store new objects in segments from now on, and move the loose
+     *  objects into them. */
+    void useSegments() {
+        synchronized (this) {
+            _segments = SegmentStore.create(_objects);
+            _segmentsRead = true;
+        }
+        compact();
+    }
+
+    /** Return true iff this store uses segments and wants compacting. */
+    boolean wantsCompaction() {
+        SegmentStore segments = segments();
+        return segments != null && segments.wantsCompaction();
+    }
+
+    /** If this store uses segments, move its loose objects into them and
+     *  rebuild their index. */
+    void compact() {
+        SegmentStore segments = segments();
+        if (segments == null) {
+            return;
+        }
+        for (String kind : new String[] {COMMITS, TREES, BLOBS, DELTAS}) {
+            for (String id : loose(kind)) {
+                File loose = file(kind, id);
+                try (InputStream in = openLoose(kind, loose)) {
+                    segments.append(kind, id, in, size(kind, id));
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+                loose.delete();
+            }
+        }
+        segments.compact();
+    }
+
+    /** Return the root of the object directories. */
+    File objectsDir() {
+        return _objects;
+    }
+
+    /** Return true iff object ID of namespace KIND is present. */
+    boolean contains(String kind, String id) {
+        return whole(kind, id) || kind.equals(BLOBS) && whole(DELTAS, id);
+    }
+
+    /** Return true iff object ID of namespace KIND is present and not
+     *  stored as a delta. */
+    private boolean whole(String kind, String id) {
+        if (id == null || id.length() != Utils.UID_LENGTH) {
+            return false;
+        }
+        SegmentStore segments = segments();
+        if (segments != null && segments.contains(kind, id)
+            || file(kind, id).isFile()) {
+            return true;
+        }
+        for (Pack pack : packs()) {
+            if (pack.contains(kind, id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return the full id of the object of namespace KIND whose id starts
+     *  with PREFIX, or null if there is none. */
+    String resolve(String kind, String prefix) {
+        if (prefix == null || prefix.length() == 0) {
+            return null;
+        }
+        if (prefix.length() == Utils.UID_LENGTH) {
+            return contains(kind, prefix) ? prefix : null;
+        }
+        if (prefix.length() < FANOUT) {
+            for (String id : list(kind)) {
+                if (id.startsWith(prefix)) {
+                    return id;
+                }
+            }
+            return null;
+        }
+        String dir = prefix.substring(0, FANOUT);
+        List<String> names =
+            Utils.plainFilenamesIn(Utils.join(_objects, kind, dir));
+        String rest = prefix.substring(FANOUT);
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(rest)) {
+                    return dir + name;
+                }
+            }
+        }
+        for (Pack pack : packs()) {
+            String id = pack.resolve(kind, prefix);
+            if (id != null) {
+                return id;
+            }
+        }
+        SegmentStore segments = segments();
+        String id = segments == null ? null : segments.resolve(kind, prefix);
+        if (id == null && kind.equals(BLOBS)) {
+            id = resolve(DELTAS, prefix);
+        }
+        return id;
+    }
+
+    /** Return the ids of all objects of namespace KIND, in order. */
+    List<String> list(String kind) {
+        TreeSet<String> result = new TreeSet<>(loose(kind));
+        for (Pack pack : packs()) {
+            result.addAll(pack.ids(kind).keySet());
+        }
+        SegmentStore segments = segments();
+        if (segments != null) {
+            result.addAll(segments.ids(kind));
+        }
+        if (kind.equals(BLOBS)) {
+            result.addAll(list(DELTAS));
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Return the ids of the loose objects of namespace KIND. */
+    List<String> loose(String kind) {
+        ArrayList<String> result = new ArrayList<>();
+        String[] dirs = Utils.join(_objects, kind).list();
+        if (dirs == null) {
+            return result;
+        }
+        for (String dir : dirs) {
+            List<String> names =
+                Utils.plainFilenamesIn(Utils.join(_objects, kind, dir));
+            if (names == null || dir.length() != FANOUT) {
+                continue;
+            }
+            for (String name : names) {
+                result.add(dir + name);
+            }
+        }
+        return result;
+    }
+
+    /** Store CONTENTS as object ID of namespace KIND, unless it is
+     *  already present. */
+    void write(String kind, String id, byte[] contents) {
+        if (contains(kind, id)) {
+            return;
+        }
+        SegmentStore segments = segments();
+        if (segments != null) {
+            segments.append(kind, id, new ByteArrayInputStream(contents),
+                            contents.length);
+            return;
+        }
+        File temp = ingest(kind, new ByteArrayInputStream(contents),
+                           contents.length);
+        install(temp, kind, id);
+    }
+
+    /** Store the contents of SOURCE as an object of namespace KIND and
+     *  return its id, the SHA-1 hash of those contents.  SOURCE is hashed
+     *  as it is streamed into a temporary object, so it is read once and
+     *  never held in memory; the temporary object is discarded if the
+     *  store already had it. */
+    String insert(String kind, File source) {
+        SegmentStore segments = segments();
+        if (segments != null) {
+            try (InputStream in = Files.newInputStream(source.toPath())) {
+                return segments.append(kind, null, in, source.length());
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+        File temp;
+        try (InputStream in = new DigestInputStream(
+                 Files.newInputStream(source.toPath()), md)) {
+            temp = ingest(kind, in, source.length());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        String id = CommitGraph.toHex(md.digest());
+        install(temp, kind, id);
+        return id;
+    }
+
+    /** Store the contents of SOURCE as a blob and return its id, as
+     *  insert does, but as a delta against blob BASE, the previous version
+     *  of the same file, if BASE is present and the delta is less than half
+     *  the size of the contents.  Files too small to gain much, or too
+     *  large to hold in memory, and files whose base ends a chain of
+     *  MAX_DEPTH deltas, are stored whole. */
+    String insertBlob(File source, String base) {
+        long length = source.length();
+        if (base == null || length < MIN_DELTA || length > MAX_DELTA
+            || !contains(BLOBS, base) || size(BLOBS, base) > MAX_DELTA
+            || depth(base) >= MAX_DEPTH) {
+            return insert(BLOBS, source);
+        }
+        byte[] contents;
+        try {
+            contents = Files.readAllBytes(source.toPath());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        String id = Utils.sha1(contents);
+        if (contains(BLOBS, id)) {
+            return id;
+        }
+        byte[] delta = Delta.create(base(base), contents);
+        if (delta.length >= contents.length / 2) {
+            write(BLOBS, id, contents);
+            return id;
+        }
+        byte[] object = new byte[DELTA_HEADER + delta.length];
+        System.arraycopy(CommitGraph.toBytes(base), 0, object, 0,
+                         DELTA_HEADER - 1);
+        object[DELTA_HEADER - 1] = (byte) (depth(base) + 1);
+        System.arraycopy(delta, 0, object, DELTA_HEADER, delta.length);
+        write(DELTAS, id, object);
+        _bases.put(id, contents);
+        return id;
+    }
+
+    /** Return the id of the blob that blob ID is rebuilt from, or null if
+     *  it is stored whole or not present. */
+    String deltaBase(String id) {
+        if (whole(BLOBS, id) || !whole(DELTAS, id)) {
+            return null;
+        }
+        byte[] object = read(DELTAS, id);
+        return CommitGraph.toHex(Arrays.copyOf(object, DELTA_HEADER - 1));
+    }
+
+    /** Return the number of deltas rebuilding blob ID. */
+    private int depth(String id) {
+        if (whole(BLOBS, id)) {
+            return 0;
+        }
+        return read(DELTAS, id)[DELTA_HEADER - 1] & 0xff;
+    }
+
+    /** Return the contents of blob ID, for use as a base, from the cache
+     *  of bases if they are there.  They must not be modified. */
+    private byte[] base(String id) {
+        return _bases.get(id, k -> read(BLOBS, k));
+    }
+
+    /** Return the contents of blob ID, which is stored as a delta, rebuilt
+     *  from its base.  They must not be modified. */
+    private byte[] rebuild(String id) {
+        return _bases.get(id, k -> {
+            byte[] object = read(DELTAS, id);
+            byte[] base = base(CommitGraph.toHex(
+                Arrays.copyOf(object, DELTA_HEADER - 1)));
+            return Delta.apply(base, object, DELTA_HEADER,
+                               object.length - DELTA_HEADER);
+        });
+    }
+
+    /** Write the SIZE bytes of IN, as an object of namespace KIND, to a new
+     *  temporary file in the store and return that file. */
+    private File ingest(String kind, InputStream in, long size) {
+        File temp = null;
+        try {
+            _objects.mkdirs();
+            temp = File.createTempFile("tmp-", ".obj", _objects);
+            long copied;
+            try (OutputStream out = new DeflaterOutputStream(
+                     new BufferedOutputStream(
+                         Files.newOutputStream(temp.toPath())))) {
+                out.write(header(kind, size));
+                copied = in.transferTo(out);
+            }
+            if (copied != size) {
+                throw new IOException("contents changed while being stored");
+            }
+            return temp;
+        } catch (IOException excp) {
+            if (temp != null) {
+                temp.delete();
+            }
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Make TEMP, a file made by ingest, object ID of namespace KIND, or
+     *  delete it if that object is already present, as it may be if
+     *  another thread installed it first. */
+    private void install(File temp, String kind, String id) {
+        if (contains(kind, id)) {
+            temp.delete();
+            return;
+        }
+        File dest = file(kind, id);
+        dest.getParentFile().mkdirs();
+        try {
+            Files.move(temp.toPath(), dest.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            temp.delete();
+            if (!dest.isFile()) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /** Return the contents of object ID of namespace KIND.  Contents of
+     *  small objects are cached and shared, so must not be modified. */
+    byte[] read(String kind, String id) {
+        byte[] contents = _small.get(kind + id);
+        if (contents != null) {
+            return contents;
+        }
+        try (InputStream in = open(kind, id)) {
+            contents = in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (contents.length <= SMALL_OBJECT) {
+            _small.put(kind + id, contents);
+        }
+        return contents;
+    }
+
+    /** Return the cache of commits decoded from this store. */
+    ObjectCache<Commit> commits() {
+        return _commits;
+    }
+
+    /** Return the cache of small objects read from this store. */
+    ObjectCache<byte[]> objects() {
+        return _small;
+    }
+
+    /** Return a stream of the contents of object ID of namespace KIND,
+     *  inflated as it is read.  The caller must close it. */
+    InputStream open(String kind, String id) {
+        SegmentStore segments = segments();
+        byte[] segment = segments == null ? null : segments.read(kind, id);
+        if (segment != null) {
+            return new ByteArrayInputStream(segment);
+        }
+        File loose = file(kind, id);
+        if (loose.isFile()) {
+            try {
+                return openLoose(kind, loose);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        for (Pack pack : packs()) {
+            byte[] contents = pack.read(kind, id);
+            if (contents != null) {
+                return new ByteArrayInputStream(contents);
+            }
+        }
+        if (kind.equals(BLOBS) && whole(DELTAS, id)) {
+            return new ByteArrayInputStream(rebuild(id));
+        }
+        throw new IllegalArgumentException("no object " + id);
+    }
+
+    /** Write the contents of object ID of namespace KIND to DEST, creating
+     *  or overwriting it, without reading them into memory all at once. */
+    void copyTo(String kind, String id, File dest) {
+        try (FileChannel out = FileChannel.open(dest.toPath(),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            copyTo(kind, id, out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write the contents of object ID of namespace KIND to OUT and return
+     *  their length.  Objects in segments and packs, and loose objects that
+     *  predate compression, are moved by the operating system without
+     *  passing through the Java heap; compressed objects are inflated
+     *  through a small buffer. */
+    long copyTo(String kind, String id, WritableByteChannel out) {
+        SegmentStore segments = segments();
+        long copied = segments == null ? -1
+            : segments.transferTo(kind, id, out);
+        if (copied >= 0) {
+            return copied;
+        }
+        File loose = file(kind, id);
+        if (!loose.isFile()) {
+            for (Pack pack : packs()) {
+                long length = pack.transferTo(kind, id, out);
+                if (length >= 0) {
+                    return length;
+                }
+            }
+            if (kind.equals(BLOBS) && whole(DELTAS, id)) {
+                byte[] contents = rebuild(id);
+                try {
+                    Channels.newOutputStream(out).write(contents);
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+                return contents.length;
+            }
+            throw new IllegalArgumentException("no object " + id);
+        }
+        try (InputStream in = inflate(kind, loose)) {
+            if (in != null) {
+                return in.transferTo(Channels.newOutputStream(out));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try (FileChannel in = FileChannel.open(loose.toPath(),
+                                               StandardOpenOption.READ)) {
+            Pack.transfer(in, 0, in.size(), out);
+            return in.size();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return a stream of the contents of LOOSE, an object of namespace
+     *  KIND, which may be compressed or, if it predates compression, raw. */
+    private InputStream openLoose(String kind, File loose)
+        throws IOException {
+        InputStream in = inflate(kind, loose);
+        if (in == null) {
+            return new BufferedInputStream(new FileInputStream(loose));
+        }
+        return in;
+    }
+
+    /** Return a stream of the inflated contents of LOOSE, an object of
+     *  namespace KIND, or null if it predates compression. */
+    private InputStream inflate(String kind, File loose) throws IOException {
+        InputStream raw =
+            new BufferedInputStream(new FileInputStream(loose));
+        if (compressed(raw)) {
+            InputStream in = new InflaterInputStream(raw);
+            try {
+                if (readHeader(in, kind) >= 0) {
+                    return in;
+                }
+            } catch (ZipException excp) {
+                /* Not compressed after all: fall through. */
+            }
+            in.close();
+            return null;
+        }
+        raw.close();
+        return null;
+    }
+
+    /** Return the size of the contents of object ID of namespace KIND.
+     *  Only the header of a compressed object is inflated. */
+    long size(String kind, String id) {
+        SegmentStore segments = segments();
+        long stored = segments == null ? -1 : segments.size(kind, id);
+        if (stored >= 0) {
+            return stored;
+        }
+        File loose = file(kind, id);
+        if (loose.isFile()) {
+            try (InputStream raw =
+                     new BufferedInputStream(new FileInputStream(loose))) {
+                if (compressed(raw)) {
+                    InputStream in = new InflaterInputStream(raw);
+                    long size = readHeader(in, kind);
+                    in.close();
+                    if (size >= 0) {
+                        return size;
+                    }
+                }
+            } catch (IOException excp) {
+                /* Not compressed after all: use the file's size. */
+            }
+            return loose.length();
+        }
+        for (Pack pack : packs()) {
+            long size = pack.size(kind, id);
+            if (size >= 0) {
+                return size;
+            }
+        }
+        if (kind.equals(BLOBS) && whole(DELTAS, id)) {
+            return Delta.size(read(DELTAS, id), DELTA_HEADER);
+        }
+        throw new IllegalArgumentException("no object " + id);
+    }
+
+    /** Return true iff RAW, positioned at the start of a loose object,
+     *  starts with a zlib header.  RAW must support mark. */
+    private static boolean compressed(InputStream raw) throws IOException {
+        raw.mark(2);
+        int b0 = raw.read(), b1 = raw.read();
+        raw.reset();
+        return b0 == ZLIB_METHOD && b1 >= 0 && (b0 * 256 + b1) % 31 == 0;
+    }
+
+    /** Return the header of a compressed object of namespace KIND whose
+     *  contents are SIZE bytes long. */
+    private static byte[] header(String kind, long size) {
+        return (kind + " " + size + "\0").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Read the header of an object of namespace KIND from IN and return
+     *  the size it gives, or -1 if IN does not start with such a header. */
+    private static long readHeader(InputStream in, String kind)
+        throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int c = in.read(); c != 0; c = in.read()) {
+            if (c < 0 || text.length() == MAX_HEADER) {
+                return -1;
+            }
+            text.append((char) c);
+        }
+        String prefix = kind + " ";
+        if (!text.toString().startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(text.substring(prefix.length()));
+        } catch (NumberFormatException excp) {
+            return -1;
+        }
+    }
+
+    /** Create the object directories, moving any objects left in the
+     *  flat layout of older repositories into their namespaces, and store
+     *  the trees of commits made before trees. */
+    void migrate() {
+        if (!_objects.isDirectory()) {
+            Utils.join(_objects, COMMITS).mkdirs();
+            Utils.join(_objects, BLOBS).mkdirs();
+            moveFlatObjects();
+        }
+        File trees = Utils.join(_objects, TREES);
+        if (!trees.isDirectory()) {
+            for (String id : list(COMMITS)) {
+                Commit.load(this, id).storeTrees();
+            }
+            trees.mkdirs();
+        }
+    }
+
+    /** Move the objects left in the flat layout into their namespaces. */
+    private void moveFlatObjects() {
+        List<String> names = Utils.plainFilenamesIn(_gitletDir);
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            if (name.length() != Utils.UID_LENGTH) {
+                continue;
+            }
+            File old = Utils.join(_gitletDir, name);
+            String kind;
+            try {
+                Utils.readObject(old, Commit.class);
+                kind = COMMITS;
+            } catch (IllegalArgumentException e) {
+                kind = BLOBS;
+            }
+            File dest = file(kind, name);
+            dest.getParentFile().mkdirs();
+            old.renameTo(dest);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of ObjectStore.
+ *  @author Srikar Hanumanula
+ */
+public class ObjectStoreTest {
+
+    /** Scratch directory and store. */
+    private StoreFixture _fixture;
+    /** The store of _fixture. */
+    private ObjectStore _store;
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _store = _fixture.store();
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    /** Return TEXT as bytes. */
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void objectsAreFannedOutByNamespace() {
+        String id = _fixture.blob("hello\n");
+        assertEquals(Utils.join(_fixture.gitletDir(), "objects",
+                                ObjectStore.BLOBS, id.substring(0, 2),
+                                id.substring(2)),
+                     _store.file(ObjectStore.BLOBS, id));
+        assertTrue(_store.file(ObjectStore.BLOBS, id).isFile());
+        assertTrue(_store.contains(ObjectStore.BLOBS, id));
+        assertFalse(_store.contains(ObjectStore.COMMITS, id));
+        assertArrayEquals(bytes("hello\n"),
+                          _store.read(ObjectStore.BLOBS, id));
+    }
+
+    @Test
+    public void namespacesAreSeparate() {
+        String id = Utils.sha1(bytes("shared"));
+        _store.write(ObjectStore.BLOBS, id, bytes("blob"));
+        _store.write(ObjectStore.COMMITS, id, bytes("commit"));
+        assertArrayEquals(bytes("blob"), _store.read(ObjectStore.BLOBS, id));
+        assertArrayEquals(bytes("commit"),
+                          _store.read(ObjectStore.COMMITS, id));
+        assertEquals(List.of(id), _store.list(ObjectStore.BLOBS));
+        assertEquals(List.of(id), _store.list(ObjectStore.COMMITS));
+    }
+
+    @Test
+    public void abbreviatedIdsResolve() {
+        String a = _fixture.blob("a\n"), b = _fixture.blob("b\n");
+        assertEquals(a, _store.resolve(ObjectStore.BLOBS, a.substring(0, 6)));
+        assertEquals(b, _store.resolve(ObjectStore.BLOBS, b.substring(0, 1)));
+        assertEquals(b, _store.resolve(ObjectStore.BLOBS, b));
+        assertNull(_store.resolve(ObjectStore.COMMITS, a.substring(0, 6)));
+        assertNull(_store.resolve(ObjectStore.BLOBS,
+                                  Utils.sha1(bytes("absent"))));
+        assertNull(_store.resolve(ObjectStore.BLOBS, ""));
+    }
+
+    @Test
+    public void flatObjectsMoveIntoTheirNamespaces() {
+        StoreFixture old = new StoreFixture();
+        try {
+            old.copyLegacy();
+            File gitlet = old.gitletDir();
+            String blobId = Utils.sha1(bytes("hello\n"));
+            ObjectStore store = old.store();
+            assertFalse(Utils.join(gitlet, StoreFixture.ADD_A).exists());
+            assertFalse(Utils.join(gitlet, blobId).exists());
+            assertEquals(List.of(StoreFixture.ADD_B, StoreFixture.ADD_A,
+                                 StoreFixture.INITIAL).stream().sorted()
+                         .toList(),
+                         store.list(ObjectStore.COMMITS));
+            assertEquals("add a",
+                         Commit.load(store, StoreFixture.ADD_A)
+                         .getMessage());
+            assertArrayEquals(bytes("hello\n"),
+                              store.read(ObjectStore.BLOBS, blobId));
+        } finally {
+            old.delete();
+        }
+    }
+
+    @Test
+    public void looseObjectsAreCompressedBehindAHeader() throws IOException {
+        String text = "a line repeated many times\n".repeat(100);
+        String id = _fixture.blob(text);
+        File loose = _store.file(ObjectStore.BLOBS, id);
+        assertTrue(loose.length() < text.length());
+        try (InputStream in = new InflaterInputStream(
+                 Files.newInputStream(loose.toPath()))) {
+            assertArrayEquals(bytes("blobs " + text.length() + "\0" + text),
+                              in.readAllBytes());
+        }
+        try (InputStream in = _store.open(ObjectStore.BLOBS, id)) {
+            assertArrayEquals(bytes(text), in.readAllBytes());
+        }
+        File copy = Utils.join(_fixture.dir(), "copy");
+        _store.copyTo(ObjectStore.BLOBS, id, copy);
+        assertArrayEquals(bytes(text), Utils.readContents(copy));
+    }
+
+    @Test
+    public void objectsWrittenBeforeCompressionAreReadRaw() {
+        byte[] plain = bytes("written by an old gitlet\n");
+        for (byte[] contents : List.of(plain, new byte[0])) {
+            String id = Utils.sha1(contents);
+            File loose = _store.file(ObjectStore.BLOBS, id);
+            loose.getParentFile().mkdirs();
+            Utils.writeContents(loose, contents);
+            assertArrayEquals(contents, _store.read(ObjectStore.BLOBS, id));
+        }
+    }
+
+    @Test
+    public void headersNameTheNamespace() {
+        String id = _fixture.blob("hello\n");
+        File loose = _store.file(ObjectStore.BLOBS, id);
+        File moved = _store.file(ObjectStore.COMMITS, id);
+        moved.getParentFile().mkdirs();
+        assertTrue(loose.renameTo(moved));
+        assertFalse(Arrays.equals(bytes("hello\n"),
+                                  _store.read(ObjectStore.COMMITS, id)));
+    }
+
+    /** Return a file of the scratch directory holding CONTENTS. */
+    private File source(byte[] contents) {
+        File result = Utils.join(_fixture.dir(), "source");
+        Utils.writeContents(result, contents);
+        return result;
+    }
+
+    /** Return the names of the temporary files left in _store. */
+    private List<String> temporaryFiles() {
+        return Utils.plainFilenamesIn(Utils.join(_fixture.gitletDir(),
+                                                 "objects"));
+    }
+
+    @Test
+    public void insertedFilesAreHashedAsTheyAreStored() {
+        byte[] contents = bytes("streamed contents\n".repeat(10_000));
+        File source = source(contents);
+        assertEquals(Utils.sha1(contents), Utils.sha1(source));
+        String id = _store.insert(ObjectStore.BLOBS, source);
+        assertEquals(Utils.sha1(contents), id);
+        assertArrayEquals(contents, _store.read(ObjectStore.BLOBS, id));
+        assertEquals(List.of(), temporaryFiles());
+    }
+
+    @Test
+    public void insertingKnownContentsKeepsTheStoredObject() {
+        File source = source(bytes("known\n"));
+        String id = _store.insert(ObjectStore.BLOBS, source);
+        File loose = _store.file(ObjectStore.BLOBS, id);
+        assertTrue(loose.setLastModified(0));
+        assertEquals(id, _store.insert(ObjectStore.BLOBS, source));
+        assertEquals(0, loose.lastModified());
+        assertEquals(List.of(), temporaryFiles());
+    }
+
+    @Test
+    public void concurrentWritesOfOneObjectSucceed() {
+        byte[] contents = bytes("written by every thread\n");
+        String id = Utils.sha1(contents);
+        IntStream.range(0, 64).parallel()
+            .forEach(i -> _store.write(ObjectStore.BLOBS, id, contents));
+        assertArrayEquals(contents, _store.read(ObjectStore.BLOBS, id));
+        assertEquals(List.of(), temporaryFiles());
+    }
+
+}
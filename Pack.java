@@ -0,0 +1,162 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** A read-only pack file: many objects stored back to back in a single
+ *  file, followed by an index of their offsets.  Packs are produced by
+ *  PackWriter during push and fetch and are kept as they are, so a
+ *  transfer costs one sequential file write at the destination.  The
+ *  layout is
+ *
+ *      int     MAGIC
+ *      int     VERSION
+ *      entries, each: UTF kind, 20-byte raw id, int length, contents
+ *      index:  int count, then per object: UTF kind, 20-byte raw id,
+ *              long offset of contents, int length
+ *      long    offset of index
+ *      int     MAGIC
+ *
+ *  @author Srikar Hanumanula
+ */
+class Pack {
+    /** Name of the directory holding packs within the object store. */
+    static final String DIR = "pack";
+    /** Suffix of pack file names. */
+    static final String SUFFIX = ".pack";
+    /** File signature, "GPAK". */
+    static final int MAGIC = 0x4750414b;
+    /** Format version. */
+    static final int VERSION = 1;
+    /** Size of the trailer in bytes. */
+    static final int TRAILER = 12;
+
+    /** The pack file. */
+    private final File _file;
+    /** Maps each kind of object to its ids, each mapped to the offset and
+     *  length of its contents. */
+    private final HashMap<String, TreeMap<String, long[]>> _index =
+        new HashMap<>();
+
+    /** The pack stored in FILE. */
+    Pack(File file) {
+        _file = file;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            long size = in.length();
+            if (size < 2 * 4 + TRAILER) {
+                throw Utils.error("Corrupt pack %s.", file.getName());
+            }
+            in.seek(size - TRAILER);
+            long indexStart = in.readLong();
+            if (in.readInt() != MAGIC) {
+                throw Utils.error("Corrupt pack %s.", file.getName());
+            }
+            byte[] raw = new byte[(int) (size - TRAILER - indexStart)];
+            in.seek(indexStart);
+            in.readFully(raw);
+            DataInputStream index =
+                new DataInputStream(new ByteArrayInputStream(raw));
+            int count = index.readInt();
+            byte[] id = new byte[Utils.UID_LENGTH / 2];
+            for (int i = 0; i < count; i += 1) {
+                String kind = index.readUTF();
+                index.readFully(id);
+                long offset = index.readLong();
+                long length = index.readInt();
+                _index.computeIfAbsent(kind, k -> new TreeMap<>())
+                    .put(CommitGraph.toHex(id), new long[] {offset, length});
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the pack file. */
+    File file() {
+        return _file;
+    }
+
+    /** Return the ids of objects of namespace KIND in this pack. */
+    TreeMap<String, long[]> ids(String kind) {
+        return _index.getOrDefault(kind, new TreeMap<>());
+    }
+
+    /** Return true iff object ID of namespace KIND is in this pack. */
+    boolean contains(String kind, String id) {
+        return ids(kind).containsKey(id);
+    }
+
+    /** Return the first id of namespace KIND in this pack that starts with
+     *  PREFIX, or null. */
+    String resolve(String kind, String prefix) {
+        Map.Entry<String, long[]> e = ids(kind).ceilingEntry(prefix);
+        if (e == null || !e.getKey().startsWith(prefix)) {
+            return null;
+        }
+        return e.getKey();
+    }
+
+    /** Return the size of object ID of namespace KIND, or -1 if it is not
+     *  in this pack. */
+    long size(String kind, String id) {
+        long[] loc = ids(kind).get(id);
+        return loc == null ? -1 : loc[1];
+    }
+
+    /** Return the contents of object ID of namespace KIND, or null if it
+     *  is not in this pack. */
+    byte[] read(String kind, String id) {
+        long[] loc = ids(kind).get(id);
+        if (loc == null) {
+            return null;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(_file, "r")) {
+            byte[] result = new byte[(int) loc[1]];
+            in.seek(loc[0]);
+            in.readFully(result);
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write the contents of object ID of namespace KIND to OUT straight
+     *  from the pack file, and return their length, or return -1 if the
+     *  object is not in this pack. */
+    long transferTo(String kind, String id, WritableByteChannel out) {
+        long[] loc = ids(kind).get(id);
+        if (loc == null) {
+            return -1;
+        }
+        try (FileChannel in =
+                 FileChannel.open(_file.toPath(), StandardOpenOption.READ)) {
+            transfer(in, loc[0], loc[1], out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return loc[1];
+    }
+
+    /** Write the COUNT bytes of IN starting at POSITION to OUT, leaving it
+     *  to the operating system to move them where it can. */
+    static void transfer(FileChannel in, long position, long count,
+                         WritableByteChannel out) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long moved = in.transferTo(position, end - position, out);
+            if (moved <= 0 && position >= in.size()) {
+                throw new IOException("unexpected end of " + in);
+            }
+            position += moved;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Pack and PackWriter.
+ *  @author Srikar Hanumanula
+ */
+public class PackTest {
+
+    /** Scratch directory and store. */
+    private StoreFixture _fixture;
+    /** The store of _fixture. */
+    private ObjectStore _store;
+    /** Store the objects packed are copied from. */
+    private StoreFixture _source;
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _store = _fixture.store();
+        _source = new StoreFixture();
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+        _source.delete();
+    }
+
+    /** Return TEXT as bytes. */
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Return the id of TEXT. */
+    private static String id(String text) {
+        return Utils.sha1(bytes(text));
+    }
+
+    /** Add TEXT as an object of namespace KIND to WRITER, by way of
+     *  _source, and return its id. */
+    private String add(PackWriter writer, String kind, String text) {
+        String id = id(text);
+        _source.store().write(kind, id, bytes(text));
+        writer.add(kind, id, _source.store());
+        return id;
+    }
+
+    /** Return a pack of _store holding blobs TEXTS, each added twice. */
+    private Pack pack(String... texts) {
+        PackWriter writer = new PackWriter(_store);
+        for (int i = 0; i < 2; i += 1) {
+            for (String text : texts) {
+                add(writer, ObjectStore.BLOBS, text);
+            }
+        }
+        return writer.finish();
+    }
+
+    /** Return the one pack file of _store. */
+    private File onlyPack() {
+        List<String> names = Utils.plainFilenamesIn(_store.packDir());
+        assertEquals(1, names.size());
+        return Utils.join(_store.packDir(), names.get(0));
+    }
+
+    @Test
+    public void packedObjectsAreReadBack() {
+        PackWriter writer = new PackWriter(_store);
+        add(writer, ObjectStore.BLOBS, "a\n");
+        String commit = add(writer, ObjectStore.COMMITS, "commit");
+        String empty = add(writer, ObjectStore.BLOBS, "");
+        Pack pack = writer.finish();
+        assertArrayEquals(bytes("a\n"), pack.read(ObjectStore.BLOBS,
+                                                  id("a\n")));
+        assertArrayEquals(bytes("commit"),
+                          pack.read(ObjectStore.COMMITS, commit));
+        assertArrayEquals(new byte[0], pack.read(ObjectStore.BLOBS, empty));
+        assertNull(pack.read(ObjectStore.BLOBS, commit));
+        assertTrue(pack.contains(ObjectStore.COMMITS, commit));
+        assertFalse(pack.contains(ObjectStore.BLOBS, commit));
+        assertEquals(id("a\n"), pack.resolve(ObjectStore.BLOBS,
+                                             id("a\n").substring(0, 5)));
+        assertNull(pack.resolve(ObjectStore.COMMITS,
+                                id("a\n").substring(0, 5)));
+    }
+
+    @Test
+    public void objectsAddedTwiceAreWrittenOnce() {
+        Pack pack = pack("a\n", "b\n");
+        assertEquals(2, pack.ids(ObjectStore.BLOBS).size());
+        assertArrayEquals(bytes("b\n"), new Pack(onlyPack())
+                          .read(ObjectStore.BLOBS, id("b\n")));
+    }
+
+    @Test
+    public void packsAreNamedByTheirContents() {
+        pack("a\n");
+        List<String> names = Utils.plainFilenamesIn(_store.packDir());
+        assertEquals(1, names.size());
+        assertTrue(names.get(0).startsWith("pack-"));
+        assertTrue(names.get(0).endsWith(Pack.SUFFIX));
+    }
+
+    @Test
+    public void emptyPacksLeaveNothing() {
+        assertNull(new PackWriter(_store).finish());
+        assertEquals(List.of(), Utils.plainFilenamesIn(_store.packDir()));
+    }
+
+    @Test
+    public void storesReadTheirPacks() {
+        _store.addPack(pack("a\n", "b\n"));
+        assertTrue(_store.contains(ObjectStore.BLOBS, id("a\n")));
+        assertFalse(_store.file(ObjectStore.BLOBS, id("a\n")).exists());
+        assertArrayEquals(bytes("b\n"),
+                          _store.read(ObjectStore.BLOBS, id("b\n")));
+        assertEquals(id("b\n"),
+                     _store.resolve(ObjectStore.BLOBS,
+                                    id("b\n").substring(0, 6)));
+        String loose = _fixture.blob("c\n");
+        assertEquals(3, _store.list(ObjectStore.BLOBS).size());
+        ObjectStore reopened = new ObjectStore(_fixture.gitletDir());
+        assertTrue(reopened.contains(ObjectStore.BLOBS, id("a\n")));
+        assertTrue(reopened.contains(ObjectStore.BLOBS, loose));
+    }
+
+    /** Return what copying object ID of namespace KIND of STORE to a file
+     *  leaves in the file. */
+    private byte[] copied(ObjectStore store, String kind, String id) {
+        File dest = Utils.join(_fixture.dir(), "copy");
+        store.copyTo(kind, id, dest);
+        return Utils.readContents(dest);
+    }
+
+    @Test
+    public void packedObjectsAreTransferredFromTheirOffsets()
+        throws IOException {
+        Pack pack = pack("first\n", "second\n", "third\n");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(7, pack.transferTo(ObjectStore.BLOBS, id("second\n"),
+                                        Channels.newChannel(out)));
+        assertArrayEquals(bytes("second\n"), out.toByteArray());
+        assertEquals(-1, pack.transferTo(ObjectStore.COMMITS,
+                                         id("second\n"),
+                                         Channels.newChannel(out)));
+        _store.addPack(pack);
+        assertArrayEquals(bytes("third\n"),
+                          copied(_store, ObjectStore.BLOBS, id("third\n")));
+    }
+
+    @Test
+    public void transfersCopyTheRangeAsked() throws IOException {
+        File file = Utils.join(_fixture.dir(), "range");
+        Utils.writeContents(file, "0123456789");
+        try (FileChannel in = FileChannel.open(file.toPath(),
+                                               StandardOpenOption.READ)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Pack.transfer(in, 3, 4, Channels.newChannel(out));
+            assertEquals("3456", out.toString(StandardCharsets.UTF_8));
+            try {
+                Pack.transfer(in, 8, 4, Channels.newChannel(out));
+                fail("transferred past the end of the file");
+            } catch (IOException excp) {
+                assertEquals("3456" + "89",
+                             out.toString(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void looseObjectsAreCopiedWhateverTheirForm() {
+        String text = "compressed\n".repeat(100);
+        assertArrayEquals(bytes(text), copied(_store, ObjectStore.BLOBS,
+                                              _fixture.blob(text)));
+        File raw = _store.file(ObjectStore.BLOBS, id("raw\n"));
+        raw.getParentFile().mkdirs();
+        Utils.writeContents(raw, "raw\n");
+        assertArrayEquals(bytes("raw\n"),
+                          copied(_store, ObjectStore.BLOBS, id("raw\n")));
+    }
+
+    @Test
+    public void compressedObjectsArePackedWhole() {
+        String text = "large\n".repeat(100_000);
+        String id = _source.blob(text);
+        PackWriter writer = new PackWriter(_store);
+        writer.add(ObjectStore.BLOBS, id, _source.store());
+        _store.addPack(writer.finish());
+        assertArrayEquals(bytes(text), _store.read(ObjectStore.BLOBS, id));
+    }
+
+    @Test(expected = GitletException.class)
+    public void truncatedPacksAreRejected() throws IOException {
+        pack("a\n");
+        File file = onlyPack();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(out.length() - 4);
+        }
+        new Pack(file);
+    }
+
+}
@@ -0,0 +1,141 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+
+/** Streams objects into a new pack in the pack directory of a store.  The
+ *  pack is written to a temporary file as objects are added and is only
+ *  given its final name, derived from its index, by finish, so readers
+ *  never see a partial pack.  If adding an object fails, or the pack is
+ *  aborted, the temporary file is closed and deleted.  Objects added twice
+ *  are written once.
+ *  Objects copied from another store go from file to file without passing
+ *  through the Java heap wherever that store allows.
+ *  @author Srikar Hanumanula
+ */
+class PackWriter {
+    /** Suffix of packs being written. */
+    private static final String SUFFIX_TEMP = ".tmp";
+
+    /** Temporary file receiving the pack. */
+    private final File _temp;
+    /** Directory the finished pack goes in. */
+    private final File _dir;
+    /** Channel onto _temp. */
+    private final FileChannel _channel;
+    /** Buffered stream onto _channel, flushed before _channel is written
+     *  directly. */
+    private final DataOutputStream _out;
+    /** Index entries, in the order objects were written. */
+    private final ByteArrayOutputStream _index = new ByteArrayOutputStream();
+    /** Stream onto _index. */
+    private final DataOutputStream _indexOut = new DataOutputStream(_index);
+    /** Kinds and ids of the objects written so far. */
+    private final HashSet<String> _written = new HashSet<>();
+    /** Number of bytes written so far. */
+    private long _offset;
+
+    /** A writer for a new pack in the pack directory of STORE. */
+    PackWriter(ObjectStore store) {
+        _dir = store.packDir();
+        _dir.mkdirs();
+        try {
+            _temp = File.createTempFile("tmp-", SUFFIX_TEMP, _dir);
+            _channel = FileChannel.open(_temp.toPath(),
+                                        StandardOpenOption.WRITE);
+            _out = new DataOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(_channel)));
+            _out.writeInt(Pack.MAGIC);
+            _out.writeInt(Pack.VERSION);
+            _offset = 2 * 4;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Append object ID of namespace KIND of FROM, unless it was added
+     *  already.  If that fails, abort the pack. */
+    void add(String kind, String id, ObjectStore from) {
+        if (!_written.add(kind + "/" + id)) {
+            return;
+        }
+        try {
+            long size = from.size(kind, id);
+            entry(kind, id, size);
+            _out.flush();
+            if (from.copyTo(kind, id, _channel) != size) {
+                throw new IOException("object " + id + " changed size");
+            }
+        } catch (IOException excp) {
+            abort();
+            throw new IllegalArgumentException(excp.getMessage());
+        } catch (RuntimeException excp) {
+            abort();
+            throw excp;
+        }
+    }
+
+    /** Give up on the pack, closing and deleting its temporary file. */
+    void abort() {
+        try {
+            _channel.close();
+        } catch (IOException excp) {
+            /* The file is deleted regardless. */
+        }
+        _temp.delete();
+    }
+
+    /** Write the start of the entry for object ID of namespace KIND, whose
+     *  contents are SIZE bytes long and are to follow, and its index
+     *  record. */
+    private void entry(String kind, String id, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("object " + id + " is too large to pack");
+        }
+        byte[] raw = CommitGraph.toBytes(id);
+        _out.writeUTF(kind);
+        _out.write(raw);
+        _out.writeInt((int) size);
+        long dataOffset = _offset + 2 + kind.length() + raw.length + 4;
+        _offset = dataOffset + size;
+        _indexOut.writeUTF(kind);
+        _indexOut.write(raw);
+        _indexOut.writeLong(dataOffset);
+        _indexOut.writeInt((int) size);
+    }
+
+    /** Write the index, move the pack into place, and return it, or return
+     *  null, leaving nothing behind, if no objects were added. */
+    Pack finish() {
+        try {
+            long indexStart = _offset;
+            _out.writeInt(_written.size());
+            _index.writeTo(_out);
+            _out.writeLong(indexStart);
+            _out.writeInt(Pack.MAGIC);
+            _out.close();
+            if (_written.isEmpty()) {
+                _temp.delete();
+                return null;
+            }
+            StringBuilder name = new StringBuilder("pack-");
+            name.append(Utils.sha1(_index.toByteArray()));
+            File dest = new File(_dir, name.append(Pack.SUFFIX).toString());
+            Files.move(_temp.toPath(), dest.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+            return new Pack(dest);
+        } catch (IOException excp) {
+            abort();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/** The branches of a repository and which of them is current.  Each
+ *  branch is a file under .gitlet/refs/heads named after it and holding
+ *  the id of its head commit, and .gitlet/HEAD holds the name of the
+ *  current branch.  A name may hold slashes, as the branches fetched from
+ *  a remote do, but only as separators of parts that each name a file
+ *  under refs/heads, so no branch is written elsewhere or hidden.  Since
+ *  the parts before a slash name directories, no branch's name may extend
+ *  another's with a slash.  Files are read only when first needed,
+ *  changes are kept in memory until save, and save rewrites only the
+ *  files of branches that changed.
+ *  @author Srikar Hanumanula
+ */
+class Refs {
+    /** Name of the file naming the current branch. */
+    static final String HEAD = "HEAD";
+    /** Path of the directory of branch files within a .gitlet directory. */
+    static final String HEADS = "refs/heads";
+
+    /** The .gitlet directory. */
+    private final File _dir;
+    /** Directory holding the branch files. */
+    private final File _heads;
+    /** The current branch, or null if not read yet. */
+    private String _head;
+    /** True iff the current branch was changed. */
+    private boolean _headChanged;
+    /** Branches read or changed so far, mapped to their head commits, or
+     *  to null if they do not exist. */
+    private final HashMap<String, String> _known = new HashMap<>();
+    /** Branches changed or removed since they were read. */
+    private final TreeSet<String> _changed = new TreeSet<>();
+
+    /** The branches of the repository whose metadata lives in DIR. */
+    Refs(File dir) {
+        _dir = dir;
+        _heads = Utils.join(dir, HEADS);
+    }
+
+    /** Return true iff DIR holds a repository in this layout. */
+    static boolean exists(File dir) {
+        return Utils.join(dir, HEAD).isFile();
+    }
+
+    /** Return the name of the current branch. */
+    String head() {
+        if (_head == null) {
+            _head = read(Utils.join(_dir, HEAD));
+        }
+        return _head;
+    }
+
+    /** Make BRANCH the current branch. */
+    void setHead(String branch) {
+        _head = branch;
+        _headChanged = true;
+    }
+
+    /** Return true iff NAME can name a branch: its slash-separated parts
+     *  are not empty, not "." or "..", hold no backslash, and do not end in
+     *  ".tmp", which marks branch files being written. */
+    static boolean isValidName(String name) {
+        for (String part : name.split("/", -1)) {
+            if (part.isEmpty() || part.equals(".") || part.equals("..")
+                || part.indexOf('\\') >= 0 || part.endsWith(".tmp")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the head commit of BRANCH, or null if there is no such
+     *  branch. */
+    String get(String branch) {
+        if (!isValidName(branch)) {
+            return null;
+        }
+        if (!_known.containsKey(branch)) {
+            File file = Utils.join(_heads, branch);
+            _known.put(branch, file.isFile() ? read(file) : null);
+        }
+        return _known.get(branch);
+    }
+
+    /** Return true iff BRANCH exists. */
+    boolean containsKey(String branch) {
+        return get(branch) != null;
+    }
+
+    /** Return true iff BRANCH does not exist and its file cannot be
+     *  made, because its name extends that of an existing branch with a
+     *  slash, or an existing branch's extends its name. */
+    boolean collides(String branch) {
+        if (containsKey(branch)) {
+            return false;
+        }
+        for (String other : keySet()) {
+            if (other.startsWith(branch + "/")
+                || branch.startsWith(other + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Make COMMIT the head of BRANCH, creating it if need be.  BRANCH
+     *  must be a valid name. */
+    void put(String branch, String commit) {
+        if (!isValidName(branch)) {
+            throw new IllegalArgumentException("invalid branch name "
+                                               + branch);
+        }
+        _known.put(branch, commit);
+        _changed.add(branch);
+    }
+
+    /** Remove BRANCH. */
+    void remove(String branch) {
+        put(branch, null);
+    }
+
+    /** Return the names of all branches, in order. */
+    TreeSet<String> keySet() {
+        TreeSet<String> result = new TreeSet<>();
+        list(_heads, "", result);
+        for (Map.Entry<String, String> e : _known.entrySet()) {
+            if (e.getValue() == null) {
+                result.remove(e.getKey());
+            } else {
+                result.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    /** Add the names of the branch files below DIR to RESULT, prefixed by
+     *  PREFIX. */
+    private static void list(File dir, String prefix, TreeSet<String> result) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                list(file, prefix + file.getName() + "/", result);
+            } else if (!file.getName().endsWith(".tmp")) {
+                result.add(prefix + file.getName());
+            }
+        }
+    }
+
+    /** Return true iff the current branch or any branch changed since
+     *  the last save. */
+    boolean changed() {
+        return _headChanged || !_changed.isEmpty();
+    }
+
+    /** Write out the current branch and the branches that changed. */
+    void save() {
+        if (_headChanged) {
+            write(Utils.join(_dir, HEAD), _head);
+            _headChanged = false;
+        }
+        for (String branch : _changed) {
+            File file = Utils.join(_heads, branch);
+            String commit = _known.get(branch);
+            if (commit == null) {
+                file.delete();
+                for (File dir = file.getParentFile(); !dir.equals(_heads)
+                         && dir.delete(); dir = dir.getParentFile()) {
+                    /* Drop directories the branch leaves empty. */
+                }
+            } else {
+                write(file, commit);
+            }
+        }
+        _changed.clear();
+    }
+
+    /** Return the contents of FILE, a one-line file. */
+    private static String read(File file) {
+        return new String(Utils.readContents(file),
+                          StandardCharsets.UTF_8).trim();
+    }
+
+    /** Replace the contents of FILE with the line VALUE, atomically. */
+    private static void write(File file, String value) {
+        file.getParentFile().mkdirs();
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            Files.write(temp.toPath(),
+                        (value + "\n").getBytes(StandardCharsets.UTF_8));
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
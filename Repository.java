@@ -0,0 +1,347 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/** The gitlet repository in the current directory, for programs that use
+ *  gitlet within their own process.  Each method runs one command as the
+ *  command line would, but returns what the command would print rather
+ *  than printing it.  A command that fails throws a GitletException with
+ *  the message the command line would print, and saves nothing it changed
+ *  in memory, such as staged files or branches.  Files it had already
+ *  written, such as working files or stored objects, stay as they are.
+ *  A command that succeeds saves the repository before returning.
+ *
+ *  Commands run one at a time, whichever thread or Repository runs them.
+ *  Between commands, the object store, commit graph and stat cache loaded
+ *  by earlier commands are kept.  They are discarded whenever the files
+ *  they were read from have changed since the last command, as when a
+ *  command is run by another process.  The working tree is listed afresh
+ *  for each command.  A store that uses segments is compacted in a thread
+ *  of its own once enough objects have been appended to it, while no
+ *  command runs.
+ *  @author Srikar Hanumanula
+ */
+public class Repository {
+    /** The .gitlet directory. */
+    private static final File DIR = new File(Gitlet.GITLET_DIR);
+    /** Files whose changes make the cached state stale. */
+    private static final File[] WATCHED = {
+        Utils.join(DIR, StatCache.FILE_NAME),
+        Utils.join(DIR, CommitGraph.FILE_NAME),
+        Utils.join(DIR, "objects", Pack.DIR),
+        Utils.join(DIR, "objects", SegmentStore.DIR),
+    };
+
+    /** Modification times and sizes of WATCHED after the last command. */
+    private static long[] _stamp;
+    /** True while the object store is being compacted. */
+    private static boolean _compacting;
+
+    /** The repository in the current directory. */
+    private Repository() {
+    }
+
+    /** Create a repository in the current directory and return it. */
+    public static Repository init() {
+        if (DIR.exists()) {
+            throw Utils.error("A Gitlet version-control system "
+                    + "already exists in the current directory.");
+        }
+        DIR.mkdir();
+        Repository result = new Repository();
+        result.update(gitlet -> {
+            gitlet.init();
+            return null;
+        });
+        return result;
+    }
+
+    /** Return the repository in the current directory, upgrading it first
+     *  if it was made by an older version. */
+    public static Repository open() {
+        if (!DIR.exists()) {
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+        synchronized (Repository.class) {
+            refresh();
+            ObjectStore.local().migrate();
+            Gitlet.migrate(DIR);
+            _stamp = stamp();
+        }
+        return new Repository();
+    }
+
+    /** Stage the current contents of FILE. */
+    public void add(String file) {
+        update(gitlet -> {
+            gitlet.add(file);
+            return null;
+        });
+    }
+
+    /** Commit the staged changes with MESSAGE and return the new commit's
+     *  id. */
+    public String commit(String message) {
+        return update(gitlet -> gitlet.commit(message));
+    }
+
+    /** Unstage FILE, and stage its removal if it is tracked. */
+    public void rm(String file) {
+        update(gitlet -> {
+            gitlet.rm(file);
+            return null;
+        });
+    }
+
+    /** Return the commits from the head of the current branch back along
+     *  first parents. */
+    public List<Commit> log() {
+        return query(Gitlet::log);
+    }
+
+    /** Return all commits, in no particular order. */
+    public List<Commit> globalLog() {
+        return query(Gitlet::globalLog);
+    }
+
+    /** Return the ids of the commits whose message is MESSAGE. */
+    public List<String> find(String message) {
+        return query(gitlet -> gitlet.find(message));
+    }
+
+    /** Return the status of the repository. */
+    public Status status() {
+        return query(Gitlet::status);
+    }
+
+    /** Pass OUT the lines printed by status --porcelain, each as soon as
+     *  its path has been examined. */
+    public void statusPorcelain(Consumer<String> out) {
+        query(gitlet -> {
+            gitlet.statusPorcelain(out);
+            return null;
+        });
+    }
+
+    /** Restore FILE as of the head commit. */
+    public void checkoutFile(String file) {
+        checkoutFile(null, file);
+    }
+
+    /** Restore FILE as of the commit whose id starts with COMMITID. */
+    public void checkoutFile(String commitID, String file) {
+        update(gitlet -> {
+            gitlet.checkoutFile(commitID, file);
+            return null;
+        });
+    }
+
+    /** Make BRANCH current, checking out its head commit. */
+    public void checkoutBranch(String branch) {
+        update(gitlet -> {
+            gitlet.checkoutBranch(branch);
+            return null;
+        });
+    }
+
+    /** Create BRANCH at the head commit. */
+    public void branch(String branch) {
+        update(gitlet -> {
+            gitlet.branch(branch);
+            return null;
+        });
+    }
+
+    /** Remove BRANCH. */
+    public void rmBranch(String branch) {
+        update(gitlet -> {
+            gitlet.rmBranch(branch);
+            return null;
+        });
+    }
+
+    /** Check out the commit whose id starts with COMMITID and make it the
+     *  head of the current branch. */
+    public void reset(String commitID) {
+        update(gitlet -> {
+            gitlet.reset(commitID);
+            return null;
+        });
+    }
+
+    /** Merge BRANCH into the current branch, returning true iff the merge
+     *  left conflicts in the working tree. */
+    public boolean merge(String branch) {
+        return update(gitlet -> gitlet.merge(branch));
+    }
+
+    /** Return the id of the best common ancestor of FIRST and SECOND,
+     *  each a branch or commit id, or null if they have none. */
+    public String mergeBase(String first, String second) {
+        return query(gitlet -> gitlet.mergeBase(first, second));
+    }
+
+    /** Add the remote NAME, whose .gitlet directory is at PATH. */
+    public void addRemote(String name, String path) {
+        update(gitlet -> {
+            gitlet.addRemote(name, path);
+            return null;
+        });
+    }
+
+    /** Remove the remote NAME. */
+    public void rmRemote(String name) {
+        update(gitlet -> {
+            gitlet.rmRemote(name);
+            return null;
+        });
+    }
+
+    /** Push the current branch to BRANCH of the remote NAME. */
+    public void push(String name, String branch) {
+        update(gitlet -> {
+            gitlet.push(name, branch);
+            return null;
+        });
+    }
+
+    /** Fetch BRANCH of the remote NAME into the branch NAME/BRANCH. */
+    public void fetch(String name, String branch) {
+        update(gitlet -> {
+            gitlet.fetch(name, branch);
+            return null;
+        });
+    }
+
+    /** Fetch BRANCH of the remote NAME and merge it into the current
+     *  branch, returning true iff the merge left conflicts. */
+    public boolean pull(String name, String branch) {
+        return update(gitlet -> gitlet.pull(name, branch));
+    }
+
+    /** Remove the objects that no branch or staged file refers to and
+     *  that were not written within the last GRACE milliseconds, and
+     *  return what was removed. */
+    public GcResult gc(long grace) {
+        return update(gitlet -> gitlet.gc(grace));
+    }
+
+    /** Remove the objects that no branch or staged file refers to and
+     *  that are older than two weeks, and return what was removed. */
+    public GcResult gc() {
+        return gc(GarbageCollector.GRACE);
+    }
+
+    /** Start keeping reachability bitmaps, writing them for every branch
+     *  anew. */
+    public void writeBitmaps() {
+        update(gitlet -> {
+            gitlet.writeBitmaps();
+            return null;
+        });
+    }
+
+    /** Store objects in segment files from now on, moving the loose
+     *  objects into them. */
+    public void useSegments() {
+        update(gitlet -> {
+            gitlet.useSegments();
+            return null;
+        });
+    }
+
+    /** Return the result of COMMAND, which only reads the repository. */
+    private <T> T query(Function<Gitlet, T> command) {
+        return run(command, false);
+    }
+
+    /** Return the result of COMMAND, which may change the repository. */
+    private <T> T update(Function<Gitlet, T> command) {
+        return run(command, true);
+    }
+
+    /** Run COMMAND and save the repository, returning its result.  The
+     *  stat cache is saved after queries too, when they hashed files, so
+     *  that later commands need not hash them again.  If COMMAND fails,
+     *  discard what it changed in memory instead.  Compact the store later
+     *  if COMMAND is an UPDATE that wants it. */
+    private static synchronized <T> T run(Function<Gitlet, T> command,
+                                          boolean update) {
+        refresh();
+        try {
+            Gitlet gitlet = new Gitlet();
+            T result = command.apply(gitlet);
+            gitlet.save();
+            StatCache.saveLocal();
+            if (update) {
+                compactLater();
+            }
+            return result;
+        } catch (RuntimeException excp) {
+            discard();
+            throw excp;
+        } finally {
+            _stamp = stamp();
+        }
+    }
+
+    /** If the object store wants compacting, compact it in a thread of
+     *  its own, between later commands. */
+    private static void compactLater() {
+        ObjectStore store = ObjectStore.local();
+        if (_compacting || !store.wantsCompaction()) {
+            return;
+        }
+        _compacting = true;
+        new Thread(() -> {
+            synchronized (Repository.class) {
+                try {
+                    store.compact();
+                } catch (RuntimeException excp) {
+                    /* The store is as it was; the next command retries. */
+                } finally {
+                    _compacting = false;
+                }
+            }
+        }, "gitlet-compact").start();
+    }
+
+    /** Discard state cached by an earlier command that is out of date,
+     *  along with the listing of the working tree. */
+    private static void refresh() {
+        WorkingTree.discardLocal();
+        if (_stamp == null || !Arrays.equals(_stamp, stamp())) {
+            discard();
+        }
+    }
+
+    /** Discard all state cached between commands, as after a command
+     *  that failed and so, run on its own, would have saved nothing. */
+    private static void discard() {
+        ObjectStore.discardLocal();
+        CommitGraph.discardLocal();
+        StatCache.discardLocal();
+    }
+
+    /** Return the modification times and sizes of the watched files. */
+    private static long[] stamp() {
+        long[] result = new long[2 * WATCHED.length];
+        for (int i = 0; i < WATCHED.length; i += 1) {
+            try {
+                result[2 * i] = Files.getLastModifiedTime(
+                    WATCHED[i].toPath()).to(TimeUnit.NANOSECONDS);
+                result[2 * i + 1] = WATCHED[i].length();
+            } catch (IOException excp) {
+                result[2 * i] = -1;
+            }
+        }
+        return result;
+    }
+}
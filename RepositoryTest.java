@@ -0,0 +1,118 @@
+package gitlet;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Repository.  Repository works on the current directory, so
+ *  all but the first test run gitlet, or Embedder, in a scratch
+ *  directory.
+ *  @author Srikar Hanumanula
+ */
+public class RepositoryTest {
+
+    /** Scratch directory. */
+    private StoreFixture _fixture;
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    @Test
+    public void openingOutsideARepositoryThrows() {
+        assertFalse(new File(Gitlet.GITLET_DIR).exists());
+        try {
+            Repository.open();
+            fail("opened a repository that does not exist");
+        } catch (GitletException excp) {
+            assertEquals("Not in an initialized Gitlet directory.",
+                         excp.getMessage());
+        }
+    }
+
+    @Test
+    public void failedCommandsThrowAndLaterCommandsRun() {
+        assertEquals(String.join("\n",
+                                 "No reason to remove the file.",
+                                 "No changes added to the commit.",
+                                 "No such branch exists.",
+                                 "A Gitlet version-control system already "
+                                 + "exists in the current directory.",
+                                 "Please enter a commit message.",
+                                 "true",
+                                 "[a.txt]",
+                                 "[]",
+                                 ""),
+                     _fixture.run("gitlet.RepositoryTest$Embedder"));
+    }
+
+    @Test
+    public void branchesAreKeptUnderTheirDirectory() {
+        _fixture.gitlet("init");
+        for (String name : new String[] {"../x", "a/../../x", "/x", "x/",
+                                         "a//b", "x.tmp", "."}) {
+            assertEquals("Invalid branch name.\n",
+                         _fixture.gitlet("branch", name));
+        }
+        assertFalse(Utils.join(_fixture.gitletDir(), "refs", "x").exists());
+        assertFalse(Utils.join(_fixture.gitletDir(), "x").exists());
+        assertEquals("", _fixture.gitlet("branch", "topic/x"));
+        assertTrue(_fixture.gitlet("status").contains("\ntopic/x\n"));
+    }
+
+    @Test
+    public void branchNamesCannotExtendOneAnother() {
+        _fixture.gitlet("init");
+        String refused = "A branch name cannot extend another's.\n";
+        assertEquals("", _fixture.gitlet("branch", "zz"));
+        assertEquals(refused, _fixture.gitlet("branch", "zz/b"));
+        assertEquals("", _fixture.gitlet("branch", "yy/b"));
+        assertEquals(refused, _fixture.gitlet("branch", "yy"));
+        assertEquals("", _fixture.gitlet("rm-branch", "yy/b"));
+        assertEquals("", _fixture.gitlet("branch", "yy"));
+        assertEquals("", _fixture.gitlet("rm-branch", "zz"));
+        assertEquals("", _fixture.gitlet("branch", "zz/b"));
+    }
+
+    /** A program using gitlet within its own process. */
+    static class Embedder {
+        /** Run commands on a new repository in the current directory,
+         *  printing the messages of those that fail and the results of
+         *  those that succeed.  ARGS is ignored. */
+        public static void main(String... args) {
+            Repository repo = Repository.init();
+            Utils.writeContents(new File("a.txt"), "a\n");
+            List<Runnable> commands = List.of(
+                () -> repo.rm("absent"),
+                () -> repo.commit("message"),
+                () -> repo.checkoutBranch("absent"),
+                () -> Repository.init(),
+                () -> repo.add("a.txt"),
+                () -> repo.commit(""));
+            for (Runnable command : commands) {
+                try {
+                    command.run();
+                } catch (GitletException excp) {
+                    System.out.println(excp.getMessage());
+                }
+            }
+            String id = Repository.open().commit("add a");
+            System.out.println(repo.log().get(0).getHash().equals(id));
+            System.out.println(repo.find("add a").size() == 1
+                               ? repo.log().get(0).getBlobs().keySet()
+                               : "not found");
+            System.out.println(repo.status().getStaged());
+        }
+    }
+
+}
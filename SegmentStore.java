@@ -0,0 +1,597 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/** The objects of a repository that use-segments has switched to segment
+ *  storage, appended to a few large files under .gitlet/objects/segments
+ *  rather than written to a file each.  The directory holds
+ *
+ *      seg-N       segment N: contents of objects back to back, as they
+ *                  are, a new segment being started once one is full
+ *      index       a record per object, sorted by id then namespace
+ *      journal     a record per object appended since the index was
+ *                  last rebuilt, in the order they were appended
+ *
+ *  each record being a 20-byte raw id, a byte giving the namespace, an
+ *  int segment number, a long offset of contents and an int length, so
+ *  objects of 2 GiB or more cannot be stored in segments.  The
+ *  index is memory-mapped and binary-searched, so opening the store reads
+ *  only the journal.  Compaction merges the journal into a new index,
+ *  which replaces the old one atomically.
+ *
+ *  Unlike loose objects, contents in segments are not deflated: they are
+ *  read at an offset without inflating, and copied into packs, which are
+ *  not deflated either, straight from the segment file.  Repositories
+ *  that switch to segments trade disk space for that speed.
+ *
+ *  Appends hold a lock on the journal, released when it is closed, so
+ *  processes sharing the store append one at a time.  An object's
+ *  contents are written before its journal record, so a record never
+ *  refers to contents that are not all there; contents left without a
+ *  record by an interrupted append are never read.  A store that misses
+ *  an object rereads the journal, and the index if it has been replaced,
+ *  before concluding that the object is absent.
+ *  @author Srikar Hanumanula
+ */
+class SegmentStore {
+    /** Name of the directory holding segments within the object store. */
+    static final String DIR = "segments";
+    /** Number of journal records beyond which the store wants
+     *  compacting. */
+    static final int COMPACT_AFTER = 1024;
+    /** Prefix of segment file names. */
+    private static final String PREFIX = "seg-";
+    /** Size beyond which no more objects are appended to a segment. */
+    private static final long SEGMENT_SIZE = 256L << 20;
+    /** Length of a raw id. */
+    private static final int ID_BYTES = Utils.UID_LENGTH / 2;
+    /** Length of the key of a record: raw id and namespace. */
+    private static final int KEY = ID_BYTES + 1;
+    /** Length of a record. */
+    private static final int RECORD = KEY + 4 + 8 + 4;
+    /** Namespaces, numbered by their position. */
+    private static final List<String> KINDS = List.of(
+        ObjectStore.COMMITS, ObjectStore.TREES, ObjectStore.BLOBS,
+        ObjectStore.DELTAS);
+    /** Monitors serializing this process's appends to each directory, as
+     *  a process may not hold two locks on one file. */
+    private static final Map<File, Object> LOCKS = new ConcurrentHashMap<>();
+
+    /** The directory of the store. */
+    private final File _dir;
+    /** The index file. */
+    private final File _indexFile;
+    /** The journal file. */
+    private final File _journalFile;
+    /** The mapped index, or null if there is none. */
+    private MappedByteBuffer _index;
+    /** Number of records in _index. */
+    private int _indexCount;
+    /** Identity of the index file that was mapped. */
+    private Object _indexKey;
+    /** Location of each object in the journal, by namespace followed by
+     *  id: segment number, offset and length. */
+    private final HashMap<String, long[]> _journal = new HashMap<>();
+    /** Number of journal bytes read. */
+    private long _journalRead;
+
+    /** The store in DIR. */
+    private SegmentStore(File dir) {
+        _dir = dir;
+        _indexFile = Utils.join(dir, "index");
+        _journalFile = Utils.join(dir, "journal");
+        refresh();
+    }
+
+    /** Return the segment store of the object store whose root is
+     *  OBJECTS, or null if it does not use segments. */
+    static SegmentStore open(File objects) {
+        File dir = Utils.join(objects, DIR);
+        return dir.isDirectory() ? new SegmentStore(dir) : null;
+    }
+
+    /** Return the segment store of the object store whose root is
+     *  OBJECTS, creating it if need be. */
+    static SegmentStore create(File objects) {
+        File dir = Utils.join(objects, DIR);
+        dir.mkdirs();
+        return new SegmentStore(dir);
+    }
+
+    /** Return true iff object ID of namespace KIND is present. */
+    boolean contains(String kind, String id) {
+        return locate(kind, id) != null;
+    }
+
+    /** Return the size of object ID of namespace KIND, or -1 if it is not
+     *  present. */
+    long size(String kind, String id) {
+        long[] loc = locate(kind, id);
+        return loc == null ? -1 : loc[2];
+    }
+
+    /** Return the contents of object ID of namespace KIND, or null if it
+     *  is not present. */
+    byte[] read(String kind, String id) {
+        long[] loc = locate(kind, id);
+        if (loc == null) {
+            return null;
+        }
+        try (FileChannel in = FileChannel.open(segment((int) loc[0]).toPath(),
+                                               StandardOpenOption.READ)) {
+            ByteBuffer result = ByteBuffer.allocate((int) loc[2]);
+            while (result.hasRemaining()) {
+                if (in.read(result, loc[1] + result.position()) < 0) {
+                    throw new IOException("unexpected end of segment");
+                }
+            }
+            return result.array();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write the contents of object ID of namespace KIND to OUT straight
+     *  from its segment, and return their length, or return -1 if it is
+     *  not present. */
+    long transferTo(String kind, String id, WritableByteChannel out) {
+        long[] loc = locate(kind, id);
+        if (loc == null) {
+            return -1;
+        }
+        try (FileChannel in = FileChannel.open(segment((int) loc[0]).toPath(),
+                                               StandardOpenOption.READ)) {
+            Pack.transfer(in, loc[1], loc[2], out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return loc[2];
+    }
+
+    /** Return the first id of namespace KIND that starts with PREFIX, or
+     *  null. */
+    synchronized String resolve(String kind, String prefix) {
+        refresh();
+        for (String key : _journal.keySet()) {
+            if (key.startsWith(kind)
+                && key.startsWith(prefix, kind.length())) {
+                return key.substring(kind.length());
+            }
+        }
+        int lo = 0, hi = _indexCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (id(mid).compareTo(prefix) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int k = KINDS.indexOf(kind);
+        for (; lo < _indexCount && id(lo).startsWith(prefix); lo += 1) {
+            if (_index.get(lo * RECORD + ID_BYTES) == k) {
+                return id(lo);
+            }
+        }
+        return null;
+    }
+
+    /** Return the ids of all objects of namespace KIND. */
+    synchronized List<String> ids(String kind) {
+        refresh();
+        ArrayList<String> result = new ArrayList<>();
+        int k = KINDS.indexOf(kind);
+        for (int i = 0; i < _indexCount; i += 1) {
+            if (_index.get(i * RECORD + ID_BYTES) == k) {
+                result.add(id(i));
+            }
+        }
+        for (String key : _journal.keySet()) {
+            if (key.startsWith(kind)) {
+                result.add(key.substring(kind.length()));
+            }
+        }
+        return result;
+    }
+
+    /** Return true iff so many objects have been appended since the index
+     *  was rebuilt that it should be rebuilt again. */
+    synchronized boolean wantsCompaction() {
+        return _journal.size() >= COMPACT_AFTER;
+    }
+
+    /** Append the SIZE bytes of IN as object ID of namespace KIND, unless
+     *  it is present, and return ID.  If ID is null, the object's id is
+     *  the SHA-1 hash of its contents, computed as they are appended. */
+    String append(String kind, String id, InputStream in, long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                "object is too large to store in a segment");
+        }
+        synchronized (lock()) {
+            try (FileChannel journal = openJournal()) {
+                journal.lock();
+                return append(journal, kind, id, in, size);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /** Append the SIZE bytes of IN as object ID of namespace KIND, unless
+     *  it is present, recording it in JOURNAL, which is locked, and return
+     *  its id, which is computed from the contents if ID is null. */
+    private synchronized String append(FileChannel journal, String kind,
+                                       String id, InputStream in, long size)
+        throws IOException {
+        refresh();
+        if (id != null && find(kind, id) != null) {
+            return id;
+        }
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+        int number = last();
+        if (number < 0 || segment(number).length() >= SEGMENT_SIZE) {
+            number += 1;
+        }
+        try (FileChannel out = FileChannel.open(segment(number).toPath(),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long offset = out.size();
+            out.position(offset);
+            long copied = new DigestInputStream(in, md)
+                .transferTo(Channels.newOutputStream(out));
+            String hash = CommitGraph.toHex(md.digest());
+            if (id == null) {
+                id = hash;
+                if (find(kind, id) != null) {
+                    out.truncate(offset);
+                    return id;
+                }
+            }
+            if (copied != size) {
+                out.truncate(offset);
+                throw new IOException("contents changed while being stored");
+            }
+            long[] loc = {number, offset, size};
+            ByteBuffer record = record(kind, id, loc);
+            long position = journal.size();
+            while (record.hasRemaining()) {
+                position += journal.write(record, position);
+            }
+            _journal.put(kind + id, loc);
+            _journalRead = position;
+            return id;
+        }
+    }
+
+    /** Merge the journal into a new index. */
+    void compact() {
+        rewrite(key -> true, Long.MIN_VALUE);
+    }
+
+    /** Drop every object whose namespace followed by its id is not
+     *  accepted by KEEP from the segments last appended to before CUTOFF,
+     *  in ms since the epoch, copying the objects they keep into new
+     *  segments, and merge the journal into a new index.  Return the
+     *  number of objects dropped and the number of bytes freed. */
+    long[] rewrite(Predicate<String> keep, long cutoff) {
+        synchronized (lock()) {
+            try (FileChannel journal = openJournal()) {
+                journal.lock();
+                return rewrite(journal, keep, cutoff);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /** Perform rewrite(KEEP, CUTOFF) holding the lock on JOURNAL. */
+    private synchronized long[] rewrite(FileChannel journal,
+                                        Predicate<String> keep, long cutoff)
+        throws IOException {
+        refresh();
+        TreeMap<String, long[]> all = new TreeMap<>(_journal);
+        for (int i = 0; i < _indexCount; i += 1) {
+            all.put(KINDS.get(_index.get(i * RECORD + ID_BYTES)) + id(i),
+                    location(i));
+        }
+        HashMap<Integer, Boolean> old = new HashMap<>();
+        HashSet<Integer> stale = new HashSet<>();
+        for (Map.Entry<String, long[]> e : all.entrySet()) {
+            int number = (int) e.getValue()[0];
+            if (old.computeIfAbsent(number,
+                    n -> segment(n).lastModified() < cutoff)
+                && !keep.test(e.getKey())) {
+                stale.add(number);
+            }
+        }
+        long[] result = new long[2];
+        int number = last() + 1;
+        FileChannel out = null;
+        try {
+            for (Map.Entry<String, long[]> e : all.entrySet()) {
+                long[] loc = e.getValue();
+                if (!stale.contains((int) loc[0])) {
+                    continue;
+                }
+                if (!keep.test(e.getKey())) {
+                    result[0] += 1;
+                    e.setValue(null);
+                    continue;
+                }
+                if (out == null || out.size() >= SEGMENT_SIZE) {
+                    if (out != null) {
+                        out.close();
+                        number += 1;
+                    }
+                    out = FileChannel.open(segment(number).toPath(),
+                        StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE);
+                }
+                long offset = out.size();
+                try (FileChannel in = FileChannel.open(
+                         segment((int) loc[0]).toPath(),
+                         StandardOpenOption.READ)) {
+                    out.position(offset);
+                    Pack.transfer(in, loc[1], loc[2], out);
+                }
+                e.setValue(new long[] {number, offset, loc[2]});
+                result[1] -= loc[2];
+            }
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+        all.values().removeIf(Objects::isNull);
+        writeIndex(all);
+        journal.truncate(0);
+        for (int dropped : stale) {
+            long length = segment(dropped).length();
+            if (segment(dropped).delete()) {
+                result[1] += length;
+            }
+        }
+        _indexKey = null;
+        refresh();
+        return result;
+    }
+
+    /** Replace the index by one holding the objects in ALL, each keyed by
+     *  its namespace followed by its id and mapped to its location. */
+    private void writeIndex(Map<String, long[]> all) throws IOException {
+        ArrayList<byte[]> records = new ArrayList<>();
+        for (Map.Entry<String, long[]> e : all.entrySet()) {
+            String key = e.getKey();
+            int split = key.length() - Utils.UID_LENGTH;
+            records.add(record(key.substring(0, split),
+                               key.substring(split), e.getValue()).array());
+        }
+        records.sort((x, y) -> Arrays.compareUnsigned(x, 0, KEY, y, 0, KEY));
+        File temp = File.createTempFile("tmp-", ".idx", _dir);
+        try (FileChannel out = FileChannel.open(temp.toPath(),
+                                                StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate(records.size() * RECORD);
+            for (byte[] record : records) {
+                buf.put(record);
+            }
+            buf.flip();
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+        } catch (IOException excp) {
+            temp.delete();
+            throw excp;
+        }
+        Files.move(temp.toPath(), _indexFile.toPath(),
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Return the location of object ID of namespace KIND, rereading the
+     *  journal and index if it is not found at first, or null. */
+    private synchronized long[] locate(String kind, String id) {
+        long[] loc = find(kind, id);
+        if (loc == null) {
+            refresh();
+            loc = find(kind, id);
+        }
+        return loc;
+    }
+
+    /** Return the location of object ID of namespace KIND as last read, or
+     *  null. */
+    private long[] find(String kind, String id) {
+        long[] loc = _journal.get(kind + id);
+        if (loc != null || _index == null) {
+            return loc;
+        }
+        byte[] key = Arrays.copyOf(CommitGraph.toBytes(id), KEY);
+        key[ID_BYTES] = (byte) KINDS.indexOf(kind);
+        int lo = 0, hi = _indexCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compare(mid, key);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return location(mid);
+            }
+        }
+        return null;
+    }
+
+    /** Compare the key of index record K with KEY. */
+    private int compare(int k, byte[] key) {
+        int base = k * RECORD;
+        for (int i = 0; i < KEY; i += 1) {
+            int c = Integer.compare(_index.get(base + i) & 0xff,
+                                    key[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** Return the id of index record K. */
+    private String id(int k) {
+        byte[] raw = new byte[ID_BYTES];
+        _index.get(k * RECORD, raw);
+        return CommitGraph.toHex(raw);
+    }
+
+    /** Return the location of index record K. */
+    private long[] location(int k) {
+        int base = k * RECORD + KEY;
+        return new long[] {
+            _index.getInt(base), _index.getLong(base + 4),
+            _index.getInt(base + 12),
+        };
+    }
+
+    /** Return the record of object ID of namespace KIND at LOC. */
+    private static ByteBuffer record(String kind, String id, long[] loc) {
+        ByteBuffer result = ByteBuffer.allocate(RECORD);
+        result.put(CommitGraph.toBytes(id));
+        result.put((byte) KINDS.indexOf(kind));
+        result.putInt((int) loc[0]);
+        result.putLong(loc[1]);
+        result.putInt((int) loc[2]);
+        result.flip();
+        return result;
+    }
+
+    /** Map the index anew if it has been replaced, and read the journal
+     *  records appended since it was last read. */
+    private synchronized void refresh() {
+        Object key = fileKey(_indexFile);
+        if (_indexKey == null || !_indexKey.equals(key)
+            || _journalFile.length() < _journalRead) {
+            mapIndex();
+            _indexKey = key;
+            _journal.clear();
+            _journalRead = 0;
+        }
+        if (_journalFile.length() < _journalRead + RECORD) {
+            return;
+        }
+        try (FileChannel in = FileChannel.open(_journalFile.toPath(),
+                                               StandardOpenOption.READ)) {
+            long count = (in.size() - _journalRead) / RECORD;
+            ByteBuffer buf = ByteBuffer.allocate((int) count * RECORD);
+            while (buf.hasRemaining()) {
+                if (in.read(buf, _journalRead + buf.position()) < 0) {
+                    break;
+                }
+            }
+            buf.flip();
+            byte[] raw = new byte[ID_BYTES];
+            while (buf.remaining() >= RECORD) {
+                buf.get(raw);
+                String kind = KINDS.get(buf.get());
+                long[] loc = {buf.getInt(), buf.getLong(), buf.getInt()};
+                _journal.put(kind + CommitGraph.toHex(raw), loc);
+                _journalRead += RECORD;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Map the index file, if there is one. */
+    private void mapIndex() {
+        _index = null;
+        _indexCount = 0;
+        if (!_indexFile.isFile()) {
+            return;
+        }
+        try (FileChannel in = FileChannel.open(_indexFile.toPath(),
+                                               StandardOpenOption.READ)) {
+            _indexCount = (int) (in.size() / RECORD);
+            _index = in.map(FileChannel.MapMode.READ_ONLY, 0,
+                            (long) _indexCount * RECORD);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the identity of FILE, which changes when it is replaced, or
+     *  a placeholder if it does not exist. */
+    private static Object fileKey(File file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file.toPath(),
+                BasicFileAttributes.class);
+            Object key = attrs.fileKey();
+            return key != null ? key : attrs.lastModifiedTime();
+        } catch (IOException excp) {
+            return "";
+        }
+    }
+
+    /** Open the journal, creating it if need be. */
+    private FileChannel openJournal() throws IOException {
+        return FileChannel.open(_journalFile.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    }
+
+    /** Return the monitor guarding this process's appends to this
+     *  store. */
+    private Object lock() {
+        return LOCKS.computeIfAbsent(_dir.getAbsoluteFile(), d -> d);
+    }
+
+    /** Return the file of segment NUMBER. */
+    private File segment(int number) {
+        return Utils.join(_dir, PREFIX + number);
+    }
+
+    /** Return the number of the last segment, or -1 if there is none. */
+    private int last() {
+        int result = -1;
+        List<String> names = Utils.plainFilenamesIn(_dir);
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(PREFIX)) {
+                    try {
+                        result = Math.max(result, Integer.parseInt(
+                            name.substring(PREFIX.length())));
+                    } catch (NumberFormatException excp) {
+                        /* Not a segment. */
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
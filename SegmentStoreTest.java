@@ -0,0 +1,215 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of SegmentStore.
+ *  @author Srikar Hanumanula
+ */
+public class SegmentStoreTest {
+
+    /** Scratch directory. */
+    private StoreFixture _fixture;
+    /** Object directory of the segments: the scratch directory. */
+    private File _dir;
+    /** The segments under _dir. */
+    private SegmentStore _segments;
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _dir = _fixture.dir();
+        _segments = SegmentStore.create(_dir);
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    /** Return TEXT as bytes. */
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Append TEXT to STORE as a blob whose id is computed from it, and
+     *  return its id. */
+    private static String append(SegmentStore store, String text) {
+        byte[] contents = bytes(text);
+        return store.append(ObjectStore.BLOBS, null,
+                            new ByteArrayInputStream(contents),
+                            contents.length);
+    }
+
+    /** Return a file of the segment directory named NAME. */
+    private File file(String name) {
+        return Utils.join(_dir, SegmentStore.DIR, name);
+    }
+
+    /** Return the ids of COUNT blobs appended to _segments. */
+    private List<String> appendMany(int count) {
+        ArrayList<String> result = new ArrayList<>();
+        for (int i = 0; i < count; i += 1) {
+            result.add(append(_segments, "object " + i + "\n"));
+        }
+        return result;
+    }
+
+    /** Check that STORE holds the blobs IDS appended by appendMany. */
+    private static void checkMany(SegmentStore store, List<String> ids) {
+        for (int i = 0; i < ids.size(); i += 1) {
+            assertArrayEquals(bytes("object " + i + "\n"),
+                              store.read(ObjectStore.BLOBS, ids.get(i)));
+        }
+        assertEquals(new HashSet<>(ids),
+                     new HashSet<>(store.ids(ObjectStore.BLOBS)));
+    }
+
+    @Test
+    public void appendedObjectsAreRead() {
+        String id = append(_segments, "hello\n");
+        assertEquals(Utils.sha1(bytes("hello\n")), id);
+        assertTrue(_segments.contains(ObjectStore.BLOBS, id));
+        assertFalse(_segments.contains(ObjectStore.TREES, id));
+        assertEquals(6, _segments.size(ObjectStore.BLOBS, id));
+        assertArrayEquals(bytes("hello\n"),
+                          _segments.read(ObjectStore.BLOBS, id));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(6, _segments.transferTo(ObjectStore.BLOBS, id,
+                                             Channels.newChannel(out)));
+        assertArrayEquals(bytes("hello\n"), out.toByteArray());
+        assertNull(_segments.read(ObjectStore.BLOBS, Utils.sha1("absent")));
+        assertEquals(-1, _segments.size(ObjectStore.BLOBS,
+                                        Utils.sha1("absent")));
+    }
+
+    @Test
+    public void objectsAreAppendedOnce() {
+        String id = append(_segments, "hello\n");
+        long length = file("seg-0").length();
+        assertEquals(id, append(_segments, "hello\n"));
+        assertEquals(id, _segments.append(ObjectStore.BLOBS, id,
+                                          new ByteArrayInputStream(
+                                              bytes("hello\n")), 6));
+        assertEquals(length, file("seg-0").length());
+        assertEquals(1, _segments.ids(ObjectStore.BLOBS).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void objectsTooLargeForARecordAreRejected() {
+        try {
+            _segments.append(ObjectStore.BLOBS, null,
+                             new ByteArrayInputStream(bytes("hello\n")),
+                             Integer.MAX_VALUE + 1L);
+        } finally {
+            assertFalse(file("seg-0").exists());
+        }
+    }
+
+    @Test
+    public void otherStoresSeeAppends() {
+        SegmentStore other = SegmentStore.open(_dir);
+        List<String> ids = appendMany(10);
+        checkMany(other, ids);
+        _segments.compact();
+        List<String> more = appendMany(15);
+        checkMany(other, more);
+    }
+
+    @Test
+    public void compactionMergesTheJournalIntoTheIndex() {
+        List<String> ids = appendMany(100);
+        assertTrue(file("journal").length() > 0);
+        assertFalse(_segments.wantsCompaction());
+        _segments.compact();
+        assertEquals(0, file("journal").length());
+        assertTrue(file("index").length() > 0);
+        checkMany(SegmentStore.open(_dir), ids);
+        assertEquals(ids.get(42), _segments.resolve(ObjectStore.BLOBS,
+                                                    ids.get(42)
+                                                    .substring(0, 10)));
+        String late = append(_segments, "late\n");
+        SegmentStore reopened = SegmentStore.open(_dir);
+        assertTrue(reopened.contains(ObjectStore.BLOBS, late));
+        assertTrue(reopened.contains(ObjectStore.BLOBS, ids.get(0)));
+        assertEquals(late, reopened.resolve(ObjectStore.BLOBS,
+                                            late.substring(0, 10)));
+    }
+
+    @Test
+    public void manyAppendsWantCompaction() {
+        appendMany(SegmentStore.COMPACT_AFTER);
+        assertTrue(_segments.wantsCompaction());
+        _segments.compact();
+        assertFalse(_segments.wantsCompaction());
+    }
+
+    @Test
+    public void rewritingDropsObjectsNotKept() {
+        List<String> ids = appendMany(20);
+        HashSet<String> keep = new HashSet<>();
+        for (int i = 0; i < ids.size(); i += 2) {
+            keep.add(ObjectStore.BLOBS + ids.get(i));
+        }
+        long[] freed = _segments.rewrite(keep::contains, Long.MAX_VALUE);
+        assertEquals(10, freed[0]);
+        assertTrue(freed[1] > 0);
+        assertFalse(file("seg-0").exists());
+        SegmentStore reopened = SegmentStore.open(_dir);
+        for (int i = 0; i < ids.size(); i += 1) {
+            assertEquals(i % 2 == 0,
+                         reopened.contains(ObjectStore.BLOBS, ids.get(i)));
+        }
+        assertArrayEquals(bytes("object 4\n"),
+                          reopened.read(ObjectStore.BLOBS, ids.get(4)));
+    }
+
+    @Test
+    public void recentSegmentsAreNotRewritten() {
+        List<String> ids = appendMany(4);
+        long[] freed = _segments.rewrite(key -> false, Long.MIN_VALUE);
+        assertEquals(0, freed[0]);
+        checkMany(_segments, ids);
+    }
+
+    @Test
+    public void objectStoresMoveLooseObjectsIntoSegments() {
+        StoreFixture repo = new StoreFixture();
+        try {
+            checkLooseObjectsMove(repo);
+        } finally {
+            repo.delete();
+        }
+    }
+
+    /** Check that the loose objects of REPO move into segments once its
+     *  store uses them. */
+    private static void checkLooseObjectsMove(StoreFixture repo) {
+        ObjectStore store = repo.store();
+        byte[] contents = bytes("loose\n");
+        String id = repo.blob("loose\n");
+        assertTrue(store.file(ObjectStore.BLOBS, id).isFile());
+        store.useSegments();
+        assertFalse(store.file(ObjectStore.BLOBS, id).exists());
+        assertArrayEquals(contents, store.read(ObjectStore.BLOBS, id));
+        byte[] more = bytes("appended\n");
+        String next = Utils.sha1(more);
+        store.write(ObjectStore.BLOBS, next, more);
+        assertFalse(store.file(ObjectStore.BLOBS, next).exists());
+        assertArrayEquals(more,
+                          new ObjectStore(repo.gitletDir())
+                          .read(ObjectStore.BLOBS, next));
+    }
+
+}
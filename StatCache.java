@@ -0,0 +1,252 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/** A cache, kept in .gitlet/index, of the blob hash of each working file
+ *  that gitlet has hashed or written, together with the size,
+ *  modification time and file key (inode) the file had at the time.  A
+ *  file whose stat data still match its entry has that hash and need not
+ *  be read again.  The file holds
+ *
+ *      int     MAGIC
+ *      int     VERSION
+ *      long    time the index was written, in ns since the epoch
+ *      int     number of entries
+ *      entries, each: UTF path, long size, long mtime (ns),
+ *              UTF file key, 20-byte raw blob id
+ *
+ *  An entry whose file was modified shortly before the index was written
+ *  is not trusted, since a later change within the timestamp granularity
+ *  of the file system would leave its stat data unchanged.
+ *  @author Srikar Hanumanula
+ */
+class StatCache {
+    /** Name of the index file within a .gitlet directory. */
+    static final String FILE_NAME = "index";
+    /** File signature, "GIDX". */
+    private static final int MAGIC = 0x47494458;
+    /** Format version. */
+    private static final int VERSION = 1;
+    /** Entries modified less than this long before the index was written
+     *  are re-hashed, in ns. */
+    private static final long RACY_NS = TimeUnit.SECONDS.toNanos(2);
+
+    /** Index of the repository in the current directory. */
+    private static StatCache _local;
+
+    /** The index file. */
+    private final File _file;
+    /** Entries by path, which threads may look up and update at once. */
+    private final ConcurrentSkipListMap<String, Entry> _entries =
+        new ConcurrentSkipListMap<>();
+    /** Time at which the index was last written, in ns. */
+    private long _writtenAt;
+    /** True iff entries changed since the index was read. */
+    private volatile boolean _dirty;
+
+    /** The stat cache stored in FILE. */
+    StatCache(File file) {
+        _file = file;
+        if (file.isFile()) {
+            load();
+        }
+    }
+
+    /** Return the stat cache of the repository in the current directory. */
+    static StatCache local() {
+        if (_local == null) {
+            _local = new StatCache(
+                Utils.join(Gitlet.GITLET_DIR, FILE_NAME));
+        }
+        return _local;
+    }
+
+    /** Forget the stat cache of the repository in the current directory, so
+     *  that local reads it afresh. */
+    static void discardLocal() {
+        _local = null;
+    }
+
+    /** Write out the stat cache of the current repository if it was used
+     *  and changed. */
+    static void saveLocal() {
+        if (_local != null) {
+            _local.save();
+        }
+    }
+
+    /** Return the blob hash of the working file PATH, reading it only if
+     *  its stat data changed since it was last hashed, or null if there is
+     *  no such file. */
+    String hash(String path) {
+        File file = new File(path);
+        BasicFileAttributes attrs = stat(file);
+        if (attrs == null || !attrs.isRegularFile()) {
+            return null;
+        }
+        String hash = cached(path, attrs);
+        if (hash != null) {
+            return hash;
+        }
+        hash = Utils.sha1(file);
+        _entries.put(path, new Entry(attrs, hash));
+        _dirty = true;
+        return hash;
+    }
+
+    /** Return the blob hash of the working file PATH, whose attributes are
+     *  ATTRS, if its entry shows it unchanged since it was last hashed, and
+     *  otherwise null. */
+    String cached(String path, BasicFileAttributes attrs) {
+        Entry e = _entries.get(path);
+        if (e != null && e.matches(attrs)
+            && e._mtime + RACY_NS < _writtenAt) {
+            return e._hash;
+        }
+        return null;
+    }
+
+    /** Record that the working file PATH now holds blob HASH, as after
+     *  gitlet has written it. */
+    void record(String path, String hash) {
+        BasicFileAttributes attrs = stat(new File(path));
+        if (attrs != null) {
+            _entries.put(path, new Entry(attrs, hash));
+            _dirty = true;
+        }
+    }
+
+    /** Forget the working file PATH. */
+    void remove(String path) {
+        if (_entries.remove(path) != null) {
+            _dirty = true;
+        }
+    }
+
+    /** Return the attributes of FILE, or null if it does not exist. */
+    static BasicFileAttributes stat(File file) {
+        try {
+            return Files.readAttributes(file.toPath(),
+                                        BasicFileAttributes.class);
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Read the index file. */
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                 Files.newInputStream(_file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            _writtenAt = in.readLong();
+            int count = in.readInt();
+            byte[] raw = new byte[Utils.UID_LENGTH / 2];
+            for (int i = 0; i < count; i += 1) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long mtime = in.readLong();
+                String key = in.readUTF();
+                in.readFully(raw);
+                _entries.put(path, new Entry(size, mtime, key,
+                                             CommitGraph.toHex(raw)));
+            }
+        } catch (IOException excp) {
+            _entries.clear();
+            _writtenAt = 0;
+        }
+    }
+
+    /** Write the index file if it changed. */
+    void save() {
+        if (!_dirty) {
+            return;
+        }
+        File temp = new File(_file.getPath() + ".tmp");
+        long writtenAt = nanos(Instant.now());
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(
+                     Files.newOutputStream(temp.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(writtenAt);
+            out.writeInt(_entries.size());
+            for (String path : _entries.keySet()) {
+                Entry e = _entries.get(path);
+                out.writeUTF(path);
+                out.writeLong(e._size);
+                out.writeLong(e._mtime);
+                out.writeUTF(e._key);
+                out.write(CommitGraph.toBytes(e._hash));
+            }
+        } catch (IOException excp) {
+            temp.delete();
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), _file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            _writtenAt = writtenAt;
+            _dirty = false;
+        } catch (IOException excp) {
+            temp.delete();
+        }
+    }
+
+    /** Return T in ns since the epoch. */
+    private static long nanos(Instant t) {
+        return TimeUnit.SECONDS.toNanos(t.getEpochSecond()) + t.getNano();
+    }
+
+    /** Stat data and blob hash of one working file. */
+    private static class Entry {
+        /** Size in bytes. */
+        private final long _size;
+        /** Modification time in ns since the epoch. */
+        private final long _mtime;
+        /** File key (device and inode), or "" if unavailable. */
+        private final String _key;
+        /** Blob hash of the contents. */
+        private final String _hash;
+
+        /** An entry for a file with SIZE, MTIME, KEY, and HASH. */
+        Entry(long size, long mtime, String key, String hash) {
+            _size = size;
+            _mtime = mtime;
+            _key = key;
+            _hash = hash;
+        }
+
+        /** An entry for a file with attributes ATTRS and contents HASH. */
+        Entry(BasicFileAttributes attrs, String hash) {
+            this(attrs.size(), nanos(attrs.lastModifiedTime().toInstant()),
+                 keyOf(attrs), hash);
+        }
+
+        /** Return true iff ATTRS match this entry. */
+        boolean matches(BasicFileAttributes attrs) {
+            return attrs.size() == _size
+                && nanos(attrs.lastModifiedTime().toInstant()) == _mtime
+                && keyOf(attrs).equals(_key);
+        }
+
+        /** Return the file key of ATTRS as a string. */
+        private static String keyOf(BasicFileAttributes attrs) {
+            Object key = attrs.fileKey();
+            return key == null ? "" : key.toString();
+        }
+    }
+}
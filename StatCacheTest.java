@@ -0,0 +1,121 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of StatCache.
+ *  @author Srikar Hanumanula
+ */
+public class StatCacheTest {
+
+    /** Scratch directory. */
+    private StoreFixture _fixture;
+    /** The index file. */
+    private File _index;
+    /** A working file. */
+    private File _file;
+    /** Path of _file, as given to the cache. */
+    private String _path;
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _index = Utils.join(_fixture.dir(), StatCache.FILE_NAME);
+        _file = Utils.join(_fixture.dir(), "file.txt");
+        _path = _file.getPath();
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    /** Return the blob id of TEXT. */
+    private static String id(String text) {
+        return Utils.sha1(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Overwrite _file with TEXT and set its modification time to MILLIS
+     *  ms since the epoch. */
+    private void write(String text, long millis) throws IOException {
+        Files.writeString(_file.toPath(), text);
+        Files.setLastModifiedTime(_file.toPath(),
+                                  FileTime.fromMillis(millis));
+    }
+
+    /** Return the index as written by a cache that hashed _file. */
+    private StatCache hashedAndReread() {
+        StatCache cache = new StatCache(_index);
+        cache.hash(_path);
+        cache.save();
+        return new StatCache(_index);
+    }
+
+    /** Return a time T seconds from now, in ms since the epoch. */
+    private static long secondsFromNow(long t) {
+        return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(t);
+    }
+
+    @Test
+    public void unchangedFilesAreNotReread() throws IOException {
+        long old = secondsFromNow(-10);
+        write("one\n", old);
+        StatCache cache = hashedAndReread();
+        write("two\n", old);
+        assertEquals(id("one\n"), cache.hash(_path));
+    }
+
+    @Test
+    public void filesModifiedJustBeforeSavingAreRehashed()
+        throws IOException {
+        long recent = secondsFromNow(-1);
+        write("one\n", recent);
+        StatCache cache = hashedAndReread();
+        write("two\n", recent);
+        assertEquals(id("two\n"), cache.hash(_path));
+    }
+
+    @Test
+    public void changedStatDataInvalidateEntries() throws IOException {
+        long old = secondsFromNow(-10);
+        write("one\n", old);
+        StatCache cache = hashedAndReread();
+        write("three\n", old);
+        assertEquals(id("three\n"), cache.hash(_path));
+        cache = hashedAndReread();
+        write("four\n", old - 1000);
+        assertEquals(id("four\n"), cache.hash(_path));
+    }
+
+    @Test
+    public void recordedHashesAreUsed() throws IOException {
+        long old = secondsFromNow(-10);
+        write("one\n", old);
+        StatCache cache = new StatCache(_index);
+        cache.record(_path, id("recorded\n"));
+        cache.save();
+        assertEquals(id("recorded\n"), new StatCache(_index).hash(_path));
+        cache.remove(_path);
+        cache.save();
+        assertEquals(id("one\n"), new StatCache(_index).hash(_path));
+    }
+
+    @Test
+    public void missingFilesHaveNoHash() {
+        StatCache cache = new StatCache(_index);
+        assertNull(cache.hash(_path));
+        assertNull(cache.hash(_fixture.dir().getPath()));
+        cache.save();
+        assertFalse(_index.exists());
+    }
+
+}
@@ -0,0 +1,72 @@
+package gitlet;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+
+/** What the status command reports about a repository: its branches, the
+ *  changes staged for the next commit, the changes to tracked files that
+ *  are not staged, and the files that are not tracked.  All lists are in
+ *  path or name order.
+ *  @author Srikar Hanumanula
+ */
+public class Status {
+    /** Kind of an unstaged change to a file whose contents changed. */
+    public static final String MODIFIED = "modified";
+    /** Kind of an unstaged change to a file that was deleted. */
+    public static final String DELETED = "deleted";
+
+    /** Names of all branches. */
+    private final List<String> _branches;
+    /** Name of the current branch. */
+    private final String _currentBranch;
+    /** Files staged for addition. */
+    private final List<String> _staged;
+    /** Files staged for removal. */
+    private final List<String> _removed;
+    /** Tracked files changed but not staged, mapped to the kind of
+     *  change. */
+    private final SortedMap<String, String> _modifications;
+    /** Files neither tracked nor staged. */
+    private final List<String> _untracked;
+
+    /** The status of a repository with BRANCHES, of which CURRENTBRANCH
+     *  is current, files STAGED and REMOVED, unstaged MODIFICATIONS, and
+     *  UNTRACKED files. */
+    Status(List<String> branches, String currentBranch, List<String> staged,
+           List<String> removed, SortedMap<String, String> modifications,
+           List<String> untracked) {
+        _branches = Collections.unmodifiableList(branches);
+        _currentBranch = currentBranch;
+        _staged = Collections.unmodifiableList(staged);
+        _removed = Collections.unmodifiableList(removed);
+        _modifications = Collections.unmodifiableSortedMap(modifications);
+        _untracked = Collections.unmodifiableList(untracked);
+    }
+
+    public List<String> getBranches() {
+        return _branches;
+    }
+
+    public String getCurrentBranch() {
+        return _currentBranch;
+    }
+
+    public List<String> getStaged() {
+        return _staged;
+    }
+
+    public List<String> getRemoved() {
+        return _removed;
+    }
+
+    /** Return the tracked files whose changes are not staged, each mapped
+     *  to MODIFIED or DELETED. */
+    public SortedMap<String, String> getModifications() {
+        return _modifications;
+    }
+
+    public List<String> getUntracked() {
+        return _untracked;
+    }
+}
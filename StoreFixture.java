@@ -0,0 +1,181 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/** A scratch directory for tests, holding an object store in its .gitlet
+ *  subdirectory, with helpers to fill the store and to run gitlet commands
+ *  in the directory.  Tests make one before each test and delete it
+ *  after.
+ *  @author Srikar Hanumanula
+ */
+class StoreFixture {
+
+    /** The .gitlet directory the original, Java-serialized gitlet left
+     *  after
+     *
+     *      init; add a.txt (hello); commit "add a"; branch other;
+     *      add b.txt (world); commit "add b"; add c.txt (staged)
+     */
+    static final File LEGACY = new File("testing/baseline-repo");
+    /** Commits of LEGACY. */
+    static final String INITIAL = "599c43a7d913dbc4dcc8b52acd2660bcfb271a2b",
+        ADD_A = "394c2a0e69c72a35b81a64eac229cdca82749ed9",
+        ADD_B = "91750a85cc1e817f42392ea775dc10d9181022a7";
+
+    /** The scratch directory. */
+    private final File _dir;
+    /** The store under _dir, or null if not made yet. */
+    private ObjectStore _store;
+    /** Number of commits made. */
+    private int _made;
+
+    /** A new, empty scratch directory. */
+    StoreFixture() {
+        try {
+            _dir = Files.createTempDirectory("gitlet").toFile();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the scratch directory. */
+    File dir() {
+        return _dir;
+    }
+
+    /** Return the .gitlet directory of the store. */
+    File gitletDir() {
+        return Utils.join(_dir, ".gitlet");
+    }
+
+    /** Return the store, creating its object directories the first
+     *  time. */
+    ObjectStore store() {
+        if (_store == null) {
+            _store = new ObjectStore(gitletDir());
+            _store.migrate();
+        }
+        return _store;
+    }
+
+    /** Copy the files of LEGACY into the .gitlet directory, before the
+     *  store is made. */
+    void copyLegacy() {
+        gitletDir().mkdirs();
+        try {
+            for (String name : Utils.plainFilenamesIn(LEGACY)) {
+                Files.copy(Utils.join(LEGACY, name).toPath(),
+                           Utils.join(gitletDir(), name).toPath());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Store TEXT as a blob and return its id. */
+    String blob(String text) {
+        byte[] contents = text.getBytes(StandardCharsets.UTF_8);
+        String id = Utils.sha1(contents);
+        store().write(ObjectStore.BLOBS, id, contents);
+        return id;
+    }
+
+    /** Store a commit whose snapshot maps the paths of FILES to their
+     *  contents and whose parents are PARENTS, if any, and return its
+     *  id. */
+    String commit(Map<String, String> files, String... parents) {
+        _made += 1;
+        TreeMap<String, String> blobs = new TreeMap<>();
+        for (Map.Entry<String, String> e : files.entrySet()) {
+            blobs.put(e.getKey(), blob(e.getValue()));
+        }
+        Commit commit =
+            new Commit("commit " + _made, Tree.build(store(), blobs),
+                       parents.length > 0 ? parents[0] : null,
+                       parents.length > 1 ? parents[1] : null);
+        String id = commit.getHash();
+        store().write(ObjectStore.COMMITS, id, commit.encode());
+        return id;
+    }
+
+    /** Write TEXT to the working file PATH, creating its directory if
+     *  need be. */
+    void write(String path, String text) {
+        File file = Utils.join(_dir, path);
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, text);
+    }
+
+    /** Return the contents of the working file PATH, or null if there is
+     *  none. */
+    String read(String path) {
+        File file = Utils.join(_dir, path);
+        return file.isFile() ? Utils.readContentsAsString(file) : null;
+    }
+
+    /** Run gitlet with arguments ARGS, as a separate program whose working
+     *  directory is the scratch directory, and return what it printed. */
+    String gitlet(String... args) {
+        return run("gitlet.Main", args);
+    }
+
+    /** Run the main method of class NAME with arguments ARGS, as a
+     *  separate program whose working directory is the scratch directory,
+     *  and return what it printed. */
+    String run(String name, String... args) {
+        Process process = start(name, args);
+        try {
+            String result;
+            try (InputStream out = process.getInputStream()) {
+                result = new String(out.readAllBytes(),
+                                    StandardCharsets.UTF_8);
+            }
+            process.waitFor();
+            return result;
+        } catch (IOException | InterruptedException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Start the main method of class NAME with arguments ARGS, as a
+     *  separate program whose working directory is the scratch directory,
+     *  and return the program, its error output merged into its output. */
+    Process start(String name, String... args) {
+        ArrayList<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java")
+                    .toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(name);
+        command.addAll(List.of(args));
+        try {
+            return new ProcessBuilder(command).directory(_dir)
+                .redirectErrorStream(true).start();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Delete the scratch directory and everything in it. */
+    void delete() {
+        try (Stream<Path> paths = Files.walk(_dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                .forEach(File::delete);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** Sends the history of some commits from one repository's store to
+ *  another's, as one pack holding only what the destination lacks.
+ *  Commits wanted that the destination already has are dropped first,
+ *  since it then has their whole history, and nothing is sent if none
+ *  remain.
+ *
+ *  If the source keeps reachability bitmaps, the objects to send are
+ *  those in the bitmaps of the commits wanted and not in those of the
+ *  commits the destination has.  Otherwise, the commits to send are those
+ *  reachable from the commits wanted but not from the commits the
+ *  destination is known to have, nor already present there.  They are
+ *  found by walking the source's commit graph highest generation first,
+ *  as MergeBase does, painting commits reachable from a have as
+ *  uninteresting; the walk stops once only uninteresting commits are
+ *  queued, so it visits the new commits and their boundary rather than
+ *  the whole history.  Of the trees and blobs of the commits sent, only
+ *  those the destination does not have are sent, and a tree it has is
+ *  passed over with everything below it.
+ *  @author Srikar Hanumanula
+ */
+class Transfer {
+    /** Store sending objects. */
+    private final ObjectStore _from;
+    /** Commit graph of _from. */
+    private final CommitGraph _graph;
+    /** Store receiving them. */
+    private final ObjectStore _to;
+
+    /** A transfer from FROM, whose commit graph is GRAPH, to TO. */
+    Transfer(ObjectStore from, CommitGraph graph, ObjectStore to) {
+        _from = from;
+        _graph = graph;
+        _to = to;
+    }
+
+    /** Send the commits reachable from WANTS that the destination lacks,
+     *  with their trees and blobs, given that the destination has the
+     *  commits HAVES, which need not be known to the source. */
+    void send(Collection<String> wants, Collection<String> haves) {
+        ArrayList<String> missing = new ArrayList<>();
+        for (String want : wants) {
+            if (!_to.contains(ObjectStore.COMMITS, want)) {
+                missing.add(want);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        wants = missing;
+        Bitmaps bitmaps = Bitmaps.open(_from, _graph);
+        if (bitmaps != null) {
+            send(bitmaps, wants, haves);
+            return;
+        }
+        PackWriter pack = new PackWriter(_to);
+        HashSet<String> seen = new HashSet<>();
+        try {
+            for (String commit : missing(wants, haves)) {
+                pack.add(ObjectStore.COMMITS, commit, _from);
+                Tree.walk(_from, Commit.load(_from, commit).getTree(),
+                    tree -> !seen.add(ObjectStore.TREES + tree)
+                        || _to.contains(ObjectStore.TREES, tree),
+                    (kind, id) -> {
+                        if (kind.equals(ObjectStore.TREES)
+                            || seen.add(kind + id)
+                               && !_to.contains(kind, id)) {
+                            pack.add(kind, id, _from);
+                        }
+                    });
+            }
+        } catch (RuntimeException excp) {
+            pack.abort();
+            throw excp;
+        }
+        _to.addPack(pack.finish());
+    }
+
+    /** Send the objects reachable from WANTS and not from HAVES, according
+     *  to BITMAPS, that the destination lacks. */
+    private void send(Bitmaps bitmaps, Collection<String> wants,
+                      Collection<String> haves) {
+        ArrayList<String> known = new ArrayList<>();
+        for (String have : haves) {
+            if (have != null && _graph.contains(have)) {
+                known.add(have);
+            }
+        }
+        BitSet objects = (BitSet) bitmaps.reachable(wants).clone();
+        objects.andNot(bitmaps.reachable(known));
+        PackWriter pack = new PackWriter(_to);
+        try {
+            for (int n = objects.nextSetBit(0); n >= 0;
+                 n = objects.nextSetBit(n + 1)) {
+                String kind = bitmaps.kind(n), id = bitmaps.id(n);
+                if (!_to.contains(kind, id)) {
+                    pack.add(kind, id, _from);
+                }
+            }
+        } catch (RuntimeException excp) {
+            pack.abort();
+            throw excp;
+        }
+        _to.addPack(pack.finish());
+    }
+
+    /** Return the commits reachable from WANTS but not from HAVES that
+     *  the destination does not have, parents first. */
+    List<String> missing(Collection<String> wants, Collection<String> haves) {
+        HashMap<Integer, Boolean> uninteresting = new HashMap<>();
+        PriorityQueue<Integer> queue = new PriorityQueue<>(
+            (x, y) -> Integer.compare(_graph.generation(y),
+                                      _graph.generation(x)));
+        int[] interesting = new int[1];
+        for (String have : haves) {
+            if (have != null && _graph.contains(have)) {
+                mark(_graph.index(have), true, uninteresting, queue,
+                     interesting);
+            }
+        }
+        for (String want : wants) {
+            mark(_graph.index(want), false, uninteresting, queue,
+                 interesting);
+        }
+        ArrayList<String> result = new ArrayList<>();
+        while (interesting[0] > 0) {
+            int k = queue.poll();
+            boolean skip = uninteresting.get(k);
+            if (!skip) {
+                interesting[0] -= 1;
+                skip = _to.contains(ObjectStore.COMMITS, _graph.id(k));
+            }
+            if (!skip) {
+                result.add(_graph.id(k));
+            }
+            for (int p : new int[] {_graph.parent1(k), _graph.parent2(k)}) {
+                mark(p, skip, uninteresting, queue, interesting);
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /** Queue record K, noting in UNINTERESTING whether SKIP, unless it is
+     *  NONE or already queued, in which case mark it uninteresting if
+     *  SKIP.  Keep INTERESTING[0] the number of interesting records
+     *  queued.  Parents have lower generations than their children, so a
+     *  record is only marked while it is still queued. */
+    private static void mark(int k, boolean skip,
+                             HashMap<Integer, Boolean> uninteresting,
+                             PriorityQueue<Integer> queue, int[] interesting) {
+        if (k == CommitGraph.NONE) {
+            return;
+        }
+        Boolean old = uninteresting.get(k);
+        if (old == null) {
+            uninteresting.put(k, skip);
+            queue.add(k);
+            if (!skip) {
+                interesting[0] += 1;
+            }
+        } else if (skip && !old) {
+            uninteresting.put(k, true);
+            interesting[0] -= 1;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Transfer.
+ *  @author Srikar Hanumanula
+ */
+public class TransferTest {
+
+    /** Scratch directory holding the repository sending objects. */
+    private StoreFixture _fromFixture;
+    /** Scratch directory holding the repository receiving them. */
+    private StoreFixture _toFixture;
+    /** Store sending objects. */
+    private ObjectStore _from;
+    /** Store receiving them. */
+    private ObjectStore _to;
+    /** Commits of _from: c1, then c2 changing a, then c3 adding dir/c. */
+    private String _c1, _c2, _c3;
+
+    @Before
+    public void setUp() {
+        _fromFixture = new StoreFixture();
+        _from = _fromFixture.store();
+        _toFixture = new StoreFixture();
+        _to = _toFixture.store();
+        TreeMap<String, String> files = new TreeMap<>();
+        files.put("a", "1\n");
+        files.put("dir/b", "2\n");
+        _c1 = _fromFixture.commit(files);
+        files.put("a", "1b\n");
+        _c2 = _fromFixture.commit(files, _c1);
+        files.put("dir/c", "3\n");
+        _c3 = _fromFixture.commit(files, _c2);
+    }
+
+    @After
+    public void tearDown() {
+        _fromFixture.delete();
+        _toFixture.delete();
+    }
+
+    /** Return a transfer from _from to _to. */
+    private Transfer transfer() {
+        return new Transfer(_from, CommitGraph.open(_from), _to);
+    }
+
+    /** Return the namespaces and ids of the objects in the packs of _to
+     *  that are not in BEFORE. */
+    private Set<String> packed(List<Pack> before) {
+        HashSet<String> result = new HashSet<>();
+        for (Pack pack : _to.packs()) {
+            if (before.contains(pack)) {
+                continue;
+            }
+            for (String kind : Arrays.asList(ObjectStore.COMMITS,
+                                             ObjectStore.TREES,
+                                             ObjectStore.BLOBS)) {
+                for (String id : pack.ids(kind).keySet()) {
+                    result.add(kind + " " + id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the namespaces and ids of the trees and blobs of commit ID
+     *  of _from. */
+    private Set<String> snapshot(String id) {
+        HashSet<String> result = new HashSet<>();
+        Tree.walk(_from, Commit.load(_from, id).getTree(), tree -> false,
+            (kind, object) -> result.add(kind + " " + object));
+        return result;
+    }
+
+    /** Check that sending _c3 to a destination that has _c1 packs exactly
+     *  the commits, trees and blobs _c2 and _c3 added. */
+    private void checkSendsOnlyWhatIsMissing() {
+        transfer().send(List.of(_c1), List.of());
+        List<Pack> before = new ArrayList<>(_to.packs());
+        transfer().send(List.of(_c3), List.of(_c1));
+        HashSet<String> expected = new HashSet<>(snapshot(_c2));
+        expected.addAll(snapshot(_c3));
+        expected.removeAll(snapshot(_c1));
+        expected.add(ObjectStore.COMMITS + " " + _c2);
+        expected.add(ObjectStore.COMMITS + " " + _c3);
+        assertEquals(expected, packed(before));
+        for (String object : snapshot(_c3)) {
+            String[] parts = object.split(" ");
+            assertTrue(_to.contains(parts[0], parts[1]));
+        }
+    }
+
+    @Test
+    public void missingListsNewCommitsParentsFirst() {
+        assertEquals(List.of(_c2, _c3),
+                     transfer().missing(List.of(_c3), List.of(_c1)));
+        assertEquals(List.of(), transfer().missing(List.of(_c2),
+                                                   List.of(_c3)));
+    }
+
+    @Test
+    public void havesUnknownToTheSourceAreIgnored() {
+        String unknown = Utils.sha1("not a commit");
+        assertEquals(List.of(_c1, _c2, _c3),
+                     transfer().missing(List.of(_c3),
+                                        Arrays.asList(unknown, null)));
+    }
+
+    @Test
+    public void commitsTheDestinationHasAreNotSent() {
+        transfer().send(List.of(_c2), List.of());
+        assertTrue(_to.contains(ObjectStore.COMMITS, _c1));
+        assertEquals(List.of(_c3),
+                     transfer().missing(List.of(_c3), List.of()));
+    }
+
+    @Test
+    public void sendPacksOnlyWhatIsMissing() {
+        checkSendsOnlyWhatIsMissing();
+    }
+
+    @Test
+    public void sendWithBitmapsPacksOnlyWhatIsMissing() {
+        Bitmaps bitmaps = Bitmaps.create(_from, CommitGraph.open(_from));
+        bitmaps.update(List.of(_c3));
+        bitmaps.save();
+        checkSendsOnlyWhatIsMissing();
+    }
+
+    @Test
+    public void sendingWhatTheDestinationHasPacksNothing() {
+        Bitmaps bitmaps = Bitmaps.create(_from, CommitGraph.open(_from));
+        bitmaps.update(List.of(_c3));
+        bitmaps.save();
+        transfer().send(List.of(_c3), List.of());
+        List<Pack> before = new ArrayList<>(_to.packs());
+        File dir = Utils.join(_toFixture.gitletDir(), "objects", Pack.DIR);
+        List<String> files = Arrays.asList(dir.list());
+        transfer().send(List.of(_c3), List.of());
+        transfer().send(List.of(_c2, _c3), List.of(_c3));
+        assertEquals(before, _to.packs());
+        assertEquals(files, Arrays.asList(dir.list()));
+    }
+
+    @Test
+    public void pushAndFetchCopyHistoryBetweenRepositories() {
+        StoreFixture local = new StoreFixture(), remote = new StoreFixture();
+        try {
+            remote.gitlet("init");
+            local.gitlet("init");
+            local.write("a.txt", "a\n");
+            local.gitlet("add", "a.txt");
+            local.gitlet("commit", "add a");
+            String remoteDir = remote.gitletDir().getPath();
+            local.gitlet("add-remote", "origin", remoteDir);
+            assertEquals("", local.gitlet("push", "origin", "master"));
+            assertTrue(remote.gitlet("log").contains("add a"));
+            remote.gitlet("checkout", "--", "a.txt");
+            assertEquals("a\n", remote.read("a.txt"));
+            remote.write("b.txt", "b\n");
+            remote.gitlet("add", "b.txt");
+            remote.gitlet("commit", "add b");
+            assertEquals("", local.gitlet("fetch", "origin", "master"));
+            local.gitlet("checkout", "origin/master");
+            assertEquals("b\n", local.read("b.txt"));
+        } finally {
+            local.delete();
+            remote.delete();
+        }
+    }
+
+    @Test
+    public void fetchedBranchesCannotExtendLocalOnes() {
+        StoreFixture local = new StoreFixture(), remote = new StoreFixture();
+        try {
+            remote.gitlet("init");
+            local.gitlet("init");
+            local.gitlet("add-remote", "origin",
+                         remote.gitletDir().getPath());
+            local.gitlet("branch", "origin");
+            assertEquals("A branch name cannot extend another's.\n",
+                         local.gitlet("fetch", "origin", "master"));
+            local.gitlet("rm-branch", "origin");
+            assertEquals("", local.gitlet("fetch", "origin", "master"));
+            assertTrue(local.gitlet("status").contains("\norigin/master\n"));
+        } finally {
+            local.delete();
+            remote.delete();
+        }
+    }
+
+}
@@ -0,0 +1,213 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/** Tree objects: snapshots of one directory each, stored in the trees
+ *  namespace of an object store.  A tree maps the names of the files in
+ *  its directory to blob ids, and the names of its subdirectories, marked
+ *  by a trailing SEPARATOR, to the ids of their trees.  Since a tree's id
+ *  is the hash of its contents, a directory that did not change between
+ *  two commits has the same tree in both: it is stored once, and walks
+ *  comparing the two commits skip it without reading it.  A tree holds
+ *
+ *      int     number of entries
+ *      entries, in name order, each: UTF name, 20-byte raw id
+ *
+ *  Paths of files below a tree use SEPARATOR between their components.
+ *  @author Srikar Hanumanula
+ */
+class Tree {
+    /** Separates the components of paths, and ends subdirectory names. */
+    static final char SEPARATOR = '/';
+
+    /** Return the entries of tree ID of STORE. */
+    static TreeMap<String, String> read(ObjectStore store, String id) {
+        byte[] contents = store.read(ObjectStore.TREES, id);
+        TreeMap<String, String> result = new TreeMap<>();
+        try (DataInputStream in =
+                 new DataInputStream(new ByteArrayInputStream(contents))) {
+            int count = in.readInt();
+            byte[] raw = new byte[Utils.UID_LENGTH / 2];
+            for (int i = 0; i < count; i += 1) {
+                String name = in.readUTF();
+                in.readFully(raw);
+                result.put(name, CommitGraph.toHex(raw));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Store a tree holding ENTRIES in STORE and return its id.  If STORE
+     *  is null, only compute the id. */
+    static String write(ObjectStore store, Map<String, String> entries) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(entries.size());
+            for (Map.Entry<String, String> e : entries.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.write(CommitGraph.toBytes(e.getValue()));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        byte[] contents = bytes.toByteArray();
+        String id = Utils.sha1(contents);
+        if (store != null) {
+            store.write(ObjectStore.TREES, id, contents);
+        }
+        return id;
+    }
+
+    /** Store the trees of a snapshot mapping paths to the blob ids in
+     *  FILES in STORE, and return the id of its root tree. */
+    static String build(ObjectStore store, Map<String, String> files) {
+        return update(store, null, files);
+    }
+
+    /** Return the id of the root tree that build would store for FILES,
+     *  storing nothing. */
+    static String id(Map<String, String> files) {
+        return build(null, files);
+    }
+
+    /** Return the id of the root tree of the snapshot that results from
+     *  applying CHANGES to the snapshot whose root tree in STORE is ROOT,
+     *  or empty if ROOT is null.  CHANGES maps paths to their new blob ids,
+     *  or to null for paths to remove.  Only the trees of directories
+     *  containing changed paths are read and written again. */
+    static String update(ObjectStore store, String root,
+                         Map<String, String> changes) {
+        return write(store, apply(store, root, changes));
+    }
+
+    /** Return the entries of tree ID of STORE, or of an empty tree if ID is
+     *  null, after applying CHANGES, as for update, to the files below
+     *  it.  Subdirectories left empty are dropped. */
+    private static TreeMap<String, String> apply(ObjectStore store,
+                                                 String id,
+                                                 Map<String, String> changes) {
+        TreeMap<String, String> entries =
+            id == null ? new TreeMap<>() : read(store, id);
+        TreeMap<String, TreeMap<String, String>> below = new TreeMap<>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String path = change.getKey();
+            int slash = path.indexOf(SEPARATOR);
+            if (slash >= 0) {
+                below.computeIfAbsent(path.substring(0, slash + 1),
+                                      k -> new TreeMap<>())
+                    .put(path.substring(slash + 1), change.getValue());
+            } else if (change.getValue() == null) {
+                entries.remove(path);
+            } else {
+                entries.put(path, change.getValue());
+            }
+        }
+        for (Map.Entry<String, TreeMap<String, String>> e : below.entrySet()) {
+            String dir = e.getKey();
+            TreeMap<String, String> sub =
+                apply(store, entries.get(dir), e.getValue());
+            if (sub.isEmpty()) {
+                entries.remove(dir);
+            } else {
+                entries.put(dir, write(store, sub));
+            }
+        }
+        return entries;
+    }
+
+    /** Return the snapshot whose root tree in STORE is ROOT, mapping each
+     *  path to its blob id. */
+    static TreeMap<String, String> flatten(ObjectStore store, String root) {
+        TreeMap<String, String> result = new TreeMap<>();
+        flatten(store, root, "", result);
+        return result;
+    }
+
+    /** Add the files below tree ID of STORE to RESULT, their paths
+     *  prefixed by PREFIX. */
+    private static void flatten(ObjectStore store, String id, String prefix,
+                                TreeMap<String, String> result) {
+        for (Map.Entry<String, String> e : read(store, id).entrySet()) {
+            if (isTree(e.getKey())) {
+                flatten(store, e.getValue(), prefix + e.getKey(), result);
+            } else {
+                result.put(prefix + e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /** Return the paths whose blobs differ between the snapshots whose
+     *  root trees in STORE are A and B, each mapped to its blob ids in A and
+     *  B, null where absent.  Subtrees with the same id are skipped. */
+    static TreeMap<String, String[]> diff(ObjectStore store, String a,
+                                          String b) {
+        TreeMap<String, String[]> result = new TreeMap<>();
+        diff(store, a, b, "", result);
+        return result;
+    }
+
+    /** Add the differences between trees A and B of STORE, either of
+     *  which may be null for an absent directory, to RESULT, their paths
+     *  prefixed by PREFIX. */
+    private static void diff(ObjectStore store, String a, String b,
+                             String prefix, TreeMap<String, String[]> result) {
+        if (Objects.equals(a, b)) {
+            return;
+        }
+        TreeMap<String, String> ea =
+            a == null ? new TreeMap<>() : read(store, a);
+        TreeMap<String, String> eb =
+            b == null ? new TreeMap<>() : read(store, b);
+        TreeSet<String> names = new TreeSet<>(ea.keySet());
+        names.addAll(eb.keySet());
+        for (String name : names) {
+            String ia = ea.get(name), ib = eb.get(name);
+            if (isTree(name)) {
+                diff(store, ia, ib, prefix + name, result);
+            } else if (!Objects.equals(ia, ib)) {
+                result.put(prefix + name, new String[] {ia, ib});
+            }
+        }
+    }
+
+    /** Call VISIT on tree ROOT of STORE and on every tree and blob below
+     *  it, passing the namespace and id of each, except that trees for
+     *  which SKIP is true are passed over along with everything below
+     *  them. */
+    static void walk(ObjectStore store, String root, Predicate<String> skip,
+                     Visitor visit) {
+        if (skip.test(root)) {
+            return;
+        }
+        visit.visit(ObjectStore.TREES, root);
+        for (Map.Entry<String, String> e : read(store, root).entrySet()) {
+            if (isTree(e.getKey())) {
+                walk(store, e.getValue(), skip, visit);
+            } else {
+                visit.visit(ObjectStore.BLOBS, e.getValue());
+            }
+        }
+    }
+
+    /** Receives the objects found by walk. */
+    interface Visitor {
+        /** Called for object ID of namespace KIND. */
+        void visit(String kind, String id);
+    }
+
+    /** Return true iff NAME, an entry of a tree, names a subdirectory. */
+    static boolean isTree(String name) {
+        return name.charAt(name.length() - 1) == SEPARATOR;
+    }
+}
@@ -0,0 +1,136 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Tree.
+ *  @author Srikar Hanumanula
+ */
+public class TreeTest {
+
+    /** Scratch directory and store. */
+    private StoreFixture _fixture;
+    /** The store of _fixture. */
+    private ObjectStore _store;
+    /** A snapshot with files at the top, in a directory and below it. */
+    private TreeMap<String, String> _files;
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _store = _fixture.store();
+        _files = new TreeMap<>();
+        for (String path : new String[] {"top", "dir/a", "dir/b",
+                                         "dir/sub/c", "other/d"}) {
+            _files.put(path, _fixture.blob(path + "\n"));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    /** Return _files with CHANGES applied, as Tree.update applies them. */
+    private TreeMap<String, String> changed(Map<String, String> changes) {
+        TreeMap<String, String> result = new TreeMap<>(_files);
+        for (Map.Entry<String, String> e : changes.entrySet()) {
+            if (e.getValue() == null) {
+                result.remove(e.getKey());
+            } else {
+                result.put(e.getKey(), e.getValue());
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void snapshotsFlattenToWhatWasBuilt() {
+        String root = Tree.build(_store, _files);
+        assertEquals(_files, Tree.flatten(_store, root));
+        TreeMap<String, String> top = Tree.read(_store, root);
+        assertEquals(List.of("dir/", "other/", "top"),
+                     new ArrayList<>(top.keySet()));
+        assertEquals(_files.get("top"), top.get("top"));
+        assertTrue(Tree.isTree("dir/"));
+        assertFalse(Tree.isTree("top"));
+        assertEquals(Map.of(), Tree.flatten(_store,
+                                            Tree.build(_store, Map.of())));
+    }
+
+    @Test
+    public void unchangedDirectoriesShareTheirTrees() {
+        String root = Tree.build(_store, _files);
+        HashMap<String, String> changes = new HashMap<>();
+        changes.put("dir/sub/c", _fixture.blob("new c\n"));
+        String next = Tree.update(_store, root, changes);
+        TreeMap<String, String> before = Tree.read(_store, root),
+            after = Tree.read(_store, next);
+        assertEquals(before.get("other/"), after.get("other/"));
+        assertNotEquals(before.get("dir/"), after.get("dir/"));
+        assertEquals(Tree.read(_store, before.get("dir/")).get("a"),
+                     Tree.read(_store, after.get("dir/")).get("a"));
+    }
+
+    @Test
+    public void updatesMatchBuildingAfresh() {
+        String root = Tree.build(_store, _files);
+        HashMap<String, String> changes = new HashMap<>();
+        changes.put("top", null);
+        changes.put("dir/a", _fixture.blob("new a\n"));
+        changes.put("other/d", null);
+        changes.put("new/deep/e", _fixture.blob("e\n"));
+        String updated = Tree.update(_store, root, changes);
+        TreeMap<String, String> expected = changed(changes);
+        assertEquals(expected, Tree.flatten(_store, updated));
+        assertEquals(Tree.build(_store, expected), updated);
+        assertFalse(Tree.read(_store, updated).containsKey("other/"));
+    }
+
+    @Test
+    public void diffsListOnlyChangedPaths() {
+        String root = Tree.build(_store, _files);
+        assertTrue(Tree.diff(_store, root, root).isEmpty());
+        HashMap<String, String> changes = new HashMap<>();
+        String a2 = _fixture.blob("a2\n"), e = _fixture.blob("e\n");
+        changes.put("dir/a", a2);
+        changes.put("dir/sub/c", null);
+        changes.put("e", e);
+        String next = Tree.update(_store, root, changes);
+        TreeMap<String, String[]> diff = Tree.diff(_store, root, next);
+        assertEquals(List.of("dir/a", "dir/sub/c", "e"),
+                     new ArrayList<>(diff.keySet()));
+        assertArrayEquals(new String[] {_files.get("dir/a"), a2},
+                          diff.get("dir/a"));
+        assertArrayEquals(new String[] {_files.get("dir/sub/c"), null},
+                          diff.get("dir/sub/c"));
+        assertArrayEquals(new String[] {null, e}, diff.get("e"));
+        assertEquals(_files.keySet(),
+                     Tree.diff(_store, null, root).keySet());
+    }
+
+    @Test
+    public void walksVisitEveryObjectOutsideSkippedTrees() {
+        String root = Tree.build(_store, _files);
+        String dir = Tree.read(_store, root).get("dir/");
+        ArrayList<String> all = new ArrayList<>(), some = new ArrayList<>();
+        Tree.walk(_store, root, t -> false, (kind, id) -> all.add(kind));
+        assertEquals(5, all.stream()
+                     .filter(ObjectStore.BLOBS::equals).count());
+        assertEquals(4, all.stream()
+                     .filter(ObjectStore.TREES::equals).count());
+        Tree.walk(_store, root, dir::equals, (kind, id) -> some.add(id));
+        assertFalse(some.contains(dir));
+        assertFalse(some.contains(_files.get("dir/a")));
+        assertTrue(some.contains(_files.get("other/d")));
+    }
+
+}
@@ -12,7 +12,28 @@ public class UnitTest {
     /** Run the JUnit tests in the loa package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(UnitTest.class));
+        System.exit(textui.runClasses(UnitTest.class,
+                                      ObjectStoreTest.class,
+                                      CommitGraphTest.class,
+                                      MergeBaseTest.class,
+                                      PackTest.class,
+                                      StatCacheTest.class,
+                                      ChangeDetectorTest.class,
+                                      DiffTest.class,
+                                      MergeEngineTest.class,
+                                      CheckoutEngineTest.class,
+                                      TreeTest.class,
+                                      WorkingTreeTest.class,
+                                      CommitTest.class,
+                                      MigrationTest.class,
+                                      DaemonTest.class,
+                                      RepositoryTest.class,
+                                      ObjectCacheTest.class,
+                                      TransferTest.class,
+                                      BitmapsTest.class,
+                                      GarbageCollectorTest.class,
+                                      SegmentStoreTest.class,
+                                      DeltaTest.class));
     }
 
     /** A dummy test to avoid complaint. */
@@ -0,0 +1,179 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** The files of a working directory, at any depth.  Paths are relative to
+ *  the root of the working directory and use Tree.SEPARATOR between
+ *  their components, as in trees.  The directory is walked at most once,
+ *  the first time its files are asked for, with one fork-join task per
+ *  subdirectory; files gitlet itself deletes or writes afterwards are
+ *  kept track of, so every part of a command sees the same, current
+ *  listing.  The attributes of each file read by the walk are kept too,
+ *  until gitlet writes or deletes the file.  The .gitlet directory and
+ *  symbolic links are not part of the working tree.
+ *  @author Srikar Hanumanula
+ */
+class WorkingTree {
+    /** Name of the repository directory, which is never listed. */
+    private static final String GITLET = ".gitlet";
+
+    /** Working tree of the repository in the current directory. */
+    private static WorkingTree _local;
+
+    /** Root of the working tree. */
+    private final Path _root;
+    /** Paths of the files in the working tree, or null if not walked yet. */
+    private ConcurrentSkipListSet<String> _files;
+    /** Attributes of the files listed by the walk, by path, for those
+     *  gitlet has not written or deleted since. */
+    private final ConcurrentHashMap<String, BasicFileAttributes> _attrs =
+        new ConcurrentHashMap<>();
+
+    /** The working tree rooted at ROOT. */
+    WorkingTree(File root) {
+        _root = root.toPath();
+    }
+
+    /** Return the working tree of the repository in the current
+     *  directory. */
+    static synchronized WorkingTree local() {
+        if (_local == null) {
+            _local = new WorkingTree(new File("."));
+        }
+        return _local;
+    }
+
+    /** Forget the working tree of the repository in the current directory, so
+     *  that local reads it afresh. */
+    static synchronized void discardLocal() {
+        _local = null;
+    }
+
+    /** Return the paths of all files in the working tree, in order. */
+    synchronized Set<String> files() {
+        if (_files == null) {
+            _files = new ConcurrentSkipListSet<>();
+            ForkJoinPool.commonPool().invoke(new Walk(_root, ""));
+        }
+        return Collections.unmodifiableSet(_files);
+    }
+
+    /** Return PATH, as given on the command line, in the form used for
+     *  paths in the working tree. */
+    static String normalize(String path) {
+        Path p = Paths.get(path).normalize();
+        if (p.isAbsolute()) {
+            p = Paths.get("").toAbsolutePath().relativize(p);
+        }
+        return p.toString().replace(File.separatorChar, Tree.SEPARATOR);
+    }
+
+    /** Return the attributes of the file at PATH, as read when the working
+     *  tree was listed unless gitlet has written it since, or null if
+     *  there is no such file. */
+    BasicFileAttributes attributes(String path) {
+        if (!files().contains(path)) {
+            return null;
+        }
+        BasicFileAttributes attrs = _attrs.get(path);
+        return attrs != null ? attrs : StatCache.stat(file(path));
+    }
+
+    /** Return the file at PATH within the working tree. */
+    File file(String path) {
+        return _root.resolve(path).toFile();
+    }
+
+    /** Make ready to write the file at PATH, creating the directories it
+     *  is to go in, and return it. */
+    File create(String path) {
+        File file = file(path);
+        file.getParentFile().mkdirs();
+        _attrs.remove(path);
+        if (_files != null) {
+            _files.add(path);
+        }
+        return file;
+    }
+
+    /** Delete the file at PATH, along with any directories that are left
+     *  empty as a result. */
+    void delete(String path) {
+        File file = file(path);
+        if (file.isDirectory()) {
+            return;
+        }
+        file.delete();
+        _attrs.remove(path);
+        if (_files != null) {
+            _files.remove(path);
+        }
+        int slash = path.lastIndexOf(Tree.SEPARATOR);
+        while (slash > 0) {
+            path = path.substring(0, slash);
+            if (!file(path).delete()) {
+                break;
+            }
+            slash = path.lastIndexOf(Tree.SEPARATOR);
+        }
+    }
+
+    /** Lists one directory, adding its files to _files, and walks its
+     *  subdirectories in parallel. */
+    private class Walk extends RecursiveAction {
+        /** Serialization version. */
+        private static final long serialVersionUID = 1L;
+
+        /** The directory. */
+        private final Path _dir;
+        /** Prefix of the paths of its files within the working tree. */
+        private final String _prefix;
+
+        /** A walk of DIR, whose files have paths starting with PREFIX. */
+        Walk(Path dir, String prefix) {
+            _dir = dir;
+            _prefix = prefix;
+        }
+
+        @Override
+        protected void compute() {
+            List<Walk> subdirs = new ArrayList<>();
+            try (DirectoryStream<Path> entries =
+                     Files.newDirectoryStream(_dir)) {
+                for (Path entry : entries) {
+                    String name = entry.getFileName().toString();
+                    if (_prefix.isEmpty() && name.equals(GITLET)) {
+                        continue;
+                    }
+                    BasicFileAttributes attrs = Files.readAttributes(entry,
+                        BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isRegularFile()) {
+                        _files.add(_prefix + name);
+                        _attrs.put(_prefix + name, attrs);
+                    } else if (attrs.isDirectory()) {
+                        subdirs.add(new Walk(entry,
+                                             _prefix + name + Tree.SEPARATOR));
+                    }
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            invokeAll(subdirs);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of WorkingTree and of commands on files in subdirectories.
+ *  @author Srikar Hanumanula
+ */
+public class WorkingTreeTest {
+
+    /** Scratch directory. */
+    private StoreFixture _fixture;
+    /** The working tree of _fixture. */
+    private WorkingTree _tree;
+
+    @Before
+    public void setUp() {
+        _fixture = new StoreFixture();
+        _tree = new WorkingTree(_fixture.dir());
+    }
+
+    @After
+    public void tearDown() {
+        _fixture.delete();
+    }
+
+    @Test
+    public void filesAtEveryDepthAreListedInOrder() {
+        _fixture.write("top", "x\n");
+        _fixture.write("dir/a", "x\n");
+        _fixture.write("dir/sub/b", "x\n");
+        Utils.join(_fixture.dir(), "empty").mkdir();
+        assertEquals(List.of("dir/a", "dir/sub/b", "top"),
+                     new ArrayList<>(_tree.files()));
+    }
+
+    @Test
+    public void theRepositoryAndLinksAreNotListed() throws IOException {
+        _fixture.write(".gitlet/HEAD", "x\n");
+        _fixture.write("dir/.gitlet", "x\n");
+        _fixture.write("target", "x\n");
+        Files.createSymbolicLink(Utils.join(_fixture.dir(), "link").toPath(),
+                                 Utils.join(_fixture.dir(), "target")
+                                 .toPath());
+        assertEquals(List.of("dir/.gitlet", "target"),
+                     new ArrayList<>(_tree.files()));
+    }
+
+    @Test
+    public void writesAndDeletesKeepTheListingCurrent() {
+        _fixture.write("dir/sub/a", "x\n");
+        _fixture.write("dir/b", "x\n");
+        assertEquals(2, _tree.files().size());
+        Utils.writeContents(_tree.create("new/c"), "c\n");
+        assertEquals("c\n", _fixture.read("new/c"));
+        _tree.delete("dir/sub/a");
+        assertEquals(List.of("dir/b", "new/c"),
+                     new ArrayList<>(_tree.files()));
+        assertFalse(Utils.join(_fixture.dir(), "dir", "sub").exists());
+        assertTrue(Utils.join(_fixture.dir(), "dir").isDirectory());
+        _tree.delete("dir/b");
+        assertFalse(Utils.join(_fixture.dir(), "dir").exists());
+    }
+
+    @Test
+    public void pathsAreNormalized() {
+        assertEquals("dir/a", WorkingTree.normalize("./dir//a"));
+        assertEquals("a", WorkingTree.normalize("dir/../a"));
+    }
+
+    @Test
+    public void commandsWorkOnFilesInSubdirectories() {
+        StoreFixture repo = new StoreFixture();
+        try {
+            repo.gitlet("init");
+            repo.write("dir/sub/a.txt", "a\n");
+            repo.write("dir/b.txt", "b\n");
+            repo.gitlet("add", "dir/sub/a.txt");
+            repo.gitlet("add", "./dir/b.txt");
+            repo.gitlet("commit", "nested");
+            repo.gitlet("branch", "other");
+            repo.gitlet("rm", "dir/sub/a.txt");
+            assertNull(repo.read("dir/sub/a.txt"));
+            assertFalse(Utils.join(repo.dir(), "dir", "sub").exists());
+            repo.gitlet("commit", "removed");
+            repo.write("dir/untracked.txt", "mine\n");
+            assertEquals("", repo.gitlet("checkout", "other"));
+            assertEquals("a\n", repo.read("dir/sub/a.txt"));
+            assertEquals("mine\n", repo.read("dir/untracked.txt"));
+            assertEquals("?? dir/untracked.txt\n",
+                         repo.gitlet("status", "--porcelain"));
+        } finally {
+            repo.delete();
+        }
+    }
+
+}